@@ -1,13 +1,55 @@
 package com.gayan.entities;
 
+import com.gayan.utilz.AttributeDictionary;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
 public class Ticket {
 
+    //CAS on the sold flag, so a sale or a cancel can be claimed without holding a pool lock
+    private static final VarHandle SOLD;
+    //CAS on the attribute stamp, so writers racing each other take turns and never lose an update
+    private static final VarHandle STAMP;
+
+    static {
+        try {
+            SOLD = MethodHandles.lookup().findVarHandle(Ticket.class, "sold", boolean.class);
+            STAMP = MethodHandles.lookup().findVarHandle(Ticket.class, "stamp", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * The ticket's attributes at one point in time, as read by getVersion(). A price, location and event read
+     * together in one Version were always written together. Names are codes into the AttributeDictionary,
+     * resolved when read.
+     */
+    public record Version(int eventCode, int vendorCode, int locationCode, double price) {
+
+        public String getEventName() {
+            return AttributeDictionary.decode(eventCode);
+        }
+
+        public String getVendorName() {
+            return AttributeDictionary.decode(vendorCode);
+        }
+
+        public String getLocation() {
+            return AttributeDictionary.decode(locationCode);
+        }
+    }
+
     private final long ticketId;
-    private String eventName;
-    private String vendorName;
-    private String location;
+    //Attributes kept inline (no object per ticket per version) and guarded by stamp like a seqlock:
+    //odd while a writer is changing them, and a reader retries if the stamp moved while it read them.
+    private int eventCode;
+    private int vendorCode;
+    private int locationCode;
     private double price;
-    private boolean sold;
+    private volatile int stamp;
+    private volatile boolean sold;
 
     public Ticket(
             long ticketId,
@@ -15,13 +57,23 @@ public class Ticket {
             String vendorName,
             String location,
             double price) {
+        this(ticketId, AttributeDictionary.encode(eventName), AttributeDictionary.encode(vendorName),
+                AttributeDictionary.encode(location), price);
+    }
+
+    //For tickets rebuilt from stored codes, skips the dictionary lookups
+    public Ticket(
+            long ticketId,
+            int eventCode,
+            int vendorCode,
+            int locationCode,
+            double price) {
         this.ticketId = ticketId;
-        this.eventName = eventName;
-        this.vendorName = vendorName;
-        this.location = location;
+        this.eventCode = eventCode;
+        this.vendorCode = vendorCode;
+        this.locationCode = locationCode;
         this.price = price;
         this.sold = false;
-
     }
 
     public long getTicketId() {
@@ -36,46 +88,131 @@ public class Ticket {
         this.sold = sold;
     }
 
+    //Available -> sold in one CAS. Only one caller wins, false if the ticket was already sold.
+    public boolean tryMarkSold() {
+        return SOLD.compareAndSet(this, false, true);
+    }
+
+    //Sold -> available in one CAS. Only one caller wins, false if the ticket was not sold.
+    public boolean tryMarkAvailable() {
+        return SOLD.compareAndSet(this, true, false);
+    }
+
+    //Read this once to get several attributes that belong together
+    public Version getVersion() {
+        while (true) {
+            int before = stamp;
+            if ((before & 1) == 0) {
+                Version version = new Version(eventCode, vendorCode, locationCode, price);
+                VarHandle.acquireFence(); // the field reads above finish before the stamp is checked again
+                if (stamp == before) {
+                    return version;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    public void setVersion(Version version) {
+        int before = beginWrite();
+        eventCode = version.eventCode();
+        vendorCode = version.vendorCode();
+        locationCode = version.locationCode();
+        price = version.price();
+        endWrite(before);
+    }
+
+    //Make the stamp odd, waiting for any other writer to finish first. Returns the even stamp it started from.
+    private int beginWrite() {
+        while (true) {
+            int current = stamp;
+            if ((current & 1) == 0 && STAMP.compareAndSet(this, current, current + 1)) {
+                VarHandle.storeStoreFence(); // the odd stamp is visible before any field changes
+                return current;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private void endWrite(int before) {
+        stamp = before + 2; // volatile write, publishes the fields
+    }
+
+    //A Writer's change, published as one new version
+    public void update(double newPrice, String newLocation, String newEventName) {
+        int newEventCode = AttributeDictionary.encode(newEventName);
+        int newLocationCode = AttributeDictionary.encode(newLocation);
+        int before = beginWrite();
+        eventCode = newEventCode;
+        locationCode = newLocationCode;
+        price = newPrice;
+        endWrite(before);
+    }
+
     public String getEventName() {
-        return eventName;
+        return AttributeDictionary.decode(getEventCode());
     }
 
     public void setEventName(String eventName) {
-        this.eventName = eventName;
+        int code = AttributeDictionary.encode(eventName);
+        int before = beginWrite();
+        eventCode = code;
+        endWrite(before);
+    }
+
+    public int getEventCode() {
+        return getVersion().eventCode();
     }
 
     public String getVendorName() {
-        return vendorName;
+        return AttributeDictionary.decode(getVendorCode());
     }
 
     public void setVendorName(String vendorName) {
-        this.vendorName = vendorName;
+        int code = AttributeDictionary.encode(vendorName);
+        int before = beginWrite();
+        vendorCode = code;
+        endWrite(before);
+    }
+
+    public int getVendorCode() {
+        return getVersion().vendorCode();
     }
 
     public String getLocation() {
-        return location;
+        return AttributeDictionary.decode(getLocationCode());
     }
 
     public void setLocation(String location) {
-        this.location = location;
+        int code = AttributeDictionary.encode(location);
+        int before = beginWrite();
+        locationCode = code;
+        endWrite(before);
+    }
+
+    public int getLocationCode() {
+        return getVersion().locationCode();
     }
 
     public double getPrice() {
-        return price;
+        return getVersion().price();
     }
 
     public void setPrice(double price) {
+        int before = beginWrite();
         this.price = price;
+        endWrite(before);
     }
 
     @Override
     public String toString() {
+        Version current = getVersion();
         return "com.gayan.entity.Ticket{" +
                 "ticketId=" + ticketId +
-                ", eventName='" + eventName + '\'' +
-                ", vendorName='" + vendorName + '\'' +
-                ", location='" + location + '\'' +
-                ", price=" + price +
+                ", eventName='" + current.getEventName() + '\'' +
+                ", vendorName='" + current.getVendorName() + '\'' +
+                ", location='" + current.getLocation() + '\'' +
+                ", price=" + current.price() +
                 ", sold=" + sold +
                 '}';
     }
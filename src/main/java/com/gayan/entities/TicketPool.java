@@ -1,11 +1,21 @@
 package com.gayan.entities;
 
+import com.gayan.utilz.PoolSnapshot;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public interface TicketPool {
     boolean addTicket(Ticket ticket); //vendors/producers to add ticket
+    int addTickets(Collection<Ticket> tickets); //vendors to load a block of tickets in one go, returns how many were added
     Optional<Ticket> purchaseTicket(); //consumers to purchase ticket
+    CompletableFuture<Ticket> purchaseTicketAsync(); //completes with a ticket once one is available, or with a TimeoutException after the pool's time out
+    List<Ticket> purchaseTickets(int count, Duration timeout); //group purchase, all or nothing (empty list) within the timeout
     int getCurrentSize(); //readers to query the current size
     int getCapacity(); //get the max no of tickets the pool can hold
     int getAvailableTicketCount(); // readers to check how many unsold tickets are available
@@ -27,4 +37,18 @@ public interface TicketPool {
     List<Ticket> getAvailableTickets();
     Optional<Ticket> getRandomAvailableTicket();
     int getAllTicketsCount();
+    Optional<Ticket> findTicket(long ticketId); //look up a ticket (sold or not) by ID in constant time
+    boolean awaitTickets(WorkerRole role, long timeoutMillis) throws InterruptedException; //park a worker in its role's wait queue until the pool has something for it, false on timeout
+    long getTicketIdHighWaterMark(); //highest ticket ID createTicket has handed out
+    void advanceTicketIds(long highWaterMark); //make createTicket continue after this ID (after a restore)
+
+    //write every ticket and the ID high-water mark to a memory-mapped snapshot file
+    default void snapshot(Path file) throws IOException {
+        PoolSnapshot.write(this, file);
+    }
+
+    //load a snapshot into this (empty) pool, returns how many tickets were restored
+    default int restore(Path file) throws IOException {
+        return PoolSnapshot.restore(file, this).size();
+    }
 }
@@ -0,0 +1,18 @@
+package com.gayan.entities;
+
+//What a parked worker is waiting for. Each role has its own wait queue in the pool, so one new ticket
+//does not wake every waiting worker.
+public enum WorkerRole {
+    BUYER,  //needs an unsold ticket and takes it
+    WRITER, //needs an unsold ticket to update, leaves it in the pool
+    READER; //needs a non-empty pool
+
+    public boolean canProceed(TicketPool pool) {
+        return this == READER ? pool.getCurrentSize() > 0 : pool.getAvailableTicketCount() > 0;
+    }
+
+    //A buyer uses up the wakeup it got, readers and writers pass it on to the next one in their queue
+    public boolean consumesTicket() {
+        return this == BUYER;
+    }
+}
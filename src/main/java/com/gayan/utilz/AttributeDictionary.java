@@ -0,0 +1,56 @@
+package com.gayan.utilz;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide dictionary for the names stamped on tickets (event, vendor, location).
+ * A Producer puts the same three names on thousands of tickets, so a Ticket keeps an int code per name
+ * and resolves it here when asked, and no Ticket holds its own copy of a name.
+ *
+ * Codes are never reused or dropped, so the dictionary grows with the number of distinct names only.
+ * Encoding a known name and decoding are lock-free, only a new name takes the lock.
+ */
+public final class AttributeDictionary {
+
+    public static final int NONE = -1; //code for a null name
+
+    private static final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[64];
+    private static int size = 0; //guarded by the class lock
+
+    private AttributeDictionary() {
+    }
+
+    public static int encode(String name) {
+        if (name == null) {
+            return NONE;
+        }
+        Integer code = codes.get(name);
+        if (code != null) {
+            return code;
+        }
+        synchronized (AttributeDictionary.class) {
+            code = codes.get(name);
+            if (code == null) {
+                String[] table = names;
+                if (size == table.length) {
+                    table = Arrays.copyOf(table, size << 1);
+                }
+                table[size] = name;
+                names = table; //volatile write publishes the new slot before anyone can hold its code
+                code = size++;
+                codes.put(name, code);
+            }
+        }
+        return code;
+    }
+
+    public static String decode(int code) {
+        return code == NONE ? null : names[code];
+    }
+
+    public static int size() {
+        return codes.size();
+    }
+}
@@ -0,0 +1,166 @@
+package com.gayan.utilz;
+
+import com.gayan.entities.Ticket;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Available tickets in a dense ring with swap-remove, oldest first: a pool's purchase queue, its ID index and
+ * its random-pick array in one structure, so each unsold ticket is held once.
+ * A uniform random pick, a lookup or removal by ID, an add and a poll of the oldest ticket are all O(1), and
+ * picking never copies the set. poll() takes from the head, so tickets polled one by one come out in the order they were
+ * added. A removal from the middle moves the newest ticket into the hole, so only that ticket moves ahead.
+ * Each ticket's slot in the array is kept in a LongIntMap (primitive ID -> slot, no boxing).
+ * Not thread-safe: every pool guards it with the same lock that guards its tickets.
+ */
+public class AvailableTickets {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private Ticket[] tickets; //length is a power of two, the ring runs from head for size slots
+    private int head;
+    private int size;
+
+    private final LongIntMap slots; //ID -> slot in tickets
+
+    public AvailableTickets() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public AvailableTickets(int expectedSize) {
+        int capacity = Math.max(DEFAULT_CAPACITY, Integer.highestOneBit(Math.max(expectedSize - 1, 1)) << 1);
+        tickets = new Ticket[capacity];
+        slots = new LongIntMap(capacity);
+    }
+
+    //Returns false if the ticket is already in the set
+    public boolean add(Ticket ticket) {
+        long id = ticket.getTicketId();
+        if (slots.containsKey(id)) {
+            return false;
+        }
+        if (size == tickets.length) {
+            grow();
+        }
+        int slot = (head + size++) & (tickets.length - 1);
+        tickets[slot] = ticket;
+        slots.put(id, slot);
+        return true;
+    }
+
+    //Unroll the ring into an array twice the size, oldest ticket at slot 0
+    private void grow() {
+        Ticket[] grown = new Ticket[tickets.length << 1];
+        for (int i = 0; i < size; i++) {
+            Ticket ticket = tickets[(head + i) & (tickets.length - 1)];
+            grown[i] = ticket;
+            slots.put(ticket.getTicketId(), i);
+        }
+        tickets = grown;
+        head = 0;
+    }
+
+    public boolean remove(Ticket ticket) {
+        return remove(ticket.getTicketId()) != null;
+    }
+
+    public Ticket remove(long ticketId) {
+        int slot = slots.remove(ticketId);
+        if (slot < 0) {
+            return null;
+        }
+        Ticket removed = tickets[slot];
+        int mask = tickets.length - 1;
+        if (slot == head) {
+            // The oldest ticket, the ring just starts one slot later
+            tickets[slot] = null;
+            head = (head + 1) & mask;
+            size--;
+            return removed;
+        }
+
+        // Move the newest ticket into the hole so the ring stays dense
+        int last = (head + --size) & mask;
+        if (slot != last) {
+            Ticket moved = tickets[last];
+            tickets[slot] = moved;
+            slots.put(moved.getTicketId(), slot);
+        }
+        tickets[last] = null;
+        return removed;
+    }
+
+    //Remove and return the oldest ticket, null if empty
+    public Ticket poll() {
+        return size == 0 ? null : remove(tickets[head].getTicketId());
+    }
+
+    //Uniform random pick without removing it, null if empty
+    public Ticket random() {
+        Ticket[] current = tickets;
+        int count = size;
+        return count == 0 ? null : current[(head + ThreadLocalRandom.current().nextInt(count)) & (current.length - 1)];
+    }
+
+    //The ticket with this ID, null if it is not here
+    public Ticket get(long ticketId) {
+        int slot = slots.get(ticketId);
+        return slot < 0 ? null : tickets[slot];
+    }
+
+    public boolean contains(long ticketId) {
+        return slots.containsKey(ticketId);
+    }
+
+    public boolean contains(Ticket ticket) {
+        return contains(ticket.getTicketId());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(tickets, null);
+        slots.clear();
+        head = 0;
+        size = 0;
+    }
+
+    public void addTo(Collection<Ticket> target) {
+        int mask = tickets.length - 1;
+        for (int i = 0; i < size; i++) {
+            target.add(tickets[(head + i) & mask]);
+        }
+    }
+
+    /**
+     * Copy of the tickets, oldest first. The array, head and size are each read once, so a StampedLock reader
+     * can call it optimistically: a copy taken while a writer was busy may hold nulls, and is thrown away on
+     * validate.
+     */
+    public Ticket[] toArray() {
+        Ticket[] current = tickets;
+        int start = head;
+        int count = Math.min(size, current.length);
+        Ticket[] copy = new Ticket[count];
+        for (int i = 0; i < count; i++) {
+            copy[i] = current[(start + i) & (current.length - 1)];
+        }
+        return copy;
+    }
+
+    public List<Ticket> toList() {
+        List<Ticket> list = new ArrayList<>(size);
+        addTo(list);
+        return list;
+    }
+}
@@ -0,0 +1,155 @@
+package com.gayan.utilz;
+
+import com.gayan.entities.Ticket;
+import com.gayan.entities.TicketPool;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checkpoint files of one pool in a directory: a full base image plus the deltas written after it.
+ * Every file is a PoolSnapshot (deltas just hold fewer tickets), named by a sequence number so the
+ * order survives a restart: base-00000000000000000012.snap covers everything up to delta 12.
+ * Files are written under a .tmp name and moved into place, so a crash never leaves half a checkpoint.
+ */
+public class CheckpointStore {
+
+    private static final String BASE_PREFIX = "base-";
+    private static final String DELTA_PREFIX = "delta-";
+    private static final String SUFFIX = ".snap";
+
+    private final Path directory;
+    private final AtomicLong lastSequence;
+
+    /** What recovery found and how long it took. */
+    public record Recovery(int tickets, int deltas, long highWaterMark, long millis) {
+    }
+
+    public CheckpointStore(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        long last = 0;
+        for (long seq : list(BASE_PREFIX).keySet()) {
+            last = Math.max(last, seq);
+        }
+        for (long seq : list(DELTA_PREFIX).keySet()) {
+            last = Math.max(last, seq);
+        }
+        this.lastSequence = new AtomicLong(last);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    //Write the changed tickets as the next delta, returns its sequence number
+    public long writeDelta(List<Ticket> changed, long highWaterMark) throws IOException {
+        long seq = lastSequence.incrementAndGet();
+        writeAtomically(DELTA_PREFIX, seq, changed, highWaterMark);
+        return seq;
+    }
+
+    /**
+     * Merge the latest base and every delta after it into a new base, then delete the merged files.
+     * Only reads files, so it runs in the background without touching the pool.
+     * Returns how many deltas were merged.
+     */
+    public int compact() throws IOException {
+        TreeMap<Long, Path> deltas = list(DELTA_PREFIX);
+        TreeMap<Long, Path> bases = list(BASE_PREFIX);
+        long baseSeq = bases.isEmpty() ? 0 : bases.lastKey();
+        Map<Long, Path> newer = deltas.tailMap(baseSeq, false);
+        if (newer.isEmpty()) {
+            return 0;
+        }
+
+        Map<Long, Ticket> merged = new LinkedHashMap<>();
+        long highWaterMark = fold(bases.isEmpty() ? null : bases.lastEntry().getValue(), newer.values(), merged);
+        long mergedUpTo = deltas.lastKey();
+        writeAtomically(BASE_PREFIX, mergedUpTo, new ArrayList<>(merged.values()), highWaterMark);
+
+        for (Path old : bases.headMap(mergedUpTo, false).values()) {
+            Files.deleteIfExists(old);
+        }
+        for (Path old : deltas.headMap(mergedUpTo, true).values()) {
+            Files.deleteIfExists(old);
+        }
+        return newer.size();
+    }
+
+    /**
+     * Load the latest base and the deltas after it into an empty pool, later files winning per ticket,
+     * and move the pool's ticket IDs past the checkpointed high-water mark.
+     */
+    public Recovery recover(TicketPool pool) throws IOException {
+        long start = System.nanoTime();
+        TreeMap<Long, Path> bases = list(BASE_PREFIX);
+        long baseSeq = bases.isEmpty() ? 0 : bases.lastKey();
+        Map<Long, Path> deltas = list(DELTA_PREFIX).tailMap(baseSeq, false);
+
+        Map<Long, Ticket> merged = new LinkedHashMap<>();
+        long highWaterMark = fold(bases.isEmpty() ? null : bases.lastEntry().getValue(), deltas.values(), merged);
+        List<Ticket> restored = PoolSnapshot.loadInto(pool, new ArrayList<>(merged.values()));
+        pool.advanceTicketIds(highWaterMark);
+        return new Recovery(restored.size(), deltas.size(), highWaterMark,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    public int getDeltaCount() throws IOException {
+        return list(DELTA_PREFIX).size();
+    }
+
+    //Base first, then each delta in order, keeping the last version of every ticket. Returns the high-water mark.
+    private static long fold(Path base, Iterable<Path> deltas, Map<Long, Ticket> merged) throws IOException {
+        long highWaterMark = 0;
+        List<Path> files = new ArrayList<>();
+        if (base != null) {
+            files.add(base);
+        }
+        deltas.forEach(files::add);
+        for (Path file : files) {
+            PoolSnapshot.Contents contents = PoolSnapshot.read(file);
+            for (Ticket ticket : contents.tickets()) {
+                merged.put(ticket.getTicketId(), ticket);
+            }
+            highWaterMark = Math.max(highWaterMark, contents.highWaterMark());
+        }
+        return highWaterMark;
+    }
+
+    private void writeAtomically(String prefix, long seq, List<Ticket> tickets, long highWaterMark) throws IOException {
+        Path target = directory.resolve(fileName(prefix, seq));
+        Path temp = directory.resolve(fileName(prefix, seq) + ".tmp");
+        PoolSnapshot.write(tickets, highWaterMark, temp);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String fileName(String prefix, long seq) {
+        return String.format("%s%020d%s", prefix, seq, SUFFIX);
+    }
+
+    //Sequence number -> file, for one kind of checkpoint file
+    private TreeMap<Long, Path> list(String prefix) throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*" + SUFFIX)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                try {
+                    files.put(Long.parseLong(name.substring(prefix.length(), name.length() - SUFFIX.length())), file);
+                } catch (NumberFormatException e) {
+                    System.out.println("Skipping unexpected checkpoint file " + name);
+                }
+            }
+        }
+        return files;
+    }
+}
@@ -0,0 +1,65 @@
+package com.gayan.utilz;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongConsumer;
+
+/**
+ * One bit per ticket ID, set when the ticket changes and cleared when a checkpoint has written it.
+ * Ticket IDs are handed out in order, so the bits live in 64K-bit pages created on first use.
+ * Marking is a page lookup plus one atomic OR, so it never blocks the pool's writers.
+ */
+public class DirtyTicketBitmap {
+
+    private static final int PAGE_SHIFT = 16;                   //65536 IDs per page
+    private static final int WORDS_PER_PAGE = (1 << PAGE_SHIFT) / 64;
+
+    private final Map<Long, AtomicLongArray> pages = new ConcurrentHashMap<>();
+
+    public void mark(long ticketId) {
+        AtomicLongArray page = pages.computeIfAbsent(ticketId >>> PAGE_SHIFT, key -> new AtomicLongArray(WORDS_PER_PAGE));
+        int bit = (int) (ticketId & ((1 << PAGE_SHIFT) - 1));
+        long mask = 1L << (bit & 63);
+        int word = bit >>> 6;
+        long current = page.get(word);
+        while ((current & mask) == 0 && !page.compareAndSet(word, current, current | mask)) {
+            current = page.get(word);
+        }
+    }
+
+    public boolean isDirty(long ticketId) {
+        AtomicLongArray page = pages.get(ticketId >>> PAGE_SHIFT);
+        if (page == null) {
+            return false;
+        }
+        int bit = (int) (ticketId & ((1 << PAGE_SHIFT) - 1));
+        return (page.get(bit >>> 6) & (1L << (bit & 63))) != 0;
+    }
+
+    /**
+     * Clear every set bit and pass its ticket ID on, one word swapped out at a time.
+     * A ticket marked again while this runs is either passed on now or stays dirty for the next drain.
+     * Returns how many IDs were passed on.
+     */
+    public int drain(LongConsumer dirtyTicket) {
+        int drained = 0;
+        for (Map.Entry<Long, AtomicLongArray> entry : pages.entrySet()) {
+            long pageBase = entry.getKey() << PAGE_SHIFT;
+            AtomicLongArray page = entry.getValue();
+            for (int word = 0; word < WORDS_PER_PAGE; word++) {
+                if (page.get(word) == 0) {
+                    continue;
+                }
+                long bits = page.getAndSet(word, 0);
+                while (bits != 0) {
+                    int bit = Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    dirtyTicket.accept(pageBase + ((long) word << 6) + bit);
+                    drained++;
+                }
+            }
+        }
+        return drained;
+    }
+}
@@ -0,0 +1,293 @@
+package com.gayan.utilz;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntSupplier;
+
+/**
+ * A Lock that records, per operation, how long callers waited to get it, how long they held it and how many
+ * threads were queued when they asked. Callers name the operation: lock.lock("purchaseTicket").
+ * Only the outermost acquire of a reentrant hold counts, and time spent in a Condition await (the lock is
+ * released then) is left out of the hold. When recording is off every call goes straight to the lock.
+ */
+public class InstrumentedLock implements Lock {
+
+    private static final String UNNAMED = "unnamed";
+
+    private final String name;
+    private final Lock delegate;
+    private final IntSupplier queueLength;
+    private final boolean recording;
+    private final Map<String, OperationStats> stats = new ConcurrentHashMap<>();
+    private final ThreadLocal<Hold> holds = ThreadLocal.withInitial(Hold::new);
+
+    //The current thread's hold, so shared (read) locks work too
+    private static final class Hold {
+        int depth;
+        String operation;
+        long since;
+        long pausedSince;
+        long paused; //time spent in condition awaits during this hold
+    }
+
+    private static final class OperationStats {
+        final LatencyHistogram waits = new LatencyHistogram();
+        final LatencyHistogram holds = new LatencyHistogram();
+        final LongAdder queued = new LongAdder(); //queue lengths seen at acquire, summed
+        final LongAccumulator maxQueued = new LongAccumulator(Math::max, 0);
+    }
+
+    /** Wait and hold latencies and queue length at acquire for one operation on one lock. */
+    public record Stats(String lock, String operation, LatencyHistogram.Summary waits, LatencyHistogram.Summary holds,
+                        double meanQueueLength, long maxQueueLength) {
+
+        @Override
+        public String toString() {
+            return String.format("%-12s %-26s n=%-8d wait p50=%,d p99=%,d max=%,d ns | hold p50=%,d p99=%,d max=%,d ns | queue mean=%.1f max=%d",
+                    lock, operation, waits.getCount(), waits.getP50(), waits.getP99(), waits.getMax(),
+                    holds.getP50(), holds.getP99(), holds.getMax(), meanQueueLength, maxQueueLength);
+        }
+    }
+
+    public InstrumentedLock(String name, Lock delegate, IntSupplier queueLength, boolean recording) {
+        this.name = name;
+        this.delegate = delegate;
+        this.queueLength = queueLength;
+        this.recording = recording;
+    }
+
+    public static InstrumentedLock of(ReentrantLock lock, boolean recording) {
+        return new InstrumentedLock("lock", lock, lock::getQueueLength, recording);
+    }
+
+    public static InstrumentedLock readLockOf(ReentrantReadWriteLock lock, boolean recording) {
+        return new InstrumentedLock("read lock", lock.readLock(), lock::getQueueLength, recording);
+    }
+
+    public static InstrumentedLock writeLockOf(ReentrantReadWriteLock lock, boolean recording) {
+        return new InstrumentedLock("write lock", lock.writeLock(), lock::getQueueLength, recording);
+    }
+
+    //========== Named acquires ==========
+
+    public void lock(String operation) {
+        if (!recording) {
+            delegate.lock();
+            return;
+        }
+        int queued = queueLength.getAsInt();
+        long start = System.nanoTime();
+        delegate.lock();
+        acquired(operation, start, queued);
+    }
+
+    public void lockInterruptibly(String operation) throws InterruptedException {
+        if (!recording) {
+            delegate.lockInterruptibly();
+            return;
+        }
+        int queued = queueLength.getAsInt();
+        long start = System.nanoTime();
+        delegate.lockInterruptibly();
+        acquired(operation, start, queued);
+    }
+
+    public boolean tryLock(String operation) {
+        if (!recording) {
+            return delegate.tryLock();
+        }
+        int queued = queueLength.getAsInt();
+        long start = System.nanoTime();
+        if (!delegate.tryLock()) {
+            return false;
+        }
+        acquired(operation, start, queued);
+        return true;
+    }
+
+    public boolean tryLock(String operation, long time, TimeUnit unit) throws InterruptedException {
+        if (!recording) {
+            return delegate.tryLock(time, unit);
+        }
+        int queued = queueLength.getAsInt();
+        long start = System.nanoTime();
+        if (!delegate.tryLock(time, unit)) {
+            return false;
+        }
+        acquired(operation, start, queued);
+        return true;
+    }
+
+    private void acquired(String operation, long start, int queued) {
+        long now = System.nanoTime();
+        Hold hold = holds.get();
+        if (hold.depth++ > 0) {
+            return; // reentrant, the outer acquire is the one that waited
+        }
+        OperationStats operationStats = statsFor(operation);
+        operationStats.waits.record(now - start);
+        operationStats.queued.add(queued);
+        operationStats.maxQueued.accumulate(queued);
+        hold.operation = operation;
+        hold.since = now;
+        hold.paused = 0;
+    }
+
+    @Override
+    public void unlock() {
+        if (recording) {
+            Hold hold = holds.get();
+            if (hold.depth > 0 && --hold.depth == 0) {
+                statsFor(hold.operation).holds.record(System.nanoTime() - hold.since - hold.paused);
+            }
+        }
+        delegate.unlock();
+    }
+
+    private OperationStats statsFor(String operation) {
+        return stats.computeIfAbsent(operation, key -> new OperationStats());
+    }
+
+    //========== Lock ==========
+
+    @Override
+    public void lock() {
+        lock(UNNAMED);
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        lockInterruptibly(UNNAMED);
+    }
+
+    @Override
+    public boolean tryLock() {
+        return tryLock(UNNAMED);
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        return tryLock(UNNAMED, time, unit);
+    }
+
+    @Override
+    public Condition newCondition() {
+        Condition condition = delegate.newCondition();
+        return recording ? new HoldPausingCondition(condition) : condition;
+    }
+
+    //========== Results ==========
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isRecording() {
+        return recording;
+    }
+
+    //One entry per operation that has taken the lock, by operation name
+    public List<Stats> getStats() {
+        List<Stats> result = new ArrayList<>();
+        stats.forEach((operation, operationStats) -> {
+            LatencyHistogram.Summary waits = operationStats.waits.summary();
+            long acquires = waits.getCount();
+            result.add(new Stats(name, operation, waits, operationStats.holds.summary(),
+                    acquires == 0 ? 0 : (double) operationStats.queued.sum() / acquires,
+                    operationStats.maxQueued.get()));
+        });
+        result.sort(Comparator.comparing(Stats::operation));
+        return result;
+    }
+
+    //Await on the real condition, with the wait taken out of the caller's hold time
+    private final class HoldPausingCondition implements Condition {
+
+        private final Condition condition;
+
+        private HoldPausingCondition(Condition condition) {
+            this.condition = condition;
+        }
+
+        private Hold pause() {
+            Hold hold = holds.get();
+            hold.pausedSince = System.nanoTime();
+            return hold;
+        }
+
+        private void resume(Hold hold) {
+            hold.paused += System.nanoTime() - hold.pausedSince;
+        }
+
+        @Override
+        public void await() throws InterruptedException {
+            Hold hold = pause();
+            try {
+                condition.await();
+            } finally {
+                resume(hold);
+            }
+        }
+
+        @Override
+        public void awaitUninterruptibly() {
+            Hold hold = pause();
+            try {
+                condition.awaitUninterruptibly();
+            } finally {
+                resume(hold);
+            }
+        }
+
+        @Override
+        public long awaitNanos(long nanosTimeout) throws InterruptedException {
+            Hold hold = pause();
+            try {
+                return condition.awaitNanos(nanosTimeout);
+            } finally {
+                resume(hold);
+            }
+        }
+
+        @Override
+        public boolean await(long time, TimeUnit unit) throws InterruptedException {
+            Hold hold = pause();
+            try {
+                return condition.await(time, unit);
+            } finally {
+                resume(hold);
+            }
+        }
+
+        @Override
+        public boolean awaitUntil(Date deadline) throws InterruptedException {
+            Hold hold = pause();
+            try {
+                return condition.awaitUntil(deadline);
+            } finally {
+                resume(hold);
+            }
+        }
+
+        @Override
+        public void signal() {
+            condition.signal();
+        }
+
+        @Override
+        public void signalAll() {
+            condition.signalAll();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.gayan.utilz;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Log-bucketed latency histogram in nanoseconds. Every power of two is split into 32 buckets, so a percentile
+ * is reported within about 3% of the real value (exact below 32 ns). Values from 2^40 ns (about 18 minutes)
+ * up share the last bucket, the max is still exact.
+ *
+ * Counters are striped like LongAdder cells: a fixed power-of-two set of stripes (about one per core), each
+ * created on first use, and a thread records into the stripe its ID hashes to. Threads on different stripes
+ * never touch each other's cache lines, and memory stays bounded however many threads record (100k virtual
+ * buyers share the same few stripes). summary() adds the stripes up.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;      //buckets per power of two
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 1) * SUB_BUCKETS + SUB_BUCKETS;
+
+    //One stripe's counters: bucket counts, then total count, sum and max at the end
+    private static final int COUNT = BUCKETS;
+    private static final int SUM = BUCKETS + 1;
+    private static final int MAX = BUCKETS + 2;
+    private static final int SLOTS = BUCKETS + 3;
+
+    private static final int MAX_STRIPES = 64;
+    private static final int STRIPES = Math.min(MAX_STRIPES,
+            Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)));
+
+    private final AtomicReferenceArray<AtomicLongArray> stripes = new AtomicReferenceArray<>(STRIPES);
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        AtomicLongArray slots = stripe();
+        // A stripe may be shared, so every update is atomic; threads mostly land on different stripes
+        slots.getAndIncrement(bucketOf(value));
+        slots.getAndIncrement(COUNT);
+        slots.getAndAdd(SUM, value);
+        long max;
+        while (value > (max = slots.get(MAX)) && !slots.compareAndSet(MAX, max, value)) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private AtomicLongArray stripe() {
+        int index = probe() & (STRIPES - 1);
+        AtomicLongArray slots = stripes.get(index);
+        if (slots == null) {
+            stripes.compareAndSet(index, null, new AtomicLongArray(SLOTS));
+            slots = stripes.get(index);
+        }
+        return slots;
+    }
+
+    //Thread IDs are handed out in sequence, so they are mixed before picking a stripe
+    private static int probe() {
+        long id = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return (int) (id ^ (id >>> 32));
+    }
+
+    //Everything recorded so far, across all threads
+    public Summary summary() {
+        long[] merged = new long[SLOTS];
+        for (int i = 0; i < STRIPES; i++) {
+            AtomicLongArray slots = stripes.get(i);
+            if (slots != null) {
+                add(merged, slots);
+            }
+        }
+        return new Summary(merged);
+    }
+
+    private static void add(long[] target, AtomicLongArray slots) {
+        for (int i = 0; i < BUCKETS; i++) {
+            target[i] += slots.get(i);
+        }
+        target[COUNT] += slots.get(COUNT);
+        target[SUM] += slots.get(SUM);
+        target[MAX] = Math.max(target[MAX], slots.get(MAX));
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int shift = exponent - SUB_BITS;
+        int sub = (int) (value >>> shift) & (SUB_BUCKETS - 1); //the bits after the leading one
+        return (shift + 1) * SUB_BUCKETS + sub;
+    }
+
+    //Highest value that lands in the bucket
+    static long highestValueIn(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Counts merged at one point in time. Percentiles are the top of the bucket they fall in, never above max.
+     */
+    public static final class Summary {
+
+        private final long[] slots;
+
+        private Summary(long[] slots) {
+            this.slots = slots;
+        }
+
+        public long getCount() {
+            return slots[COUNT];
+        }
+
+        public long getMax() {
+            return slots[MAX];
+        }
+
+        public double getMean() {
+            return slots[COUNT] == 0 ? 0 : (double) slots[SUM] / slots[COUNT];
+        }
+
+        //Latency at or below which the given percentage (0-100) of the recorded calls finished, 0 if none
+        public long getValueAtPercentile(double percentile) {
+            long count = slots[COUNT];
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+            long seen = 0;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                seen += slots[bucket];
+                if (seen >= rank) {
+                    return Math.min(highestValueIn(bucket), slots[MAX]);
+                }
+            }
+            return slots[MAX];
+        }
+
+        public long getP50() {
+            return getValueAtPercentile(50);
+        }
+
+        public long getP90() {
+            return getValueAtPercentile(90);
+        }
+
+        public long getP99() {
+            return getValueAtPercentile(99);
+        }
+
+        public long getP999() {
+            return getValueAtPercentile(99.9);
+        }
+
+        //Both summaries together, e.g. the same operation on two pools or two runs
+        public Summary merge(Summary other) {
+            long[] merged = slots.clone();
+            for (int i = 0; i < BUCKETS; i++) {
+                merged[i] += other.slots[i];
+            }
+            merged[COUNT] += other.slots[COUNT];
+            merged[SUM] += other.slots[SUM];
+            merged[MAX] = Math.max(merged[MAX], other.slots[MAX]);
+            return new Summary(merged);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("n=%d p50=%,d ns p90=%,d ns p99=%,d ns p99.9=%,d ns max=%,d ns",
+                    getCount(), getP50(), getP90(), getP99(), getP999(), getMax());
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.gayan.utilz;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from a primitive long key to a non-negative int, the one ID -> slot map behind
+ * AvailableTickets and SoldTicketLedger.
+ * Linear probing, backward-shift deletion, no boxing and no per-entry nodes; at most half full.
+ * Not thread-safe: every user guards it with the same lock that guards its tickets.
+ */
+public class LongIntMap {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private long[] keys;
+    private int[] values; //value + 1, so 0 means the slot is free and any long (including 0) is a valid key
+    private int mask;
+    private int size;
+
+    public LongIntMap() {
+        this(DEFAULT_CAPACITY / 2);
+    }
+
+    public LongIntMap(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    //Value stored for the key, -1 if there is none
+    public int get(long key) {
+        int pos = hash(key) & mask;
+        while (values[pos] != 0) {
+            if (keys[pos] == key) {
+                return values[pos] - 1;
+            }
+            pos = (pos + 1) & mask;
+        }
+        return -1;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) >= 0;
+    }
+
+    //Add or replace the entry. The value must not be negative.
+    public void put(long key, int value) {
+        int pos = hash(key) & mask;
+        while (values[pos] != 0 && keys[pos] != key) {
+            pos = (pos + 1) & mask;
+        }
+        if (values[pos] == 0) {
+            size++;
+        }
+        keys[pos] = key;
+        values[pos] = value + 1;
+        if (size > (keys.length >> 1)) {
+            rehash(keys.length << 1);
+        }
+    }
+
+    //Returns the value that was stored, -1 if there was none
+    public int remove(long key) {
+        int pos = hash(key) & mask;
+        while (values[pos] != 0) {
+            if (keys[pos] == key) {
+                int value = values[pos] - 1;
+                shiftBack(pos);
+                size--;
+                return value;
+            }
+            pos = (pos + 1) & mask;
+        }
+        return -1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(values, 0);
+        size = 0;
+    }
+
+    //Close the gap left by a removal so later probes never stop early (no tombstones needed)
+    private void shiftBack(int gap) {
+        int pos = gap;
+        while (true) {
+            pos = (pos + 1) & mask;
+            if (values[pos] == 0) {
+                break;
+            }
+            int home = hash(keys[pos]) & mask;
+            // Move the entry back only if its home slot is not between the gap and its current slot
+            boolean canMove = gap <= pos ? (home <= gap || home > pos) : (home <= gap && home > pos);
+            if (canMove) {
+                keys[gap] = keys[pos];
+                values[gap] = values[pos];
+                gap = pos;
+            }
+        }
+        values[gap] = 0;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != 0) {
+                int pos = hash(oldKeys[i]) & mask;
+                while (values[pos] != 0) {
+                    pos = (pos + 1) & mask;
+                }
+                keys[pos] = oldKeys[i];
+                values[pos] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int needed = (int) Math.min(1 << 30, Math.max(DEFAULT_CAPACITY, 2L * expectedSize + 1));
+        int size = Integer.highestOneBit(needed);
+        return size == needed ? size : size << 1;
+    }
+
+    //Stafford mix (murmur3 finalizer) so sequential IDs spread over the table
+    public static int hash(long key) {
+        long h = key;
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        h = h ^ (h >>> 33);
+        return (int) h;
+    }
+}
@@ -0,0 +1,190 @@
+package com.gayan.utilz;
+
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MonitorInfo;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wait and hold sampling for a pool guarded by synchronized, which has no lock object to time.
+ * Every interval it takes a ThreadMXBean dump of all threads: a thread BLOCKED on the monitor is a wait sample
+ * for the method it is trying to enter, the thread that owns the monitor a hold sample for the method that
+ * locked it. Samples times the interval estimate the time spent.
+ *
+ * ThreadMXBean's blocked time is per thread over every monitor (System.out's included), so it is only added up
+ * between two samples that both caught the thread blocked on this monitor. Turning that on is JVM-wide, so it is
+ * only on while a sampler is open: the last one closed puts back whatever the setting was before the first.
+ */
+public class MonitorContentionSampler implements AutoCloseable {
+
+    private final Object monitor;
+    private final String monitorClass;
+    private final int monitorIdentity;
+    private final long intervalMillis;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final ScheduledExecutorService scheduler;
+    private boolean closed; //guarded by CONTENTION_MONITORING
+
+    //Samplers open at once, and whether contention monitoring was already on before the first of them
+    private static final Object CONTENTION_MONITORING = new Object();
+    private static int openSamplers;
+    private static boolean monitoringWasEnabled;
+
+    private final Map<String, OperationSamples> samples = new ConcurrentHashMap<>();
+    private final AtomicLong sampleCount = new AtomicLong();
+    private final LongAccumulator maxBlocked = new LongAccumulator(Math::max, 0); //most threads blocked in one sample
+    private Map<Long, Long> lastBlockedTime = new HashMap<>(); //thread ID -> blocked ms, for threads blocked here last sample
+
+    private static final class OperationSamples {
+        final LongAdder waits = new LongAdder();
+        final LongAdder holds = new LongAdder();
+        final LongAdder blockedMillis = new LongAdder();
+    }
+
+    /** Samples of one operation: waiting for the monitor, holding it, and ThreadMXBean blocked time while waiting. */
+    public record Stats(String operation, long waitSamples, long holdSamples, long estimatedWaitMillis,
+                        long estimatedHoldMillis, long blockedMillis) {
+
+        @Override
+        public String toString() {
+            return String.format("%-12s %-26s wait %d samples (~%d ms, %d ms blocked) | hold %d samples (~%d ms)",
+                    "monitor", operation, waitSamples, estimatedWaitMillis, blockedMillis, holdSamples, estimatedHoldMillis);
+        }
+    }
+
+    public MonitorContentionSampler(Object monitor, Duration interval) {
+        this.monitor = monitor;
+        this.monitorClass = monitor.getClass().getName();
+        this.monitorIdentity = System.identityHashCode(monitor);
+        this.intervalMillis = Math.max(1, interval.toMillis());
+        synchronized (CONTENTION_MONITORING) {
+            if (openSamplers++ == 0 && threads.isThreadContentionMonitoringSupported()) {
+                monitoringWasEnabled = threads.isThreadContentionMonitoringEnabled();
+                threads.setThreadContentionMonitoringEnabled(true);
+            }
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Monitor-Sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::sample, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    //Runs on the sampler thread only
+    private void sample() {
+        Map<Long, Long> blockedNow = new HashMap<>();
+        Set<String> holders = new HashSet<>();
+        for (ThreadInfo info : threads.dumpAllThreads(true, false)) {
+            if (info == null) {
+                continue;
+            }
+            LockInfo waitingOn = info.getLockInfo();
+            if (info.getThreadState() == Thread.State.BLOCKED && isMonitor(waitingOn)) {
+                String operation = operationOf(info.getStackTrace(), 0);
+                OperationSamples operationSamples = statsFor(operation);
+                operationSamples.waits.increment();
+                long blockedTime = info.getBlockedTime(); // -1 when contention monitoring is off
+                Long before = lastBlockedTime.get(info.getThreadId());
+                if (blockedTime >= 0 && before != null && blockedTime > before) {
+                    operationSamples.blockedMillis.add(blockedTime - before);
+                }
+                blockedNow.put(info.getThreadId(), blockedTime);
+            }
+            //The outermost frame that locked the monitor is the operation holding it
+            MonitorInfo outermost = null;
+            for (MonitorInfo locked : info.getLockedMonitors()) {
+                if (isMonitor(locked) && (outermost == null || locked.getLockedStackDepth() > outermost.getLockedStackDepth())) {
+                    outermost = locked;
+                }
+            }
+            if (outermost != null && outermost.getLockedStackFrame() != null) {
+                holders.add(operationOf(info.getStackTrace(), outermost.getLockedStackDepth()));
+            }
+        }
+        holders.forEach(operation -> statsFor(operation).holds.increment());
+        maxBlocked.accumulate(blockedNow.size());
+        lastBlockedTime = blockedNow;
+        sampleCount.incrementAndGet();
+    }
+
+    private boolean isMonitor(LockInfo lock) {
+        return lock != null && lock.getIdentityHashCode() == monitorIdentity && lock.getClassName().equals(monitorClass);
+    }
+
+    //Outermost frame of the monitor's own class from the given depth down, the public pool method rather than a helper
+    private String operationOf(StackTraceElement[] stack, int fromDepth) {
+        String operation = fromDepth < stack.length ? stack[fromDepth].getMethodName() : "unknown";
+        for (int i = Math.max(0, fromDepth); i < stack.length; i++) {
+            if (stack[i].getClassName().equals(monitorClass)) {
+                operation = stack[i].getMethodName();
+            }
+        }
+        return operation;
+    }
+
+    private OperationSamples statsFor(String operation) {
+        return samples.computeIfAbsent(operation, key -> new OperationSamples());
+    }
+
+    public long getSampleCount() {
+        return sampleCount.get();
+    }
+
+    public long getMaxBlocked() {
+        return maxBlocked.get();
+    }
+
+    public Object getMonitor() {
+        return monitor;
+    }
+
+    //One entry per operation seen waiting for or holding the monitor, by operation name
+    public List<Stats> getStats() {
+        List<Stats> result = new ArrayList<>();
+        samples.forEach((operation, operationSamples) -> {
+            long waits = operationSamples.waits.sum();
+            long holds = operationSamples.holds.sum();
+            result.add(new Stats(operation, waits, holds, waits * intervalMillis, holds * intervalMillis,
+                    operationSamples.blockedMillis.sum()));
+        });
+        result.sort(Comparator.comparing(Stats::operation));
+        return result;
+    }
+
+    //Stop sampling, the results so far stay readable
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (CONTENTION_MONITORING) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (--openSamplers == 0 && threads.isThreadContentionMonitoringSupported()) {
+                threads.setThreadContentionMonitoringEnabled(monitoringWasEnabled);
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.gayan.utilz;
+
+import com.gayan.entities.Ticket;
+import com.gayan.entities.TicketPool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Memory-mapped snapshot of a pool: every ticket with its sold state, plus the ticket ID high-water mark.
+ * Event, vendor and location names repeat across thousands of tickets, so they are stored once in a string
+ * table and each ticket is a fixed-width 32 byte record pointing into it. Restoring reads the records at fixed
+ * offsets straight out of the mapping, there is no per-ticket parsing.
+ *
+ * Layout: [magic int][version int][ticket count int][string count int][high-water mark long]
+ *         [string table: length-prefixed UTF-8][padding to 8][ticket records]
+ * Record: [ticketId long][price double][event int][vendor int][location int][sold byte][3 bytes padding]
+ */
+public final class PoolSnapshot {
+
+    private static final int MAGIC = 0x544B534E; //"TKSN"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+    public static final int RECORD_BYTES = 32;
+
+    private PoolSnapshot() {
+    }
+
+    /** Tickets read back from a snapshot, not yet in any pool. */
+    public record Contents(List<Ticket> tickets, long highWaterMark) {
+    }
+
+    //========== Writing ==========
+
+    /**
+     * Write the pool's tickets to the file, replacing it. The tickets are read one by one while the pool keeps
+     * running, so take it while the pool is quiet if the snapshot has to be an exact point in time.
+     */
+    public static void write(TicketPool pool, Path file) throws IOException {
+        List<Ticket> tickets = pool.getAllTickets();
+        write(tickets, pool.getTicketIdHighWaterMark(), file); // read after the tickets, so it covers every ID in them
+    }
+
+    public static void write(List<Ticket> tickets, long highWaterMark, Path file) throws IOException {
+        Map<String, Integer> stringIds = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        int[] references = new int[tickets.size() * 3];
+        double[] prices = new double[tickets.size()]; //read from the same version as the names
+        long stringBytes = 0;
+        for (int i = 0; i < tickets.size(); i++) {
+            Ticket.Version version = tickets.get(i).getVersion();
+            prices[i] = version.price();
+            String[] names = {version.getEventName(), version.getVendorName(), version.getLocation()};
+            for (int j = 0; j < 3; j++) {
+                String name = names[j] == null ? "" : names[j];
+                Integer id = stringIds.get(name);
+                if (id == null) {
+                    id = strings.size();
+                    stringIds.put(name, id);
+                    byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                    strings.add(bytes);
+                    stringBytes += 4 + bytes.length;
+                }
+                references[i * 3 + j] = id;
+            }
+        }
+
+        long recordsOffset = align8(HEADER_BYTES + stringBytes);
+        long size = recordsOffset + (long) tickets.size() * RECORD_BYTES;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Snapshot of " + tickets.size() + " tickets is larger than one mapping (2 GB)");
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(tickets.size()).putInt(strings.size()).putLong(highWaterMark);
+            for (byte[] bytes : strings) {
+                buffer.putInt(bytes.length).put(bytes);
+            }
+
+            int base = (int) recordsOffset;
+            for (int i = 0; i < tickets.size(); i++, base += RECORD_BYTES) {
+                Ticket ticket = tickets.get(i);
+                buffer.putLong(base, ticket.getTicketId());
+                buffer.putDouble(base + 8, prices[i]);
+                buffer.putInt(base + 16, references[i * 3]);
+                buffer.putInt(base + 20, references[i * 3 + 1]);
+                buffer.putInt(base + 24, references[i * 3 + 2]);
+                buffer.put(base + 28, (byte) (ticket.isSold() ? 1 : 0));
+            }
+            buffer.force();
+        }
+    }
+
+    //========== Reading ==========
+
+    public static Contents read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+                throw new IOException(file + " is not a ticket pool snapshot");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            int count = buffer.getInt();
+            int stringCount = buffer.getInt();
+            long highWaterMark = buffer.getLong();
+
+            // Names are shared, so each one is decoded once and every ticket gets the same String instance
+            String[] strings = new String[stringCount];
+            for (int i = 0; i < stringCount; i++) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            int base = (int) align8(buffer.position());
+            if (base + (long) count * RECORD_BYTES > buffer.limit()) {
+                throw new IOException(file + " is truncated");
+            }
+            List<Ticket> tickets = new ArrayList<>(count);
+            for (int i = 0; i < count; i++, base += RECORD_BYTES) {
+                Ticket ticket = new Ticket(buffer.getLong(base), strings[buffer.getInt(base + 16)],
+                        strings[buffer.getInt(base + 20)], strings[buffer.getInt(base + 24)], buffer.getDouble(base + 8));
+                ticket.setSold(buffer.get(base + 28) == 1);
+                tickets.add(ticket);
+            }
+            return new Contents(tickets, highWaterMark);
+        }
+    }
+
+    /**
+     * Load a snapshot into an empty pool and move its ticket IDs past the snapshot's high-water mark.
+     * Returns the tickets that made it into the pool.
+     */
+    public static List<Ticket> restore(Path file, TicketPool pool) throws IOException {
+        Contents contents = read(file);
+        List<Ticket> restored = loadInto(pool, contents.tickets());
+        pool.advanceTicketIds(contents.highWaterMark());
+        return restored;
+    }
+
+    /**
+     * Put tickets into an empty pool through its public API only, so any TicketPool works, keeping each sold flag.
+     * Sold tickets are added as they are: every pool archives a ticket that is already sold straight away,
+     * without putting it on sale or taking room. Then the unsold ones are added.
+     * Stops when the pool is full. Returns the tickets that made it into the pool.
+     */
+    public static List<Ticket> loadInto(TicketPool pool, List<Ticket> tickets) {
+        if (tickets.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (pool.getAvailableTicketCount() > 0) {
+            throw new IllegalStateException("Tickets can only be loaded into an empty pool");
+        }
+
+        List<Ticket> sold = new ArrayList<>();
+        List<Ticket> available = new ArrayList<>();
+        for (Ticket ticket : tickets) {
+            if (ticket.isSold()) {
+                sold.add(ticket);
+            } else {
+                available.add(ticket);
+            }
+        }
+
+        List<Ticket> restored = new ArrayList<>(tickets.size());
+        int added = pool.addTickets(sold);
+        restored.addAll(sold.subList(0, added));
+        if (added == sold.size()) {
+            added = pool.addTickets(available);
+            restored.addAll(available.subList(0, added));
+        }
+        if (restored.size() < tickets.size()) {
+            System.out.println("Loading stopped, pool is full (" + restored.size() + " of " + tickets.size() + " tickets loaded).");
+        }
+        return restored;
+    }
+
+    private static long align8(long offset) {
+        return (offset + 7) & ~7L;
+    }
+}
@@ -0,0 +1,66 @@
+package com.gayan.utilz;
+
+import com.gayan.entities.Ticket;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * FIFO queue of pending asynchronous purchases (purchaseTicketAsync).
+ * Nothing is parked while waiting: a buyer is just a CompletableFuture in the queue, and whoever makes a ticket
+ * available (addTicket, cancelTicket) hands it to the oldest waiter with drain(). Futures that reach their
+ * deadline complete exceptionally with a TimeoutException and are skipped.
+ * Lock-free, so drain() can (and should) be called after the pool's own lock is released.
+ */
+public class PurchaseWaiters {
+
+    private final Queue<CompletableFuture<Ticket>> waiters = new ConcurrentLinkedQueue<>();
+
+    //Queue a new waiter that times out after the given number of milliseconds
+    public CompletableFuture<Ticket> register(long timeoutMillis) {
+        CompletableFuture<Ticket> future = new CompletableFuture<>();
+        waiters.offer(future);
+        return future.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean hasWaiters() {
+        return !waiters.isEmpty();
+    }
+
+    /**
+     * Hand tickets to waiters while there are both.
+     * take must return an already purchased (sold) ticket or null when the pool is empty.
+     * giveBack puts a ticket back on sale when its waiter timed out in the meantime, and must wake the
+     * workers parked in the pool's WorkerWaitQueues like a cancel does.
+     * Both the pool side (after publishing a ticket) and the buyer side (after registering) call this,
+     * so whichever runs second always sees the other and no waiter is left behind.
+     */
+    public void drain(Supplier<Ticket> take, Consumer<Ticket> giveBack) {
+        while (true) {
+            CompletableFuture<Ticket> waiter = waiters.peek();
+            if (waiter == null) {
+                return;
+            }
+            if (waiter.isDone()) {
+                waiters.remove(waiter); // timed out, drop it
+                continue;
+            }
+            Ticket ticket = take.get();
+            if (ticket == null) {
+                return;
+            }
+            // remove() fails if another drainer got this waiter first
+            if (!(waiters.remove(waiter) && waiter.complete(ticket))) {
+                giveBack.accept(ticket);
+            }
+        }
+    }
+
+    public int size() {
+        return waiters.size();
+    }
+}
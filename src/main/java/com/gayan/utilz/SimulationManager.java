@@ -2,28 +2,52 @@ package com.gayan.utilz;
 
 import com.gayan.entities.TicketPool;
 import com.gayan.versions.BlockingQueueTicketPool;
+import com.gayan.versions.CheckpointingTicketPool;
+import com.gayan.versions.JournaledTicketPool;
+import com.gayan.versions.LockFreeTicketPool;
+import com.gayan.versions.ManagedTicketPool;
+import com.gayan.versions.OffHeapTicketPool;
 import com.gayan.versions.ReentrantLockTicketPool;
+import com.gayan.versions.ShardedTicketPool;
+import com.gayan.versions.StampedLockTicketPool;
 import com.gayan.versions.SynchronizedTicketPool;
 import com.gayan.workers.Consumer;
 import com.gayan.workers.Producer;
 import com.gayan.workers.Reader;
 import com.gayan.workers.Writer;
 
+import javax.management.JMException;
+import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadInfo;
 import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
 import java.text.MessageFormat;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
 import static com.gayan.utilz.TerminalColorConstant.WHITE_BACKGROUND;
 
 public class SimulationManager {
+    private static final int WORKER_DETAIL_LIMIT = 50; //above this, summaries show thread state counts instead of one row per thread
+    private static final int MAX_BULK_CONSUMERS = 200_000;
+    private static final Path JOURNAL_FILE = Path.of("ticket-journal.bin");
+    private static final Path CHECKPOINT_DIR = Path.of("ticket-checkpoints");
+    private static final Duration CHECKPOINT_INTERVAL = Duration.ofSeconds(5);
+    private static final int DELTAS_PER_COMPACTION = 12; //about one new base image a minute
+
     private TicketPool ticketPool;
     private int capacity;
     private int syncChoice;
     private String syncMethodName;
+    private boolean virtualThreads; //run workers on virtual threads instead of platform threads
+    private JournaledTicketPool journaledPool; //set in durable mode, closed on shutdown
+    private CheckpointingTicketPool checkpointingPool; //set in checkpoint mode, closed on shutdown
+    private ManagedTicketPool managedPool; //the pool as registered over JMX, unregistered on shutdown
 
     private final List<Thread> producerThreads = new ArrayList<>();
     private final List<Producer> producers = new ArrayList<>();
@@ -49,8 +73,8 @@ public class SimulationManager {
         // Choose Synchronization Method
         printSyncMethodMenu();
         int syncChoice = getValidatedIntegerInput(scanner,
-                "Enter your choice (1-3): ",
-                1, 3, TerminalColorConstant.WHITE_BOLD);
+                "Enter your choice (1-7): ",
+                1, 7, TerminalColorConstant.WHITE_BOLD);
 
         System.out.println("===============================================");
         //Sync Method based switching to instantiate the Ticket Pool
@@ -70,20 +94,92 @@ public class SimulationManager {
                 syncMethodName = "Blocking Queue Version";
                 System.out.println(TerminalColorConstant.GREEN + "Using " + syncMethodName + " for this simulation." + TerminalColorConstant.RESET);
             }
+            case 4 -> {
+                ticketPool = new LockFreeTicketPool(capacity);
+                syncMethodName = "Lock-Free Ring Buffer Version";
+                System.out.println(TerminalColorConstant.GREEN + "Using " + syncMethodName + " for this simulation." + TerminalColorConstant.RESET);
+            }
+            case 5 -> {
+                ticketPool = new ShardedTicketPool(capacity);
+                syncMethodName = "Sharded Version";
+                System.out.println(TerminalColorConstant.GREEN + "Using " + syncMethodName + " for this simulation." + TerminalColorConstant.RESET);
+            }
+            case 6 -> {
+                ticketPool = new StampedLockTicketPool(capacity);
+                syncMethodName = "Stamped Lock Version";
+                System.out.println(TerminalColorConstant.GREEN + "Using " + syncMethodName + " for this simulation." + TerminalColorConstant.RESET);
+            }
+            case 7 -> {
+                ticketPool = new OffHeapTicketPool(capacity);
+                syncMethodName = "Off-Heap Columns Version";
+                System.out.println(TerminalColorConstant.GREEN + "Using " + syncMethodName + " for this simulation." + TerminalColorConstant.RESET);
+            }
             default -> {
                 System.out.println("\u001B[31mInvalid choice. Exiting...\u001B[0m");
                 System.exit(1);
             }
         }
 
+        // Choose Worker Thread Mode
+        printThreadModeMenu();
+        int threadModeChoice = getValidatedIntegerInput(scanner,
+                "Enter your choice (1-2): ",
+                1, 2, TerminalColorConstant.WHITE_BOLD);
+        virtualThreads = threadModeChoice == 2;
+        if (virtualThreads && !WorkerThreads.virtualThreadsSupported()) {
+            System.out.println(TerminalColorConstant.YELLOW + "Virtual threads need Java 21 or newer (running " +
+                    Runtime.version().feature() + "), using platform threads." + TerminalColorConstant.RESET);
+            virtualThreads = false;
+        }
+        System.out.println(TerminalColorConstant.GREEN + "Workers run on " + threadModeName() + "." + TerminalColorConstant.RESET);
+
+        // Choose Durability Mode
+        printDurabilityMenu();
+        int durabilityChoice = getValidatedIntegerInput(scanner,
+                "Enter your choice (1-3): ",
+                1, 3, TerminalColorConstant.WHITE_BOLD);
+        if (durabilityChoice == 2) {
+            try {
+                journaledPool = new JournaledTicketPool(ticketPool, JOURNAL_FILE);
+                ticketPool = journaledPool;
+                System.out.println(TerminalColorConstant.GREEN + "Journaling to " + JOURNAL_FILE.toAbsolutePath() +
+                        ", restored " + ticketPool.getAllTicketsCount() + " tickets." + TerminalColorConstant.RESET);
+            } catch (IOException e) {
+                System.out.println(TerminalColorConstant.RED + "Could not open the journal (" + e.getMessage() +
+                        "), running in memory only." + TerminalColorConstant.RESET);
+            }
+        } else if (durabilityChoice == 3) {
+            try {
+                checkpointingPool = new CheckpointingTicketPool(ticketPool, CHECKPOINT_DIR, CHECKPOINT_INTERVAL, DELTAS_PER_COMPACTION);
+                ticketPool = checkpointingPool;
+                System.out.println(TerminalColorConstant.GREEN + "Checkpointing to " + CHECKPOINT_DIR.toAbsolutePath() +
+                        " every " + CHECKPOINT_INTERVAL.toSeconds() + "s, restored " + ticketPool.getAllTicketsCount() +
+                        " tickets in " + checkpointingPool.getRecovery().millis() + " ms." + TerminalColorConstant.RESET);
+            } catch (IOException e) {
+                System.out.println(TerminalColorConstant.RED + "Could not open the checkpoints (" + e.getMessage() +
+                        "), running in memory only." + TerminalColorConstant.RESET);
+            }
+        }
+
+        // Live metrics, resize and producer pause over JMX (jconsole, VisualVM)
+        try {
+            managedPool = ManagedTicketPool.register(ticketPool, syncMethodName);
+            ticketPool = managedPool;
+            System.out.println(TerminalColorConstant.GREEN + "Pool metrics on JMX as " + managedPool.getObjectName() + "." +
+                    TerminalColorConstant.RESET);
+        } catch (JMException e) {
+            System.out.println(TerminalColorConstant.RED + "Could not register the pool over JMX (" + e.getMessage() +
+                    "), menu status only." + TerminalColorConstant.RESET);
+        }
+
         startDeadlockMonitor();
         boolean running = true;
 
         while(running){
             printMenu();
             int menuChoice = getValidatedIntegerInput(scanner,
-                    "Enter your choice (0-14): ",
-                    0, 14, TerminalColorConstant.WHITE_BOLD);
+                    "Enter your choice (0-15): ",
+                    0, 15, TerminalColorConstant.WHITE_BOLD);
 
             switch (menuChoice) {
                 case 1 -> {
@@ -124,8 +220,14 @@ public class SimulationManager {
 
                     int creationRateMillis = creationRateChoice * 1000; // 1 -> 1000ms, 2 -> 2000ms, etc.
 
+                    // Ask for batch size (vendors loading inventory in blocks)
+                    String batchMsg = MessageFormat.format(
+                            TerminalColorConstant.CYAN + "\nEnter tickets added per batch (1-{0}): " + TerminalColorConstant.RESET,
+                            maxTickets);
+                    int batchSize = getValidatedIntegerInput(scanner, batchMsg, 1, maxTickets, TerminalColorConstant.WHITE_BOLD);
+
                     // Create and add producer
-                    addProducer(creationRateMillis, maxTickets);
+                    addProducer(creationRateMillis, maxTickets, batchSize);
                     printHeader("Add Custom Producer");
                 }
 
@@ -158,8 +260,15 @@ public class SimulationManager {
 
                     int creationRateMillis = creationRateChoice * 1000; // 1 -> 1000ms, 2 -> 2000ms, etc.
                     boolean canceled = allowCancel == 1;
+
+                    // Ask for group size (seats bought together)
+                    String batchMsg = MessageFormat.format(
+                            TerminalColorConstant.CYAN + "\nEnter seats purchased per batch (1-{0}): " + TerminalColorConstant.RESET,
+                            maxTickets);
+                    int batchSize = getValidatedIntegerInput(scanner, batchMsg, 1, maxTickets, TerminalColorConstant.WHITE_BOLD);
+
                     // Create and add Consumer
-                    addConsumer(creationRateMillis, maxTickets, canceled);
+                    addConsumer(creationRateMillis, maxTickets, canceled, batchSize);
                     printHeader("Custom Consumer");
                 }
 
@@ -239,6 +348,14 @@ public class SimulationManager {
                     printWorkersSummary();
                     printHeader("Show Workers & Threads Summary");
                 }
+                case 15 -> {
+                    String msg = MessageFormat.format(
+                            TerminalColorConstant.CYAN + "\nEnter the number of buyers to start (1-{0}): " + TerminalColorConstant.RESET,
+                            MAX_BULK_CONSUMERS);
+                    int count = getValidatedIntegerInput(scanner, msg, 1, MAX_BULK_CONSUMERS, TerminalColorConstant.WHITE_BOLD);
+                    addConsumers(count);
+                    printHeader("Add Buyers in Bulk");
+                }
                 case 0 -> {
                     shutdown();
                     running = false;
@@ -279,14 +396,44 @@ public class SimulationManager {
         System.out.println(TerminalColorConstant.CYAN + "1. Synchronized Version" + TerminalColorConstant.RESET);
         System.out.println(TerminalColorConstant.CYAN + "2. ReentrantLock Version" + TerminalColorConstant.RESET);
         System.out.println(TerminalColorConstant.CYAN + "3. BlockingQueue Version" + TerminalColorConstant.RESET);
-        System.out.print(TerminalColorConstant.WHITE_BOLD + "Enter your choice (1-3): " + TerminalColorConstant.RESET);
+        System.out.println(TerminalColorConstant.CYAN + "4. Lock-Free Ring Buffer Version" + TerminalColorConstant.RESET);
+        System.out.println(TerminalColorConstant.CYAN + "5. Sharded Version" + TerminalColorConstant.RESET);
+        System.out.println(TerminalColorConstant.CYAN + "6. StampedLock Version" + TerminalColorConstant.RESET);
+        System.out.println(TerminalColorConstant.CYAN + "7. Off-Heap Columns Version" + TerminalColorConstant.RESET);
+        System.out.print(TerminalColorConstant.WHITE_BOLD + "Enter your choice (1-7): " + TerminalColorConstant.RESET);
+
+    }
 
+    private static void printThreadModeMenu() {
+        System.out.println(TerminalColorConstant.YELLOW_BOLD + "Choose Worker Thread Mode:" + TerminalColorConstant.RESET);
+        System.out.println(TerminalColorConstant.CYAN + "1. Platform Threads" + TerminalColorConstant.RESET);
+        System.out.println(TerminalColorConstant.CYAN + "2. Virtual Threads (Java 21+, for 100k+ buyers)" + TerminalColorConstant.RESET);
+    }
+
+    private static void printDurabilityMenu() {
+        System.out.println(TerminalColorConstant.YELLOW_BOLD + "Choose Durability Mode:" + TerminalColorConstant.RESET);
+        System.out.println(TerminalColorConstant.CYAN + "1. In Memory" + TerminalColorConstant.RESET);
+        System.out.println(TerminalColorConstant.CYAN + "2. Journaled (replays " + JOURNAL_FILE + " on startup)" + TerminalColorConstant.RESET);
+        System.out.println(TerminalColorConstant.CYAN + "3. Checkpointed (changed tickets every " + CHECKPOINT_INTERVAL.toSeconds() +
+                "s, restores " + CHECKPOINT_DIR + " on startup)" + TerminalColorConstant.RESET);
+    }
+
+    private String durabilityName() {
+        if (journaledPool != null) return "Journaled";
+        if (checkpointingPool != null) return "Checkpointed";
+        return "In Memory";
+    }
+
+    private String threadModeName() {
+        return virtualThreads ? "Virtual Threads" : "Platform Threads";
     }
 
     private void printHeader(String lastAction) {
         System.out.println(TerminalColorConstant.YELLOW_BOLD + "================ Simulation Info ================" + TerminalColorConstant.RESET);
         System.out.println(TerminalColorConstant.CYAN + "Max Pool Capacity: " + TerminalColorConstant.RESET + capacity);
         System.out.println(TerminalColorConstant.CYAN + "Synchronization Method: " + TerminalColorConstant.RESET + syncMethodName);
+        System.out.println(TerminalColorConstant.CYAN + "Thread Mode: " + TerminalColorConstant.RESET + threadModeName());
+        System.out.println(TerminalColorConstant.CYAN + "Durability: " + TerminalColorConstant.RESET + durabilityName());
         System.out.println(TerminalColorConstant.CYAN + "Last Action: " + TerminalColorConstant.RESET + lastAction);
         System.out.println(TerminalColorConstant.YELLOW_BOLD + "=================================================" + TerminalColorConstant.RESET);
     }
@@ -337,6 +484,10 @@ public class SimulationManager {
         System.out.println(TerminalColorConstant.YELLOW + "13. Show Ticket Pool Status" + TerminalColorConstant.RESET);
         System.out.println(TerminalColorConstant.YELLOW + "14. Show Workers & Threads Summary" + TerminalColorConstant.RESET);
 
+        // Load Operations Group
+        System.out.println(TerminalColorConstant.GREEN_BOLD + "\n-- Load Operations --" + TerminalColorConstant.RESET);
+        System.out.println(TerminalColorConstant.BLUE + "15. Add Buyers in Bulk" + TerminalColorConstant.RESET);
+
         // System Operations
         System.out.println(TerminalColorConstant.RED_BOLD + "\n-- System --" + TerminalColorConstant.RESET);
         System.out.println(TerminalColorConstant.RED + "0. Shutdown" + TerminalColorConstant.RESET);
@@ -404,52 +555,44 @@ public class SimulationManager {
     private void printWorkersSummary() {
         System.out.println(TerminalColorConstant.YELLOW_BOLD + "\n========= WORKERS & THREADS SUMMARY =========" + TerminalColorConstant.RESET);
 
-        // Print producers summary
-        System.out.println(TerminalColorConstant.GREEN_BOLD + "\n--- Producers (" + producers.size() + ") ---" + TerminalColorConstant.RESET);
-        for (int i = 0; i < producers.size(); i++) {
-            Thread thread = producerThreads.get(i);
-            System.out.printf("%-20s | %-15s | %-15s\n",
-                    thread.getName(),
-                    thread.getState(),
-                    thread.isAlive() ? "Running" : "Stopped");
-        }
-
-        // Print consumers summary
-        System.out.println(TerminalColorConstant.CYAN_BOLD + "\n--- Consumers (" + consumers.size() + ") ---" + TerminalColorConstant.RESET);
-        for (int i = 0; i < consumers.size(); i++) {
-            Thread thread = consumerThreads.get(i);
-            System.out.printf("%-20s | %-15s | %-15s\n",
-                    thread.getName(),
-                    thread.getState(),
-                    thread.isAlive() ? "Running" : "Stopped");
-        }
-
-        // Print writers summary
-        System.out.println(TerminalColorConstant.PURPLE_BOLD + "\n--- Writers (" + writers.size() + ") ---" + TerminalColorConstant.RESET);
-        for (int i = 0; i < writers.size(); i++) {
-            Thread thread = writerThreads.get(i);
-            System.out.printf("%-20s | %-15s | %-15s\n",
-                    thread.getName(),
-                    thread.getState(),
-                    thread.isAlive() ? "Running" : "Stopped");
-        }
+        printWorkerThreads("Producers", TerminalColorConstant.GREEN_BOLD, producerThreads);
+        printWorkerThreads("Consumers", TerminalColorConstant.CYAN_BOLD, consumerThreads);
+        printWorkerThreads("Writers", TerminalColorConstant.PURPLE_BOLD, writerThreads);
+        printWorkerThreads("Readers", TerminalColorConstant.BLUE_BOLD, readerThreads);
 
-        // Print readers summary
-        System.out.println(TerminalColorConstant.BLUE_BOLD + "\n--- Readers (" + readers.size() + ") ---" + TerminalColorConstant.RESET);
-        for (int i = 0; i < readers.size(); i++) {
-            Thread thread = readerThreads.get(i);
-            System.out.printf("%-20s | %-15s | %-15s\n",
-                    thread.getName(),
-                    thread.getState(),
-                    thread.isAlive() ? "Running" : "Stopped");
+        if (consumers.size() <= WORKER_DETAIL_LIMIT) {
+            Consumer.printConsumerSummary();
         }
 
         // Print overall statistics
         int totalThreads = producers.size() + consumers.size() + writers.size() + readers.size();
-        System.out.println(TerminalColorConstant.YELLOW_BOLD + "\n--- Total Threads: " + totalThreads + " ---" + TerminalColorConstant.RESET);
+        System.out.println(TerminalColorConstant.YELLOW_BOLD + "\n--- Total Threads: " + totalThreads +
+                " (" + threadModeName() + ") ---" + TerminalColorConstant.RESET);
         System.out.println(TerminalColorConstant.YELLOW_BOLD + "===========================================" + TerminalColorConstant.RESET);
     }
 
+    //One row per thread for small groups, thread state counts for large ones (hundreds of thousands of buyers)
+    private void printWorkerThreads(String title, String color, List<Thread> threads) {
+        System.out.println(color + "\n--- " + title + " (" + threads.size() + ") ---" + TerminalColorConstant.RESET);
+        if (threads.size() <= WORKER_DETAIL_LIMIT) {
+            for (Thread thread : threads) {
+                System.out.printf("%-20s | %-15s | %-15s\n",
+                        thread.getName(),
+                        thread.getState(),
+                        thread.isAlive() ? "Running" : "Stopped");
+            }
+            return;
+        }
+
+        Map<Thread.State, Integer> states = new EnumMap<>(Thread.State.class);
+        for (Thread thread : threads) {
+            states.merge(thread.getState(), 1, Integer::sum);
+        }
+        for (Map.Entry<Thread.State, Integer> entry : states.entrySet()) {
+            System.out.printf("%-20s | %-15d\n", entry.getKey(), entry.getValue());
+        }
+    }
+
     //========== Worker Methods ==========
 
     private void addProducer() {
@@ -462,14 +605,14 @@ public class SimulationManager {
                 threadName,
                 "Colombo",
                 100.00);
-        Thread thread = new Thread(producer, threadName);
+        Thread thread = WorkerThreads.newThread(producer, threadName, virtualThreads);
         producers.add(producer);
         producerThreads.add(thread);
         thread.start();
         System.out.println(TerminalColorConstant.GREEN + thread.getName() + " started successfully." + TerminalColorConstant.RESET);
     }
 
-    private void addProducer(int creationRateMillis, int maxTickets) {
+    private void addProducer(int creationRateMillis, int maxTickets, int batchSize) {
         String threadName = "Producer-" + (producers.size() + 1);
         Producer producer = new Producer(
                 ticketPool,
@@ -478,14 +621,15 @@ public class SimulationManager {
                 "Concert",
                 threadName,
                 "Colombo",
-                100.00);
-        Thread thread = new Thread(producer, threadName);
+                100.00,
+                batchSize);
+        Thread thread = WorkerThreads.newThread(producer, threadName, virtualThreads);
         producers.add(producer);
         producerThreads.add(thread);
         thread.start();
         System.out.println(TerminalColorConstant.GREEN + thread.getName() +
                 " started successfully (Rate: " + creationRateMillis + "ms, Max: " +
-                maxTickets + " tickets)" + TerminalColorConstant.RESET);
+                maxTickets + " tickets, Batch: " + batchSize + ")" + TerminalColorConstant.RESET);
     }
 
     private void addConsumer() {
@@ -496,31 +640,49 @@ public class SimulationManager {
                 5,
                 true);
 
-        Thread thread = new Thread(consumer, threadName);
+        Thread thread = WorkerThreads.newThread(consumer, threadName, virtualThreads);
         consumers.add(consumer);
         consumerThreads.add(thread);
         thread.start();
         System.out.println(TerminalColorConstant.GREEN + thread.getName() + " started successfully." + TerminalColorConstant.RESET);
     }
 
-    private void addConsumer(int purchaseLimit, int purchaseRate, boolean simulateCancel) {
+    private void addConsumer(int purchaseLimit, int purchaseRate, boolean simulateCancel, int batchSize) {
         String threadName = "Consumer-" + (consumers.size() + 1);
         Consumer consumer = new Consumer(
                 ticketPool,
                 purchaseLimit,
                 purchaseRate,
-                simulateCancel);
+                simulateCancel,
+                batchSize);
 
-        Thread thread = new Thread(consumer, threadName);
+        Thread thread = WorkerThreads.newThread(consumer, threadName, virtualThreads);
         consumers.add(consumer);
         consumerThreads.add(thread);
         thread.start();
         System.out.println(TerminalColorConstant.GREEN + thread.getName() + " started successfully." + TerminalColorConstant.RESET);
     }
 
+    //Many single-ticket buyers at once, reported with one line instead of one per thread
+    private void addConsumers(int count) {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            String threadName = "Consumer-" + (consumers.size() + 1);
+            Consumer consumer = new Consumer(ticketPool, 1, 0, false);
+
+            Thread thread = WorkerThreads.newThread(consumer, threadName, virtualThreads);
+            consumers.add(consumer);
+            consumerThreads.add(thread);
+            thread.start();
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println(TerminalColorConstant.GREEN + count + " buyers started on " + threadModeName() +
+                " in " + elapsedMillis + "ms." + TerminalColorConstant.RESET);
+    }
+
     private void addWriter() {
         Writer writer = new Writer(ticketPool, 2000, 10);
-        Thread thread = new Thread(writer, "Writer-" + (writers.size() + 1));
+        Thread thread = WorkerThreads.newThread(writer, "Writer-" + (writers.size() + 1), virtualThreads);
         writers.add(writer);
         writerThreads.add(thread);
         thread.start();
@@ -532,7 +694,7 @@ public class SimulationManager {
                 ticketPool, updateAtRateMillis,
                 maxUpdateAttempts);
 
-        Thread thread = new Thread(writer, "Writer-" + (writers.size() + 1));
+        Thread thread = WorkerThreads.newThread(writer, "Writer-" + (writers.size() + 1), virtualThreads);
         writers.add(writer);
         writerThreads.add(thread);
         thread.start();
@@ -541,7 +703,7 @@ public class SimulationManager {
 
     private void addReader() {
         Reader reader = new Reader(ticketPool, 3000, 50);
-        Thread thread = new Thread(reader, "Reader-" + (readers.size() + 1));
+        Thread thread = WorkerThreads.newThread(reader, "Reader-" + (readers.size() + 1), virtualThreads);
         readers.add(reader);
         readerThreads.add(thread);
         thread.start();
@@ -553,7 +715,7 @@ public class SimulationManager {
                 ticketPool, readAtRateMillis,
                 maxReadAttempts);
 
-        Thread thread = new Thread(reader, "Reader-" + (readers.size() + 1));
+        Thread thread = WorkerThreads.newThread(reader, "Reader-" + (readers.size() + 1), virtualThreads);
         readers.add(reader);
         readerThreads.add(thread);
         thread.start();
@@ -623,6 +785,24 @@ public class SimulationManager {
         for (Reader reader : readers) reader.stop();
         for (Thread thread : readerThreads) thread.interrupt();
 
+        if (managedPool != null) {
+            managedPool.close();
+        }
+        if (journaledPool != null) {
+            try {
+                journaledPool.close();
+            } catch (IOException e) {
+                System.out.println(TerminalColorConstant.RED + "Could not close the journal: " + e.getMessage() + TerminalColorConstant.RESET);
+            }
+        }
+        if (checkpointingPool != null) {
+            try {
+                checkpointingPool.close();
+            } catch (IOException e) {
+                System.out.println(TerminalColorConstant.RED + "Could not write the last checkpoint: " + e.getMessage() + TerminalColorConstant.RESET);
+            }
+        }
+
         System.out.println(TerminalColorConstant.GREEN_BOLD + "Simulation stopped successfully." + TerminalColorConstant.RESET);
     }
 }
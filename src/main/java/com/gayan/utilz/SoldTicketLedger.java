@@ -0,0 +1,249 @@
+package com.gayan.utilz;
+
+import com.gayan.entities.Ticket;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Archive of sold tickets, so they leave the pool's live structure: they stop counting against capacity
+ * and stop making purchase scans longer. Each ticket is one fixed-width record (ID, price and the ticket's
+ * three AttributeDictionary codes), so no Ticket object is kept per sold ticket.
+ * Records live in heap pages (inMemory) or in pages of a memory-mapped file (spillingTo).
+ * On the heap an ID -> record index finds a record, and slots left by restore are reused. In the file the
+ * record slot is the ticket ID itself, so there is no index and nothing per ticket stays on the heap; IDs
+ * from createTicket are dense, and a page is only mapped once a ticket in its ID range is sold (the gaps stay
+ * sparse in the file). A spilled ledger takes ticket IDs from 0 to Integer.MAX_VALUE.
+ *
+ * Lookups hand out a copy of the archived ticket, marked sold. A cancelled ticket is taken back out with restore.
+ * Not thread-safe for changes: every pool archives, updates and restores under its write lock.
+ * Lookups only read, so they may run side by side under a read lock.
+ */
+public class SoldTicketLedger implements Closeable {
+
+    private static final int RECORD_BYTES = 32; //id, price, event, vendor, location, in use
+    private static final int RECORDS_PER_PAGE = 4096;
+    private static final int PAGE_BYTES = RECORD_BYTES * RECORDS_PER_PAGE;
+
+    private final FileChannel spillFile; //null when the pages are on the heap
+    private final Path spillPath;
+    private final List<ByteBuffer> pages = new ArrayList<>(); //null for a spill page not mapped yet
+    private final LongIntMap index; //ID -> record slot, null when spilled (the slot is the ID)
+    private int[] freeSlots = new int[16]; //slots left behind by restore, reused before growing
+    private int freeCount = 0;
+    private int nextSlot = 0;
+    private int size = 0;
+    private int mappedPages = 0;
+
+    private SoldTicketLedger(FileChannel spillFile, Path spillPath) {
+        this.spillFile = spillFile;
+        this.spillPath = spillPath;
+        this.index = spillFile == null ? new LongIntMap() : null;
+    }
+
+    public static SoldTicketLedger inMemory() {
+        return new SoldTicketLedger(null, null);
+    }
+
+    //Records go to this file (created or truncated), at the slot given by the ticket ID
+    public static SoldTicketLedger spillingTo(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new SoldTicketLedger(channel, file);
+    }
+
+    //========== Changes (under the pool's write lock) ==========
+
+    //Store a sold ticket. Archiving a ticket that is already here just refreshes its record.
+    public void archive(Ticket ticket) {
+        int slot;
+        if (index == null) {
+            slot = spillSlot(ticket.getTicketId());
+        } else {
+            slot = index.get(ticket.getTicketId());
+            if (slot < 0) {
+                slot = freeCount > 0 ? freeSlots[--freeCount] : nextSlot++;
+                index.put(ticket.getTicketId(), slot);
+            }
+        }
+        ByteBuffer page = page(slot);
+        int at = offset(slot);
+        if (page.getInt(at + 28) == 0) {
+            size++;
+        }
+        Ticket.Version version = ticket.getVersion();
+        page.putLong(at, ticket.getTicketId());
+        page.putDouble(at + 8, version.price());
+        page.putInt(at + 16, version.eventCode());
+        page.putInt(at + 20, version.vendorCode());
+        page.putInt(at + 24, version.locationCode());
+        page.putInt(at + 28, 1);
+    }
+
+    public boolean update(long ticketId, double newPrice, String newLocation, String newEventName) {
+        int slot = slotOf(ticketId);
+        if (slot < 0) {
+            return false;
+        }
+        ByteBuffer page = pages.get(slot / RECORDS_PER_PAGE);
+        int at = offset(slot);
+        page.putDouble(at + 8, newPrice);
+        page.putInt(at + 16, AttributeDictionary.encode(newEventName));
+        page.putInt(at + 24, AttributeDictionary.encode(newLocation));
+        return true;
+    }
+
+    /**
+     * Take a cancelled ticket back out. The archived values (which may have been updated since the sale)
+     * are copied into the given ticket, so the caller can put that same object back on sale.
+     * Returns false if the ticket was not archived here.
+     */
+    public boolean restore(Ticket ticket) {
+        int slot = slotOf(ticket.getTicketId());
+        if (slot < 0) {
+            return false;
+        }
+        ByteBuffer page = pages.get(slot / RECORDS_PER_PAGE);
+        int at = offset(slot);
+        ticket.setVersion(new Ticket.Version(page.getInt(at + 16), page.getInt(at + 20), page.getInt(at + 24),
+                page.getDouble(at + 8)));
+        page.putInt(at + 28, 0);
+        size--;
+        if (index != null) {
+            index.remove(ticket.getTicketId());
+            if (freeCount == freeSlots.length) {
+                freeSlots = Arrays.copyOf(freeSlots, freeCount << 1);
+            }
+            freeSlots[freeCount++] = slot;
+        }
+        return true;
+    }
+
+    //========== Lookups (read lock is enough) ==========
+
+    public boolean contains(long ticketId) {
+        return slotOf(ticketId) >= 0;
+    }
+
+    //Copy of the archived ticket (marked sold), null if it is not here
+    public Ticket find(long ticketId) {
+        int slot = slotOf(ticketId);
+        return slot < 0 ? null : read(slot);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    //Add a copy of every archived ticket, in slot order
+    public void addTo(Collection<Ticket> target) {
+        for (int pageNo = 0; pageNo < pages.size(); pageNo++) {
+            ByteBuffer page = pages.get(pageNo);
+            if (page == null) {
+                continue;
+            }
+            for (int i = 0; i < RECORDS_PER_PAGE; i++) {
+                if (page.getInt(i * RECORD_BYTES + 28) != 0) {
+                    target.add(read(pageNo * RECORDS_PER_PAGE + i));
+                }
+            }
+        }
+    }
+
+    public boolean isSpilled() {
+        return spillFile != null;
+    }
+
+    //Bytes taken by the record pages (on the heap, or in the spill file)
+    public long getRecordBytes() {
+        return (long) mappedPages * PAGE_BYTES;
+    }
+
+    public String describe() {
+        return describe(size(), getRecordBytes());
+    }
+
+    //Same text from a size and byte count read earlier (e.g. under an optimistic stamp), touches no pages
+    public String describe(int tickets, long recordBytes) {
+        return String.format("%d tickets, %d KB of records %s", tickets, recordBytes / 1024,
+                isSpilled() ? "in " + spillPath : "on the heap");
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (spillFile != null) {
+            spillFile.close();
+        }
+    }
+
+    //========== Records ==========
+
+    private Ticket read(int slot) {
+        ByteBuffer page = pages.get(slot / RECORDS_PER_PAGE);
+        int at = offset(slot);
+        Ticket ticket = new Ticket(page.getLong(at), page.getInt(at + 16), page.getInt(at + 20),
+                page.getInt(at + 24), page.getDouble(at + 8));
+        ticket.setSold(true);
+        return ticket;
+    }
+
+    //Slot holding the ticket's record, -1 if it is not archived here. Only reads, never maps a page.
+    private int slotOf(long ticketId) {
+        if (index != null) {
+            return index.get(ticketId);
+        }
+        if (ticketId < 0 || ticketId > Integer.MAX_VALUE) {
+            return -1;
+        }
+        int slot = (int) ticketId;
+        int pageNo = slot / RECORDS_PER_PAGE;
+        ByteBuffer page = pageNo < pages.size() ? pages.get(pageNo) : null;
+        return page != null && page.getInt(offset(slot) + 28) != 0 ? slot : -1;
+    }
+
+    private static int spillSlot(long ticketId) {
+        if (ticketId < 0 || ticketId > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Ticket ID " + ticketId + " is out of range for a spilled ledger");
+        }
+        return (int) ticketId;
+    }
+
+    //Absolute gets and puts only, so readers never move a shared buffer position
+    private ByteBuffer page(int slot) {
+        int pageNo = slot / RECORDS_PER_PAGE;
+        while (pages.size() <= pageNo) {
+            pages.add(null);
+        }
+        ByteBuffer page = pages.get(pageNo);
+        if (page == null) {
+            page = newPage(pageNo);
+            pages.set(pageNo, page);
+            mappedPages++;
+        }
+        return page;
+    }
+
+    private ByteBuffer newPage(int pageNo) {
+        if (spillFile == null) {
+            return ByteBuffer.allocate(PAGE_BYTES);
+        }
+        try {
+            return spillFile.map(FileChannel.MapMode.READ_WRITE, (long) pageNo * PAGE_BYTES, PAGE_BYTES);
+        } catch (IOException e) {
+            throw new UncheckedIOException(Thread.currentThread().getName() + " could not grow the sold-ticket ledger", e);
+        }
+    }
+
+    private static int offset(int slot) {
+        return (slot % RECORDS_PER_PAGE) * RECORD_BYTES;
+    }
+}
@@ -0,0 +1,197 @@
+package com.gayan.utilz;
+
+import com.gayan.entities.Ticket;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tickets kept off the heap as parallel columns (struct of arrays): ID, price and the three AttributeDictionary
+ * codes each live in their own direct buffers, indexed by slot. Nothing per ticket is a heap object, so a pool
+ * of tens of millions of tickets gives the GC nothing to trace; a Ticket is only built as a view when a caller
+ * asks for one.
+ *
+ * Columns grow a chunk at a time and slots are never moved. A removed ticket's slot goes on a free list and is
+ * the next one append fills, so the columns stay as large as the most tickets held at once. An off-heap
+ * ID -> slot index finds a ticket by ID; it holds at most MAX_TICKETS, past that append throws.
+ * Each ID has at most one slot: storing an ID a second time is refused. Not thread-safe: OffHeapTicketPool
+ * guards it with its lock.
+ */
+public class TicketColumns {
+
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SLOTS = 1 << CHUNK_BITS; //64K tickets, under 2 MB of columns per chunk
+    private static final int CHUNK_MASK = CHUNK_SLOTS - 1;
+    private static final int INITIAL_INDEX_SIZE = 1024;
+    private static final int MAX_INDEX_SIZE = 1 << 28; //4-byte entries, the largest power of two a ByteBuffer holds
+    public static final int MAX_TICKETS = MAX_INDEX_SIZE / 4 * 3; //the index stays at most 3/4 full
+
+    private final List<ByteBuffer> ids = new ArrayList<>();
+    private final List<ByteBuffer> prices = new ArrayList<>();
+    private final List<ByteBuffer> events = new ArrayList<>();
+    private final List<ByteBuffer> vendors = new ArrayList<>();
+    private final List<ByteBuffer> locations = new ArrayList<>();
+    private int size = 0; //tickets stored
+    private int slotCount = 0; //slots ever handed out, the ones below it that are not in use are on the free list
+    private int freeSlot = -1; //head of the free list, each free slot's ID column holds the next one (-1 ends it)
+
+    //ID -> slot + 1 (0 means free), linear probing. The key is read back from the ID column, so an entry is one int.
+    private ByteBuffer index = allocate(INITIAL_INDEX_SIZE * 4);
+    private int indexMask = INITIAL_INDEX_SIZE - 1;
+
+    //Store the ticket's current values in a free slot and return it, or -1 if its ID is already stored
+    public int append(Ticket ticket) {
+        if (slotOf(ticket.getTicketId()) >= 0) {
+            return -1;
+        }
+        if (size >= MAX_TICKETS) {
+            throw new IllegalStateException("TicketColumns holds at most " + MAX_TICKETS + " tickets");
+        }
+        int slot;
+        if (freeSlot >= 0) {
+            slot = freeSlot;
+            freeSlot = (int) id(slot);
+        } else {
+            if ((slotCount & CHUNK_MASK) == 0 && (slotCount >>> CHUNK_BITS) == ids.size()) {
+                addChunk();
+            }
+            slot = slotCount++;
+        }
+        size++;
+        int at = slot & CHUNK_MASK;
+        int chunk = slot >>> CHUNK_BITS;
+        Ticket.Version version = ticket.getVersion();
+        ids.get(chunk).putLong(at << 3, ticket.getTicketId());
+        prices.get(chunk).putDouble(at << 3, version.price());
+        events.get(chunk).putInt(at << 2, version.eventCode());
+        vendors.get(chunk).putInt(at << 2, version.vendorCode());
+        locations.get(chunk).putInt(at << 2, version.locationCode());
+        indexPut(ticket.getTicketId(), slot);
+        return slot;
+    }
+
+    //Drop the ticket in this slot and put the slot on the free list
+    public void remove(int slot) {
+        indexRemove(id(slot));
+        ids.get(slot >>> CHUNK_BITS).putLong((slot & CHUNK_MASK) << 3, freeSlot);
+        freeSlot = slot;
+        size--;
+    }
+
+    //Slot holding this ticket ID, -1 if it is not stored
+    public int slotOf(long ticketId) {
+        int pos = LongIntMap.hash(ticketId) & indexMask;
+        int entry;
+        while ((entry = index.getInt(pos << 2)) != 0) {
+            if (id(entry - 1) == ticketId) {
+                return entry - 1;
+            }
+            pos = (pos + 1) & indexMask;
+        }
+        return -1;
+    }
+
+    public long id(int slot) {
+        return ids.get(slot >>> CHUNK_BITS).getLong((slot & CHUNK_MASK) << 3);
+    }
+
+    public void update(int slot, double newPrice, String newLocation, String newEventName) {
+        int chunk = slot >>> CHUNK_BITS;
+        int at = slot & CHUNK_MASK;
+        prices.get(chunk).putDouble(at << 3, newPrice);
+        locations.get(chunk).putInt(at << 2, AttributeDictionary.encode(newLocation));
+        events.get(chunk).putInt(at << 2, AttributeDictionary.encode(newEventName));
+    }
+
+    //A new (unsold) Ticket holding the slot's values. Changing it does not change the stored ticket.
+    public Ticket view(int slot) {
+        int chunk = slot >>> CHUNK_BITS;
+        int at = slot & CHUNK_MASK;
+        return new Ticket(ids.get(chunk).getLong(at << 3), events.get(chunk).getInt(at << 2),
+                vendors.get(chunk).getInt(at << 2), locations.get(chunk).getInt(at << 2),
+                prices.get(chunk).getDouble(at << 3));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    //Slots the columns have room for, free ones included
+    public int slotCount() {
+        return slotCount;
+    }
+
+    //Direct memory taken by the columns and the index
+    public long getOffHeapBytes() {
+        return (long) ids.size() * CHUNK_SLOTS * (8 + 8 + 4 + 4 + 4) + index.capacity();
+    }
+
+    private void addChunk() {
+        ids.add(allocate(CHUNK_SLOTS * 8));
+        prices.add(allocate(CHUNK_SLOTS * 8));
+        events.add(allocate(CHUNK_SLOTS * 4));
+        vendors.add(allocate(CHUNK_SLOTS * 4));
+        locations.add(allocate(CHUNK_SLOTS * 4));
+    }
+
+    private void indexPut(long ticketId, int slot) {
+        int pos = LongIntMap.hash(ticketId) & indexMask;
+        while (index.getInt(pos << 2) != 0) { // append checked the ID is new
+            pos = (pos + 1) & indexMask;
+        }
+        index.putInt(pos << 2, slot + 1);
+        if (size > (indexMask + 1) / 4 * 3 && indexMask + 1 < MAX_INDEX_SIZE) { // append caps size at MAX_TICKETS
+            rehash((indexMask + 1) << 1);
+        }
+    }
+
+    private void indexRemove(long ticketId) {
+        int gap = LongIntMap.hash(ticketId) & indexMask;
+        int entry;
+        while ((entry = index.getInt(gap << 2)) != 0 && id(entry - 1) != ticketId) {
+            gap = (gap + 1) & indexMask;
+        }
+        if (entry == 0) {
+            return;
+        }
+        // Close the gap so later probes never stop early, as LongIntMap does
+        int pos = gap;
+        while (true) {
+            pos = (pos + 1) & indexMask;
+            entry = index.getInt(pos << 2);
+            if (entry == 0) {
+                break;
+            }
+            int home = LongIntMap.hash(id(entry - 1)) & indexMask;
+            boolean canMove = gap <= pos ? (home <= gap || home > pos) : (home <= gap && home > pos);
+            if (canMove) {
+                index.putInt(gap << 2, entry);
+                gap = pos;
+            }
+        }
+        index.putInt(gap << 2, 0);
+    }
+
+    private void rehash(int capacity) {
+        ByteBuffer old = index;
+        int oldSize = indexMask + 1;
+        index = allocate(capacity * 4);
+        indexMask = capacity - 1;
+        for (int i = 0; i < oldSize; i++) {
+            int entry = old.getInt(i << 2);
+            if (entry != 0) {
+                int pos = LongIntMap.hash(id(entry - 1)) & indexMask;
+                while (index.getInt(pos << 2) != 0) {
+                    pos = (pos + 1) & indexMask;
+                }
+                index.putInt(pos << 2, entry);
+            }
+        }
+    }
+
+    private static ByteBuffer allocate(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+}
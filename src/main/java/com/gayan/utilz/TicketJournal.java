@@ -0,0 +1,671 @@
+package com.gayan.utilz;
+
+import com.gayan.entities.Ticket;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary journal of pool mutations (add, purchase, cancel, update) with group commit.
+ * Used by JournaledTicketPool, which also replays it into a pool on startup.
+ * Threads append their record to a shared buffer and then wait for it to be durable. The first waiter to find
+ * no commit running becomes the leader: it takes everything appended so far and writes it with one
+ * FileChannel write + force, while the others keep appending into the next batch. So concurrent buyers share
+ * one fsync instead of queuing up for one each. Callers that must not block ask for whenDurable instead: their
+ * future is completed once a commit covers the record, and if no caller is leading one, a background committer
+ * thread commits the batch.
+ *
+ * Record layout: [length int][crc32 int][type byte][ticketId long][fields...], strings as int-length-prefixed UTF-8.
+ * A torn record at the end (crash in the middle of a write) fails its length or CRC check and ends the replay.
+ *
+ * compact folds the committed records into one ADD record per ticket, so the journal and its replay stay
+ * proportional to the pool rather than to its history. It works from the file alone, never from the pool, and
+ * holds off appends only to copy over the records committed while it was folding.
+ */
+public class TicketJournal implements Closeable {
+
+    public static final byte ADD = 1;
+    public static final byte PURCHASE = 2;
+    public static final byte CANCEL = 3;
+    public static final byte UPDATE = 4;
+    public static final byte REJECT = 5; //an add that was logged but the pool did not take (full after waiting)
+
+    private static final int HEADER_BYTES = 8; //length + crc
+    private static final int INITIAL_BUFFER = 64 * 1024;
+
+    private final Path file;
+    private FileChannel channel; //replaced by compact, guarded by lock while no commit is running
+    private final long commitWindowNanos; //extra time the leader waits for more records to join its batch
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition committed = lock.newCondition();
+    //Guarded by lock
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER);
+    private ByteBuffer spare = ByteBuffer.allocate(INITIAL_BUFFER);
+    private long appendedSeq = 0;
+    private long durableSeq = 0;
+    private boolean committing = false;
+    private IOException failure;
+    private boolean closed = false;
+    //Futures from whenDurable by sequence number, and whether the background committer has been asked to run
+    private final PriorityQueue<DurableWaiter> durableWaiters = new PriorityQueue<>(Comparator.comparingLong(DurableWaiter::seq));
+    private boolean commitRequested = false;
+
+    //Commits for whenDurable callers and completes their futures, so neither happens on a thread holding lock
+    private final ExecutorService committer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Journal-Committer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ReentrantLock compaction = new ReentrantLock(); //one compaction at a time
+
+    //Statistics, guarded by lock
+    private long records = 0;
+    private long commits = 0;
+    private long rewrites = 0;
+    private volatile long recordsSinceRewrite = 0; //written under lock, read without it to decide on a rewrite
+    private volatile long rewriteRecords = 0; //tickets in the last rewrite
+
+    public TicketJournal(Path file) throws IOException {
+        this(file, 0);
+    }
+
+    public TicketJournal(Path file, long commitWindowMicros) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.commitWindowNanos = TimeUnit.MICROSECONDS.toNanos(commitWindowMicros);
+    }
+
+    /** One decoded journal record. Fields a record type does not carry are null / 0. */
+    public record Entry(byte type, long ticketId, String eventName, String vendorName, String location,
+                        double price, boolean sold) {
+    }
+
+    private record DurableWaiter(long seq, CompletableFuture<Void> future) {
+    }
+
+    //========== Appending ==========
+
+    public long appendAdd(Ticket ticket) {
+        return appendAdds(List.of(ticket));
+    }
+
+    //A block of adds goes in under one lock round
+    public long appendAdds(List<Ticket> tickets) {
+        lock.lock();
+        try {
+            checkOpen();
+            long seq = appendedSeq;
+            for (Ticket ticket : tickets) {
+                pending = putAdd(pending, ticket);
+                seq = recorded();
+            }
+            return seq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Purchases of a group go in as one append so they become durable together
+    public long appendPurchases(List<Ticket> tickets) {
+        lock.lock();
+        try {
+            long seq = appendedSeq;
+            for (Ticket ticket : tickets) {
+                seq = appendIdRecord(PURCHASE, ticket.getTicketId());
+            }
+            return seq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long appendReject(long ticketId) {
+        lock.lock();
+        try {
+            return appendIdRecord(REJECT, ticketId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long appendCancel(long ticketId) {
+        lock.lock();
+        try {
+            return appendIdRecord(CANCEL, ticketId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long appendUpdate(long ticketId, double newPrice, String newLocation, String newEventName) {
+        byte[] location = utf8(newLocation);
+        byte[] event = utf8(newEventName);
+        lock.lock();
+        try {
+            ByteBuffer buffer = begin(1 + 8 + 8 + 8 + location.length + event.length);
+            int start = buffer.position();
+            buffer.put(UPDATE).putLong(ticketId).putDouble(newPrice);
+            putString(buffer, location);
+            putString(buffer, event);
+            return finish(buffer, start);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Called holding lock
+    private long appendIdRecord(byte type, long ticketId) {
+        ByteBuffer buffer = begin(1 + 8);
+        int start = buffer.position();
+        buffer.put(type).putLong(ticketId);
+        return finish(buffer, start);
+    }
+
+    //Called holding lock. Makes room for a payload and skips the header, which finish fills in.
+    private ByteBuffer begin(int payloadBytes) {
+        checkOpen();
+        pending = withRoom(pending, HEADER_BYTES + payloadBytes);
+        pending.position(pending.position() + HEADER_BYTES);
+        return pending;
+    }
+
+    //Called holding lock
+    private long finish(ByteBuffer buffer, int start) {
+        seal(buffer, start);
+        return recorded();
+    }
+
+    //Called holding lock, after a record went into pending
+    private long recorded() {
+        records++;
+        recordsSinceRewrite++;
+        return ++appendedSeq;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+    }
+
+    //Header, then [ADD][id][price][sold][event][vendor][location]. Returns the buffer, a bigger copy if it had to grow.
+    private static ByteBuffer putAdd(ByteBuffer buffer, Ticket ticket) {
+        Ticket.Version version = ticket.getVersion();
+        byte[] event = utf8(version.getEventName());
+        byte[] vendor = utf8(version.getVendorName());
+        byte[] location = utf8(version.getLocation());
+        buffer = withRoom(buffer, HEADER_BYTES + 1 + 8 + 8 + 1 + 12 + event.length + vendor.length + location.length);
+        int start = buffer.position() + HEADER_BYTES;
+        buffer.position(start);
+        buffer.put(ADD).putLong(ticket.getTicketId()).putDouble(version.price()).put((byte) (ticket.isSold() ? 1 : 0));
+        putString(buffer, event);
+        putString(buffer, vendor);
+        putString(buffer, location);
+        seal(buffer, start);
+        return buffer;
+    }
+
+    private static ByteBuffer withRoom(ByteBuffer buffer, int bytes) {
+        if (buffer.remaining() >= bytes) {
+            return buffer;
+        }
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+        buffer.flip();
+        bigger.put(buffer);
+        return bigger;
+    }
+
+    //Fill in the length and CRC of the record whose payload starts at start
+    private static void seal(ByteBuffer buffer, int start) {
+        int length = buffer.position() - start;
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), start, length);
+        buffer.putInt(start - HEADER_BYTES, length);
+        buffer.putInt(start - 4, (int) crc.getValue());
+    }
+
+    //========== Group commit ==========
+
+    /**
+     * Block until the record with this sequence number is on disk.
+     * Either waits for the running commit, or becomes the leader and commits the whole batch itself.
+     */
+    public void awaitDurable(long seq) throws IOException {
+        lock.lock();
+        try {
+            while (durableSeq < seq) {
+                if (failure != null) {
+                    throw failure;
+                }
+                if (committing) {
+                    committed.awaitUninterruptibly(); // the record is already appended, it has to become durable
+                    continue;
+                }
+                commitAsLeader();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Future completed once the record with this sequence number is on disk, without blocking the caller.
+     * It is completed on the committer thread, or exceptionally if the journal cannot be written.
+     */
+    public CompletableFuture<Void> whenDurable(long seq) {
+        lock.lock();
+        try {
+            if (durableSeq >= seq) {
+                return CompletableFuture.completedFuture(null);
+            }
+            if (failure != null) {
+                return CompletableFuture.failedFuture(failure);
+            }
+            if (closed) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Journal is closed"));
+            }
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            durableWaiters.add(new DurableWaiter(seq, future));
+            requestCommit();
+            return future;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Called holding lock. A running leader settles the waiters itself once it is done, and asks again if needed.
+    private void requestCommit() {
+        if (!committing && !commitRequested) {
+            commitRequested = true;
+            committer.execute(this::commitInBackground);
+        }
+    }
+
+    private void commitInBackground() {
+        lock.lock();
+        try {
+            commitRequested = false;
+            if (!committing && failure == null && durableSeq < appendedSeq) {
+                commitAsLeader();
+            }
+        } catch (IOException e) {
+            // already recorded as the failure, and handed to the waiters
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Called holding lock after durableSeq moved or the journal failed. The futures run their callbacks on the committer.
+    private void settleDurableWaiters() {
+        List<CompletableFuture<Void>> done = new ArrayList<>();
+        while (!durableWaiters.isEmpty() && (failure != null || durableWaiters.peek().seq() <= durableSeq)) {
+            done.add(durableWaiters.poll().future());
+        }
+        if (!done.isEmpty()) {
+            IOException error = failure;
+            committer.execute(() -> done.forEach(future -> {
+                if (error == null) {
+                    future.complete(null);
+                } else {
+                    future.completeExceptionally(error);
+                }
+            }));
+        }
+        if (!durableWaiters.isEmpty()) {
+            requestCommit(); // appended after the batch that just went out
+        }
+    }
+
+    //Called holding lock, returns holding it
+    private void commitAsLeader() throws IOException {
+        committing = true;
+        if (commitWindowNanos > 0) {
+            lock.unlock();
+            LockSupport.parkNanos(commitWindowNanos); // let more records join this batch
+            lock.lock();
+        }
+        ByteBuffer batch = pending;
+        pending = spare;
+        pending.clear();
+        long batchSeq = appendedSeq;
+
+        lock.unlock();
+        IOException error = null;
+        try {
+            batch.flip();
+            while (batch.hasRemaining()) {
+                channel.write(batch);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            error = e;
+        } finally {
+            lock.lock();
+        }
+
+        batch.clear();
+        spare = batch;
+        committing = false;
+        if (error != null) {
+            failure = error; // later appends cannot be durable either
+        } else {
+            durableSeq = batchSeq;
+            commits++;
+        }
+        committed.signalAll();
+        settleDurableWaiters();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    //========== Compaction ==========
+
+    /**
+     * Replace the committed records with one ADD record (sold flag included) per ticket they leave in the pool.
+     * The file is cut at the last commit, and everything before the cut is read back and folded while appends
+     * and commits carry on into the old file. Only then are appends held off, to copy the records committed
+     * since the cut after the folded ones. The new journal is written to a temporary file, forced and moved over
+     * the old one, so a crash leaves one or the other.
+     */
+    public void compact() throws IOException {
+        compaction.lock();
+        try {
+            long cutBytes;
+            long cutSeq;
+            lock.lock();
+            try {
+                awaitIdle();
+                cutBytes = channel.size(); // holds exactly the records up to durableSeq while no commit runs
+                cutSeq = durableSeq;
+            } finally {
+                lock.unlock();
+            }
+
+            List<Ticket> tickets = fold(read(file, cutBytes));
+            ByteBuffer image = ByteBuffer.allocate(INITIAL_BUFFER);
+            for (Ticket ticket : tickets) {
+                image = putAdd(image, ticket);
+            }
+            image.flip();
+
+            Path temp = file.resolveSibling(file.getFileName() + ".rewrite");
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (image.hasRemaining()) {
+                    out.write(image);
+                }
+                out.force(false);
+
+                lock.lock();
+                try {
+                    awaitIdle();
+                    copyCommittedSince(cutBytes, out);
+                    out.force(false);
+                    try {
+                        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    } catch (IOException e) {
+                        Files.deleteIfExists(temp);
+                        throw e; // the old journal is untouched and still open
+                    }
+                    forceDirectory();
+                    channel.close();
+                    channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+                    recordsSinceRewrite = appendedSeq - cutSeq; // the records after the cut were not folded
+                    rewriteRecords = tickets.size();
+                    rewrites++;
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } finally {
+            compaction.unlock();
+        }
+    }
+
+    //Called holding lock: wait out a running commit, so the file ends exactly at durableSeq
+    private void awaitIdle() throws IOException {
+        while (committing) {
+            committed.awaitUninterruptibly();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        checkOpen();
+    }
+
+    //Called holding lock, with no commit running
+    private void copyCommittedSince(long fromBytes, FileChannel out) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = fromBytes;
+            long end = in.size();
+            while (position < end) {
+                position += in.transferTo(position, end - position, out);
+            }
+        }
+    }
+
+    /**
+     * Fold records into the final state of each ticket, in the order the tickets were first added.
+     * Replay and compaction both use it, so a compacted journal replays to the same pool as the full one.
+     */
+    public static List<Ticket> fold(List<Entry> entries) {
+        Map<Long, Ticket> tickets = new LinkedHashMap<>();
+        for (Entry entry : entries) {
+            Ticket ticket = tickets.get(entry.ticketId());
+            switch (entry.type()) {
+                case ADD -> {
+                    Ticket added = new Ticket(entry.ticketId(), entry.eventName(), entry.vendorName(), entry.location(), entry.price());
+                    added.setSold(entry.sold());
+                    tickets.put(entry.ticketId(), added);
+                }
+                case REJECT -> tickets.remove(entry.ticketId());
+                case PURCHASE -> {
+                    if (ticket != null) ticket.setSold(true);
+                }
+                case CANCEL -> {
+                    if (ticket != null) ticket.setSold(false);
+                }
+                case UPDATE -> {
+                    if (ticket != null) {
+                        ticket.update(entry.price(), entry.location(), entry.eventName());
+                    }
+                }
+                default -> System.out.println("Skipping unknown journal record type " + entry.type());
+            }
+        }
+        return new ArrayList<>(tickets.values());
+    }
+
+    //Make the rename itself durable; not every platform can open a directory, and there it is skipped
+    private void forceDirectory() {
+        Path directory = file.toAbsolutePath().getParent();
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // best effort
+        }
+    }
+
+    //Commit whatever is still pending and close the file
+    @Override
+    public void close() throws IOException {
+        long last;
+        lock.lock();
+        try {
+            last = appendedSeq;
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(last);
+        lock.lock();
+        try {
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+        committer.shutdown(); // runs the completions already handed to it
+        try {
+            committer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    public long getRecordCount() {
+        lock.lock();
+        try {
+            return records;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getCommitCount() {
+        lock.lock();
+        try {
+            return commits;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getRewriteCount() {
+        lock.lock();
+        try {
+            return rewrites;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Records appended since the last rewrite (or since opening), read without the lock
+    public long getRecordsSinceRewrite() {
+        return recordsSinceRewrite;
+    }
+
+    //Tickets the last rewrite wrote, 0 before the first one
+    public long getRewriteRecords() {
+        return rewriteRecords;
+    }
+
+    //Average records written per fsync, the group commit batch size
+    public double getAverageBatchSize() {
+        lock.lock();
+        try {
+            return commits == 0 ? 0 : (double) records / commits;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //========== Reading ==========
+
+    /**
+     * Decode every complete record in the file, in append order.
+     * Stops at the first torn or corrupt record, which can only be the tail of an interrupted write.
+     */
+    public static List<Entry> read(Path file) throws IOException {
+        return read(file, Long.MAX_VALUE);
+    }
+
+    //The records in the first limitBytes of the file
+    private static List<Entry> read(Path file, long limitBytes) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        if (!Files.exists(file)) {
+            return entries;
+        }
+        ByteBuffer data;
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            data = ByteBuffer.allocate((int) Math.min(in.size(), limitBytes));
+            while (data.hasRemaining() && in.read(data) >= 0) {
+                // keep reading
+            }
+        }
+        data.flip();
+
+        CRC32 crc = new CRC32();
+        while (data.remaining() >= HEADER_BYTES) {
+            int length = data.getInt();
+            int checksum = data.getInt();
+            if (length <= 0 || length > data.remaining()) {
+                break;
+            }
+            crc.reset();
+            crc.update(data.array(), data.position(), length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            ByteBuffer record = data.slice(data.position(), length);
+            data.position(data.position() + length);
+            entries.add(decode(record));
+        }
+        return entries;
+    }
+
+    private static Entry decode(ByteBuffer record) {
+        byte type = record.get();
+        long ticketId = record.getLong();
+        switch (type) {
+            case ADD -> {
+                double price = record.getDouble();
+                boolean sold = record.get() == 1;
+                String event = getString(record);
+                String vendor = getString(record);
+                String location = getString(record);
+                return new Entry(type, ticketId, event, vendor, location, price, sold);
+            }
+            case UPDATE -> {
+                double price = record.getDouble();
+                String location = getString(record);
+                String event = getString(record);
+                return new Entry(type, ticketId, event, null, location, price, false);
+            }
+            default -> {
+                return new Entry(type, ticketId, null, null, null, 0, false);
+            }
+        }
+    }
+
+    //========== Encoding helpers ==========
+
+    private static byte[] utf8(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
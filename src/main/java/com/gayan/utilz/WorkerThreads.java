@@ -0,0 +1,57 @@
+package com.gayan.utilz;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Creates the worker threads (Producer, Consumer, Reader, Writer) either as platform threads or as virtual threads.
+ * The project compiles for Java 17, so Thread.ofVirtual() is looked up reflectively:
+ * on a Java 21+ runtime virtual mode works, on older runtimes it falls back to platform threads.
+ */
+public final class WorkerThreads {
+
+    private static final MethodHandle OF_VIRTUAL;  // Thread.ofVirtual()
+    private static final MethodHandle NAME;        // Thread.Builder.name(String)
+    private static final MethodHandle UNSTARTED;   // Thread.Builder.unstarted(Runnable)
+
+    static {
+        MethodHandle ofVirtual = null;
+        MethodHandle name = null;
+        MethodHandle unstarted = null;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            Class<?> ofVirtualBuilder = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            ofVirtual = lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(ofVirtualBuilder));
+            name = lookup.findVirtual(builder, "name", MethodType.methodType(builder, String.class));
+            unstarted = lookup.findVirtual(builder, "unstarted", MethodType.methodType(Thread.class, Runnable.class));
+        } catch (ReflectiveOperationException e) {
+            // Runtime older than Java 21, only platform threads
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        UNSTARTED = unstarted;
+    }
+
+    private WorkerThreads() {
+    }
+
+    public static boolean virtualThreadsSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    //Unstarted thread for the worker, virtual if asked for and supported
+    public static Thread newThread(Runnable worker, String name, boolean virtual) {
+        if (virtual && virtualThreadsSupported()) {
+            try {
+                Object builder = NAME.invoke(OF_VIRTUAL.invoke(), name);
+                return (Thread) UNSTARTED.invoke(builder, worker);
+            } catch (Throwable e) {
+                throw new IllegalStateException("Could not create virtual thread " + name, e);
+            }
+        }
+        return new Thread(worker, name);
+    }
+}
@@ -0,0 +1,234 @@
+package com.gayan.utilz;
+
+import com.gayan.entities.Ticket;
+import com.gayan.entities.WorkerRole;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * One FIFO queue of parked threads per worker role (buyers, writers, readers) instead of everybody waiting on
+ * the pool monitor. New tickets wake exactly one buyer per ticket, plus one writer and one reader, who pass the
+ * wakeup along their own queue while the pool still has something for them.
+ * Buyers parked inside purchaseTicket can also be handed a new ticket directly (elimination): the producer
+ * gives it to the oldest such buyer and the ticket never goes through the pool's available tickets. They wait in
+ * a queue of their own, so a hand-off is a poll and never has to pass over buyers parked in awaitTickets.
+ * Waiters that time out or are claimed stay queued, marked by their state, and are skipped when they reach the
+ * front; nothing is ever unlinked from the middle of a queue.
+ * Lock-free and park-based, so it works the same for platform and virtual threads (no carrier pinning).
+ */
+public class WorkerWaitQueues {
+
+    private static final Object SIGNALLED = new Object();
+    private static final Object LEFT = new Object();
+    private static final Object RESERVED = new Object(); //a producer is recording the sale, the ticket follows
+
+    private static final class Waiter {
+        final Thread thread = Thread.currentThread();
+        final boolean takesHandOff; //parked inside purchaseTicket, so it can take a ticket directly
+        final long queuedAt = System.nanoTime(); //orders the two buyer queues when a signal picks the oldest buyer
+        //null while waiting, then exactly one of SIGNALLED, LEFT or RESERVED (and then the handed-over Ticket)
+        final AtomicReference<Object> state = new AtomicReference<>();
+
+        Waiter(boolean takesHandOff) {
+            this.takesHandOff = takesHandOff;
+        }
+    }
+
+    private final Map<WorkerRole, Queue<Waiter>> queues = new EnumMap<>(WorkerRole.class); //parked in awaitTickets
+    private final Queue<Waiter> handOffBuyers = new ConcurrentLinkedQueue<>(); //parked in purchaseTicket
+
+    //Hand-off statistics: adds that looked for a parked buyer, and how many found one
+    private final LongAdder handOffAttempts = new LongAdder();
+    private final LongAdder handOffs = new LongAdder();
+
+    public WorkerWaitQueues() {
+        for (WorkerRole role : WorkerRole.values()) {
+            queues.put(role, new ConcurrentLinkedQueue<>());
+        }
+    }
+
+    /**
+     * Park until ready holds or the timeout passes. Returns false on timeout.
+     * The waiter is queued before ready is checked, and the pool publishes before it signals,
+     * so a ticket added at any point either shows up in the check or wakes this thread.
+     */
+    public boolean await(WorkerRole role, BooleanSupplier ready, long timeoutNanos) throws InterruptedException {
+        return park(role, ready, timeoutNanos, false) == Boolean.TRUE;
+    }
+
+    /**
+     * Buyer side of the hand-off, called from purchaseTicket.
+     * Returns the ticket a producer handed over, or null when ready holds or the timeout passed (poll the pool).
+     * If a ticket arrives together with an interrupt, the ticket is returned and the interrupt flag is kept.
+     */
+    public Ticket awaitHandOff(BooleanSupplier ready, long timeoutNanos) throws InterruptedException {
+        Object result = park(WorkerRole.BUYER, ready, timeoutNanos, true);
+        return result instanceof Ticket ? (Ticket) result : null;
+    }
+
+    //Returns the handed-over Ticket, TRUE when ready holds, or FALSE on timeout
+    private Object park(WorkerRole role, BooleanSupplier ready, long timeoutNanos, boolean takesHandOff) throws InterruptedException {
+        Queue<Waiter> queue = takesHandOff ? handOffBuyers : queues.get(role);
+        long deadline = System.nanoTime() + timeoutNanos;
+        Waiter waiter = new Waiter(takesHandOff);
+        queue.offer(waiter);
+
+        Object outcome;
+        boolean interrupted = false;
+        while (true) {
+            Object state = waiter.state.get();
+            if (state instanceof Ticket) {
+                return state;
+            }
+            if (ready.getAsBoolean()) {
+                outcome = Boolean.TRUE;
+                break;
+            }
+            if (state == SIGNALLED) {
+                // Woken, but somebody else got the ticket first. Queue again at the back.
+                waiter = new Waiter(takesHandOff);
+                queue.offer(waiter);
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                outcome = Boolean.FALSE;
+                break;
+            }
+            LockSupport.parkNanos(this, remaining);
+            if (Thread.interrupted()) {
+                interrupted = true;
+                outcome = Boolean.FALSE;
+                break;
+            }
+        }
+
+        // Withdraw by marking only, the waiter is skipped when it reaches the front.
+        // This only fails if a producer signalled us or handed us a ticket in the meantime.
+        if (waiter.state.compareAndSet(null, LEFT)) {
+            dropLeftWaiters(queue);
+        } else {
+            Object state = waiter.state.get();
+            while (state == RESERVED) {
+                Thread.onSpinWait(); // the producer is only updating its counters
+                state = waiter.state.get();
+            }
+            if (state instanceof Ticket) {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                return state;
+            }
+            // Hand the wakeup to the next waiter unless a buyer is about to use it
+            if (!(outcome == Boolean.TRUE && role.consumesTicket())) {
+                signal(role, 1);
+            }
+        }
+        if (interrupted) {
+            throw new InterruptedException();
+        }
+        return outcome;
+    }
+
+    //Wake up to count waiters of the role, oldest first. Waiters that left or were claimed are polled and skipped.
+    public void signal(WorkerRole role, int count) {
+        int woken = 0;
+        while (woken < count) {
+            Waiter waiter = role == WorkerRole.BUYER ? pollOldestBuyer() : queues.get(role).poll();
+            if (waiter == null) {
+                return;
+            }
+            if (wake(waiter)) {
+                woken++;
+            }
+        }
+    }
+
+    private static boolean wake(Waiter waiter) {
+        if (waiter.state.compareAndSet(null, SIGNALLED)) {
+            LockSupport.unpark(waiter.thread);
+            return true;
+        }
+        return false;
+    }
+
+    //The older of the two buyer queue heads. A race with another poller can make it the next one instead, still a buyer.
+    private Waiter pollOldestBuyer() {
+        Queue<Waiter> awaiting = queues.get(WorkerRole.BUYER);
+        Waiter parked = awaiting.peek();
+        Waiter inPurchase = handOffBuyers.peek();
+        if (inPurchase != null && (parked == null || inPurchase.queuedAt - parked.queuedAt < 0)) {
+            return handOffBuyers.poll();
+        }
+        return awaiting.poll();
+    }
+
+    //Poll waiters that left off the front of the queue, so waiters that keep timing out with no tickets coming
+    //do not pile up. A live waiter polled in a race with another poller is woken rather than lost: it checks
+    //the pool and queues again.
+    private static void dropLeftWaiters(Queue<Waiter> queue) {
+        Waiter head;
+        while ((head = queue.peek()) != null && head.state.get() != null) {
+            Waiter polled = queue.poll();
+            if (polled != null && polled != head) {
+                wake(polled);
+            }
+        }
+    }
+
+    //count tickets were added or put back on sale
+    public void ticketsAvailable(int count) {
+        signal(WorkerRole.BUYER, count);
+        signal(WorkerRole.WRITER, 1);
+        signal(WorkerRole.READER, 1);
+    }
+
+    /**
+     * Producer side of the hand-off: give the ticket to the oldest buyer parked in purchaseTicket.
+     * Buyers parked in awaitTickets cannot take a ticket; they are in the other queue and wait for the
+     * ticketsAvailable signal that follows the add. Returns false when no buyer can take it, and the ticket
+     * then goes into the pool as usual.
+     * recordSale runs once a buyer is claimed and before it gets the ticket, so it never sees a half-recorded sale.
+     */
+    public boolean handOff(Ticket ticket, Runnable recordSale) {
+        handOffAttempts.increment();
+        Waiter waiter;
+        while ((waiter = handOffBuyers.poll()) != null) {
+            // The CAS claims the buyer; it fails if a signal got there first or it left, and then it is dropped
+            if (waiter.state.compareAndSet(null, RESERVED)) {
+                recordSale.run();
+                waiter.state.set(ticket);
+                LockSupport.unpark(waiter.thread);
+                handOffs.increment();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //May count waiters that already left and have not reached the front yet
+    public boolean hasWaiters(WorkerRole role) {
+        return !queues.get(role).isEmpty() || (role == WorkerRole.BUYER && !handOffBuyers.isEmpty());
+    }
+
+    public long getHandOffs() {
+        return handOffs.sum();
+    }
+
+    public long getHandOffAttempts() {
+        return handOffAttempts.sum();
+    }
+
+    //Percentage of adds that went straight to a waiting buyer
+    public double getHandOffHitRate() {
+        long attempts = handOffAttempts.sum();
+        return attempts == 0 ? 0 : (double) handOffs.sum() / attempts * 100;
+    }
+}
@@ -2,40 +2,106 @@ package com.gayan.versions;
 
 import com.gayan.entities.Ticket;
 import com.gayan.entities.TicketPool;
+import com.gayan.entities.WorkerRole;
+import com.gayan.utilz.AvailableTickets;
+import com.gayan.utilz.InstrumentedLock;
+import com.gayan.utilz.PurchaseWaiters;
+import com.gayan.utilz.SoldTicketLedger;
+import com.gayan.utilz.WorkerWaitQueues;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.BlockingQueue;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * BlockingQueue version of the ticket pool.
+ * Purchases never take the read/write lock: a buyer reserves tickets in availableCount with a CAS (like the
+ * lock-free pool), polls them from the queue and flips each one to sold with Ticket.tryMarkSold. The sale is
+ * left in pendingSales, and whoever takes the write lock next moves it out of the index and into the ledger.
+ */
 public class BlockingQueueTicketPool implements TicketPool {
 
     private final int TIME_OUT = 5000;
+    private static final int SETTLE_BATCH = 256; //pending sales a buyer lets pile up before trying to settle them
 
+    //Unsold tickets in purchase order. Buyers take them out, which frees the room for producers blocked in offer.
     private final BlockingQueue<Ticket> tickets;
     private final int capacity;
     private final AtomicLong ticketIdCounter;
     private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    //Its two halves, every acquire names its operation. Record wait and hold times when asked to at construction.
+    private final InstrumentedLock readLock;
+    private final InstrumentedLock writeLock;
+
+    //Tickets in the queue not yet reserved by a buyer. Raised only once a ticket is in the queue, so a buyer that
+    //wins the CAS always finds one to poll, and a group can reserve all of its tickets at once.
+    private final AtomicInteger availableCount = new AtomicInteger(0);
+    //Striped counter (LongAdder cells are padded) so buyers selling outside the lock do not fight over one value
+    private final LongAdder soldCount = new LongAdder();
+    //Sold by a buyer but not yet out of the index and into the ledger, settled under the write lock
+    private final Queue<Ticket> pendingSales = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingSaleCount = new AtomicInteger(0);
+    //Sold tickets leave the queue for this compact archive, guarded by lock
+    private final SoldTicketLedger soldLedger;
+    //Unsold tickets registered after going into the queue: ID lookup, O(1) random pick and O(1) removal
+    //on purchase in one structure. Guarded by lock.
+    private final AvailableTickets registered = new AvailableTickets();
+    //Async buyers, served after the locks are released
+    private final PurchaseWaiters asyncBuyers = new PurchaseWaiters();
+    //Single-ticket buyers, writers and readers park here, one queue per role
+    private final WorkerWaitQueues workerWaiters = new WorkerWaitQueues();
+    //Group buyers wait on the pool monitor, which is only notified while some are waiting
+    private volatile int groupBuyersWaiting = 0;
 
     public BlockingQueueTicketPool(int capacity) {
+        this(capacity, SoldTicketLedger.inMemory());
+    }
+
+    public BlockingQueueTicketPool(int capacity, SoldTicketLedger soldLedger) {
+        this(capacity, soldLedger, false);
+    }
+
+    //recordLockTimes: time every wait for and hold of the read and write locks, per operation, see getLockStats()
+    public BlockingQueueTicketPool(int capacity, SoldTicketLedger soldLedger, boolean recordLockTimes) {
         this.capacity = capacity;
+        this.soldLedger = soldLedger;
         this.tickets = new LinkedBlockingQueue<>(capacity);
         this.ticketIdCounter = new AtomicLong(1);
+        this.readLock = InstrumentedLock.readLockOf(lock, recordLockTimes);
+        this.writeLock = InstrumentedLock.writeLockOf(lock, recordLockTimes);
     }
 
     @Override
     public boolean addTicket(Ticket ticket) {
+        writeLock.lock("addTicket");
+        try {
+            if (handOff(ticket)) {
+                return true; // went straight to a buyer waiting in purchaseTicket, it never takes room in the queue
+            }
+            if (ticket.isSold()) {
+                archiveSold(ticket); // already sold (a restore), straight to the archive
+                return true;
+            }
+        } finally {
+            writeLock.unlock();
+        }
         try {
             boolean success = tickets.offer(ticket, TIME_OUT, TimeUnit.MILLISECONDS);
             if (success) {
-                synchronized (this) {
-                    notifyAll(); // 🧠 Important: Wake up manual waiters (not BlockingQueue internals)
-                }
+                availableCount.incrementAndGet();
+                registerAdded(new ArrayList<>(List.of(ticket))); // index it, then wake a parked buyer and serve async ones
             } else {
                 System.out.println(Thread.currentThread().getName() + " could not add ticket - pool full after waiting.");
             }
@@ -47,6 +113,69 @@ public class BlockingQueueTicketPool implements TicketPool {
         }
     }
 
+    //Offers go straight into the queue, then the whole block is registered under one write lock and one wakeup round.
+    //Only blocks (and flushes what is already in) when the queue is full.
+    @Override
+    public int addTickets(Collection<Ticket> newTickets) {
+        List<Ticket> pending = new ArrayList<>(newTickets.size());
+        int added = 0;
+        long endTime = System.currentTimeMillis() + TIME_OUT;
+        try {
+            for (Ticket ticket : newTickets) {
+                if (ticket.isSold()) {
+                    writeLock.lock("addTickets");
+                    try {
+                        archiveSold(ticket);
+                    } finally {
+                        writeLock.unlock();
+                    }
+                    added++;
+                    continue;
+                }
+                if (!tickets.offer(ticket)) {
+                    added += registerAdded(pending); // let buyers see these before blocking
+                    long remainingTime = endTime - System.currentTimeMillis();
+                    if (remainingTime <= 0 || !tickets.offer(ticket, remainingTime, TimeUnit.MILLISECONDS)) {
+                        System.out.println(Thread.currentThread().getName() + " could not add tickets - pool full after waiting (" + added + " added).");
+                        return added;
+                    }
+                }
+                availableCount.incrementAndGet();
+                pending.add(ticket);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println(Thread.currentThread().getName() + " was interrupted while adding tickets.");
+        } finally {
+            added += registerAdded(pending);
+        }
+        return added;
+    }
+
+    //The tickets are already in the queue and counted. A buyer may have sold one before it got here (it is
+    //pending or archived then), so only tickets still unsold and not registered yet go into the index.
+    private int registerAdded(List<Ticket> pending) {
+        int count = pending.size();
+        if (count == 0) {
+            return 0;
+        }
+        writeLock.lock("registerAdded");
+        try {
+            settlePendingSales();
+            for (Ticket ticket : pending) {
+                if (!ticket.isSold() && !registered.contains(ticket.getTicketId())) {
+                    registered.add(ticket);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        pending.clear();
+        signalTicketsAvailable(count);
+        serveAsyncBuyers();
+        return count;
+    }
+
     @Override
     public Optional<Ticket> purchaseTicket() {
 
@@ -55,25 +184,19 @@ public class BlockingQueueTicketPool implements TicketPool {
 
         while (System.currentTimeMillis() < endTime) {
             try {
-                List<Ticket> availableTickets = getAvailableTickets();
-                if (!availableTickets.isEmpty()) {
-                    Ticket ticket = availableTickets.get(0);
-                    lock.writeLock().lock();
-                    try {
-                        if (!ticket.isSold()) { // Double-check inside lock
-                            ticket.setSold(true);
-                            return Optional.of(ticket);
-                        }
-                    } finally {
-                        lock.writeLock().unlock();
-                    }
+                Ticket ticket = pollAvailable();
+                if (ticket != null) {
+                    return Optional.of(ticket);
                 }
                 // Calculate remaining time
                 long remainingTime = endTime - System.currentTimeMillis();
                 if (remainingTime <= 0) break;
 
-                // Sleep for shorter of 50ms or remaining time
-                Thread.sleep(Math.min(50, remainingTime));
+                // A producer may hand us a new ticket directly
+                ticket = workerWaiters.awaitHandOff(() -> availableFor(WorkerRole.BUYER), TimeUnit.MILLISECONDS.toNanos(remainingTime));
+                if (ticket != null) {
+                    return Optional.of(ticket);
+                }
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 return Optional.empty();
@@ -83,19 +206,166 @@ public class BlockingQueueTicketPool implements TicketPool {
     }
 
     @Override
-    public void cancelTicket(Ticket ticket) {
+    public CompletableFuture<Ticket> purchaseTicketAsync() {
+        Ticket ticket = pollAvailable();
         if (ticket != null) {
-            lock.writeLock().lock();
+            return CompletableFuture.completedFuture(ticket);
+        }
+        CompletableFuture<Ticket> future = asyncBuyers.register(TIME_OUT);
+        serveAsyncBuyers(); // a ticket may have come in before we were queued
+        return future;
+    }
+
+    //Take the oldest unsold ticket without waiting, null if there is none. Frees its room in the queue.
+    private Ticket pollAvailable() {
+        return reserve(1) ? takeReserved() : null;
+    }
+
+    //Reserve count tickets with one CAS, all or none
+    private boolean reserve(int count) {
+        while (true) {
+            int current = availableCount.get();
+            if (current < count) {
+                return false;
+            }
+            if (availableCount.compareAndSet(current, current - count)) {
+                return true;
+            }
+        }
+    }
+
+    //Poll a reserved ticket and sell it without the lock. The queue holds at least as many tickets as were reserved.
+    private Ticket takeReserved() {
+        Ticket ticket = tickets.poll();
+        if (!ticket.tryMarkSold()) {
+            throw new IllegalStateException("Ticket " + ticket.getTicketId() + " was sold while still in the queue");
+        }
+        soldCount.increment();
+        pendingSales.offer(ticket);
+        if (pendingSaleCount.incrementAndGet() >= SETTLE_BATCH && writeLock.tryLock("purchaseTicket")) {
             try {
-                // Only mark as unsold;
-                ticket.setSold(false);
+                settlePendingSales(); // only if nobody holds the lock, a buyer never waits for it
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        return ticket;
+    }
+
+    //Called holding the write lock. Moves tickets sold by buyers out of the index and into the ledger.
+    private void settlePendingSales() {
+        Ticket ticket;
+        while ((ticket = pendingSales.poll()) != null) {
+            pendingSaleCount.decrementAndGet();
+            registered.remove(ticket.getTicketId());
+            soldLedger.archive(ticket);
+        }
+    }
 
+    //For readers: settle only if the write lock is free right now, otherwise the next buyer or writer does it.
+    //Reads cope with pending sales (still indexed, already marked sold), so they never queue for the write lock.
+    private void trySettlePendingSales() {
+        if (!pendingSales.isEmpty() && writeLock.tryLock("settlePendingSales")) {
+            try {
+                settlePendingSales();
             } finally {
-                lock.writeLock().unlock();
+                writeLock.unlock();
+            }
+        }
+    }
+
+    //Called holding the write lock
+    private void archiveSold(Ticket ticket) {
+        ticket.setSold(true);
+        soldLedger.archive(ticket);
+        soldCount.increment();
+    }
+
+    //Called holding the write lock, before the ticket goes into the queue.
+    //Gives it to a buyer parked in purchaseTicket, recorded as sold and never counted as available.
+    private boolean handOff(Ticket ticket) {
+        return !ticket.isSold() && workerWaiters.handOff(ticket, () -> archiveSold(ticket));
+    }
+
+    //Hand new tickets straight to queued async buyers, outside the locks so their callbacks never run under them
+    private void serveAsyncBuyers() {
+        if (asyncBuyers.hasWaiters()) {
+            asyncBuyers.drain(this::pollAvailable, this::restock);
+        }
+    }
+
+    @Override
+    public List<Ticket> purchaseTickets(int count, Duration timeout) {
+        List<Ticket> purchased = new ArrayList<>(Math.max(count, 0));
+        if (count <= 0 || count > capacity) {
+            return purchased;
+        }
+        long endTime = System.currentTimeMillis() + timeout.toMillis();
+
+        while (true) {
+            // All or nothing, a partial purchase is never made
+            if (reserve(count)) {
+                for (int i = 0; i < count; i++) {
+                    purchased.add(takeReserved());
+                }
+                return purchased;
+            }
+            long remainingTime = endTime - System.currentTimeMillis();
+            if (remainingTime <= 0) {
+                return purchased;
+            }
+            try {
+                awaitGroup(count, remainingTime);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return purchased;
             }
         }
     }
 
+    @Override
+    public void cancelTicket(Ticket ticket) {
+        if (restock(ticket)) {
+            serveAsyncBuyers();
+        }
+    }
+
+    //Put a sold ticket back on sale. It goes back into the queue like a producer's ticket (waits if the pool is full).
+    //The CAS back to available picks one winner if the same ticket is cancelled twice at once.
+    private boolean restock(Ticket ticket) {
+        if (ticket == null) {
+            return false;
+        }
+        writeLock.lock("cancelTicket");
+        try {
+            settlePendingSales();
+            if (!soldLedger.contains(ticket.getTicketId()) || !ticket.tryMarkAvailable()) {
+                return false; // not sold through this pool, or already cancelled
+            }
+            soldLedger.restore(ticket);
+            soldCount.decrement();
+        } finally {
+            writeLock.unlock();
+        }
+        try {
+            if (tickets.offer(ticket, TIME_OUT, TimeUnit.MILLISECONDS)) {
+                availableCount.incrementAndGet();
+                registerAdded(new ArrayList<>(List.of(ticket)));
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println(Thread.currentThread().getName() + " could not put the cancelled ticket back - pool full.");
+        writeLock.lock("cancelTicket");
+        try {
+            archiveSold(ticket); // stays sold
+        } finally {
+            writeLock.unlock();
+        }
+        return false;
+    }
+
 
     @Override
     public int getCurrentSize() {
@@ -109,57 +379,73 @@ public class BlockingQueueTicketPool implements TicketPool {
 
     @Override
     public int getAvailableTicketCount() {
-        lock.readLock().lock();
-        try {
-            return (int) tickets.stream().filter(ticket -> !ticket.isSold()).count();
-        } finally {
-            lock.readLock().unlock();
-        }
+        return availableCount.get();
     }
 
     @Override
     public int getSoldTicketCount() {
-        lock.readLock().lock();
-        try {
-            return (int) tickets.stream().filter(Ticket::isSold).count();
-        } finally {
-            lock.readLock().unlock();
-        }
+        return soldCount.intValue(); // a LongAdder sum, no lock needed
     }
 
     @Override
     public List<Ticket> getAllTickets() {
-        lock.readLock().lock();
+        trySettlePendingSales();
+        readLock.lock("getAllTickets");
         try {
-            return new ArrayList<>(tickets);
+            List<Ticket> all = new ArrayList<>(tickets);
+            all.addAll(pendingSales); // sold, not settled yet (settling needs the write lock, so none settle meanwhile)
+            soldLedger.addTo(all); // copies of the sold tickets
+            return all;
         } finally {
-            lock.readLock().unlock();
+            readLock.unlock();
         }
     }
 
     public int getAllTicketsCount() {
-        lock.readLock().lock();
+        trySettlePendingSales();
+        readLock.lock("getAllTicketsCount");
         try{
-            return tickets.size();
+            return tickets.size() + pendingSaleCount.get() + soldLedger.size();
         }finally {
-            lock.readLock().unlock();
+            readLock.unlock();
         }
 
     }
 
     @Override
     public void printTicketPoolStatus() {
-        int total = getCurrentSize();
         int available = getAvailableTicketCount();
         int sold = getSoldTicketCount();
+        int total = available + sold;
         double percentageSold = total > 0 ? (double) sold / total * 100 : 0;
 
         System.out.println("========== TICKET POOL STATISTICS ==========");
-        System.out.println("Total tickets: " + total + "/" + capacity);
+        System.out.println("Total tickets: " + total + " (" + getCurrentSize() + "/" + capacity + " in the pool)");
         System.out.println("Available tickets: " + available);
         System.out.println("Sold tickets: " + sold);
         System.out.printf("Percentage sold: %.2f%%\n", percentageSold);
+        System.out.printf("Hand-offs: %d of %d adds (hit rate %.2f%%)\n", workerWaiters.getHandOffs(),
+                workerWaiters.getHandOffAttempts(), workerWaiters.getHandOffHitRate());
+        readLock.lock("printTicketPoolStatus");
+        try {
+            System.out.println("Sold ledger: " + soldLedger.describe());
+        } finally {
+            readLock.unlock();
+        }
         System.out.println("============================================");
+        if (writeLock.isRecording()) {
+            getLockStats().forEach(System.out::println);
+        }
+    }
+
+    @Override
+    public long getTicketIdHighWaterMark() {
+        return ticketIdCounter.get() - 1;
+    }
+
+    @Override
+    public void advanceTicketIds(long highWaterMark) {
+        ticketIdCounter.accumulateAndGet(highWaterMark + 1, Math::max);
     }
 
     @Override
@@ -168,41 +454,39 @@ public class BlockingQueueTicketPool implements TicketPool {
         return new Ticket(id, eventName, vendorName, location, price);
     }
 
+    //No pool lock: the queue copies itself out in one step, and each ticket's attributes are read as one version
     @Override
     public List<Ticket> getAvailableTickets() {
-        lock.readLock().lock();
-        try {
-            List<Ticket> available = new ArrayList<>();
-            for (Ticket ticket : tickets) {
-                if (!ticket.isSold()) {
-                    available.add(ticket);
-                }
+        List<Ticket> available = new ArrayList<>();
+        for (Ticket ticket : tickets.toArray(new Ticket[0])) {
+            if (!ticket.isSold()) { // a buyer may be taking it right now
+                available.add(ticket);
             }
-            return available;
-        } finally {
-            lock.readLock().unlock();
         }
+        return available;
     }
 
     @Override
     public Optional<Ticket> getRandomAvailableTicket() {
+        long endTime = System.currentTimeMillis() + TIME_OUT;
+
         while (true) {
             try {
-                List<Ticket> availableTickets = getAvailableTickets();
-                if (!availableTickets.isEmpty()) {
-                    int randomIndex = ThreadLocalRandom.current().nextInt(availableTickets.size());
-                    Ticket ticket = availableTickets.get(randomIndex);
-                    lock.writeLock().lock();
-                    try {
-                        if (!ticket.isSold()) { // Double-check inside lock
-                            //ticket.setSold(true);
-                            return Optional.of(ticket);
-                        }
-                    } finally {
-                        lock.writeLock().unlock();
+                trySettlePendingSales();
+                readLock.lock("getRandomAvailableTicket");
+                try {
+                    Ticket ticket = registered.random();
+                    if (ticket != null && !ticket.isSold()) { // a buyer may have just sold it
+                        return Optional.of(ticket);
                     }
+                } finally {
+                    readLock.unlock();
                 }
-                Thread.sleep(50); // reduced wait
+                long remainingTime = endTime - System.currentTimeMillis();
+                if (remainingTime <= 0) {
+                    return Optional.empty();
+                }
+                awaitTickets(WorkerRole.WRITER, remainingTime);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 return Optional.empty();
@@ -210,20 +494,82 @@ public class BlockingQueueTicketPool implements TicketPool {
         }
     }
 
+    @Override
+    public boolean awaitTickets(WorkerRole role, long timeoutMillis) throws InterruptedException {
+        return workerWaiters.await(role, () -> availableFor(role), TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+    }
+
+    //Lock-free readiness check for the wait queues (the counters are only read, never under the lock)
+    private boolean availableFor(WorkerRole role) {
+        return role == WorkerRole.READER ? !tickets.isEmpty() : availableCount.get() > 0;
+    }
+
+    //Group buyers wait on the pool monitor. They register before checking the count, and adders update the count
+    //before checking for registered groups, so either the group sees the tickets or the adder notifies it.
+    private synchronized void awaitGroup(int needed, long remainingTime) throws InterruptedException {
+        groupBuyersWaiting++;
+        try {
+            if (availableCount.get() < needed) {
+                wait(remainingTime);
+            }
+        } finally {
+            groupBuyersWaiting--;
+        }
+    }
+
+    //One single buyer per new ticket; the monitor is only taken when a group buyer is waiting
+    private void signalTicketsAvailable(int count) {
+        if (groupBuyersWaiting > 0) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+        workerWaiters.ticketsAvailable(count);
+    }
+
+    //An unsold ticket gets a new version under the read lock, so writers run alongside listings and each other.
+    //Only a sold ticket (a ledger record) needs the write lock.
     @Override
     public void updateTicket(long ticketId, double newPrice, String newLocation, String newEventName) {
-        lock.writeLock().lock();
+        readLock.lock("updateTicket");
         try {
-            for (Ticket ticket : tickets) {
-                if (ticket.getTicketId() == ticketId) {
-                    ticket.setPrice(newPrice);
-                    ticket.setLocation(newLocation);
-                    ticket.setEventName(newEventName);
-                    return;
-                }
+            Ticket ticket = registered.get(ticketId);
+            if (ticket != null) {
+                ticket.update(newPrice, newLocation, newEventName);
+                return;
             }
         } finally {
-            lock.writeLock().unlock();
+            readLock.unlock();
         }
+        writeLock.lock("updateTicket");
+        try {
+            settlePendingSales();
+            Ticket ticket = registered.get(ticketId); // may have been restocked meanwhile
+            if (ticket != null) {
+                ticket.update(newPrice, newLocation, newEventName);
+            } else {
+                soldLedger.update(ticketId, newPrice, newLocation, newEventName);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<Ticket> findTicket(long ticketId) {
+        readLock.lock("findTicket");
+        try {
+            Ticket ticket = registered.get(ticketId); // a pending sale is still indexed, already marked sold
+            return Optional.ofNullable(ticket != null ? ticket : soldLedger.find(ticketId)); // sold ones come back as a copy
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    //Wait and hold times per operation for the write lock, then the read lock. Empty unless built with recordLockTimes.
+    public List<InstrumentedLock.Stats> getLockStats() {
+        List<InstrumentedLock.Stats> stats = new ArrayList<>(writeLock.getStats());
+        stats.addAll(readLock.getStats());
+        return stats;
     }
 }
@@ -0,0 +1,290 @@
+package com.gayan.versions;
+
+import com.gayan.entities.Ticket;
+import com.gayan.entities.TicketPool;
+import com.gayan.entities.WorkerRole;
+import com.gayan.utilz.CheckpointStore;
+import com.gayan.utilz.DirtyTicketBitmap;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Incremental checkpoints for any TicketPool. Every add, purchase, cancel and update marks the ticket's ID in a
+ * dirty bitmap (after the pool has applied it), and each checkpoint writes only the marked tickets as a delta.
+ * A background compactor merges the deltas into a new full base image, so recovery reads one base plus a few
+ * deltas and no checkpoint ever has to copy the whole pool while it is running.
+ */
+public class CheckpointingTicketPool implements TicketPool, Closeable {
+
+    private final TicketPool delegate;
+    private final CheckpointStore store;
+    private final DirtyTicketBitmap dirty = new DirtyTicketBitmap();
+    private final int deltasPerCompaction;
+    private final ScheduledExecutorService scheduler;
+    private final CheckpointStore.Recovery recovery;
+
+    //Statistics
+    private final AtomicLong checkpoints = new AtomicLong();
+    private final AtomicLong ticketsWritten = new AtomicLong();
+    private final AtomicLong compactions = new AtomicLong();
+    private volatile int lastDeltaSize = 0;
+
+    /**
+     * Recover the delegate (which must be empty) from the directory, then checkpoint by hand with checkpoint().
+     */
+    public CheckpointingTicketPool(TicketPool delegate, Path directory) throws IOException {
+        this(delegate, directory, null, 0);
+    }
+
+    /**
+     * Same, plus a checkpoint every interval, and a compaction whenever that many deltas have piled up.
+     */
+    public CheckpointingTicketPool(TicketPool delegate, Path directory, Duration interval, int deltasPerCompaction) throws IOException {
+        this.delegate = delegate;
+        this.store = new CheckpointStore(directory);
+        this.deltasPerCompaction = deltasPerCompaction;
+        this.recovery = store.recover(delegate);
+        if (recovery.tickets() > 0) {
+            System.out.println("Recovered " + recovery.tickets() + " tickets from the base image + " +
+                    recovery.deltas() + " deltas in " + recovery.millis() + " ms.");
+        }
+
+        if (interval != null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "Checkpointer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long millis = interval.toMillis();
+            scheduler.scheduleWithFixedDelay(this::scheduledCheckpoint, millis, millis, TimeUnit.MILLISECONDS);
+        } else {
+            scheduler = null;
+        }
+    }
+
+    //========== Checkpoints ==========
+
+    /**
+     * Write every ticket changed since the last checkpoint as a new delta. Returns how many tickets it held.
+     * A ticket changing while this runs is either in this delta or stays marked for the next one.
+     */
+    public synchronized int checkpoint() throws IOException {
+        Set<Long> dirtyIds = new HashSet<>();
+        dirty.drain(dirtyIds::add);
+        List<Ticket> changed = new ArrayList<>(dirtyIds.size());
+        //One constant-time lookup per changed ticket, each under the pool's own short lock, never a copy of the pool
+        for (long ticketId : dirtyIds) {
+            delegate.findTicket(ticketId).ifPresent(changed::add);
+        }
+        if (changed.isEmpty()) {
+            return 0;
+        }
+        try {
+            store.writeDelta(changed, delegate.getTicketIdHighWaterMark());
+        } catch (IOException e) {
+            changed.forEach(ticket -> dirty.mark(ticket.getTicketId())); // retry them with the next checkpoint
+            throw e;
+        }
+        checkpoints.incrementAndGet();
+        ticketsWritten.addAndGet(changed.size());
+        lastDeltaSize = changed.size();
+        return changed.size();
+    }
+
+    //Merge the deltas into a new base image. Reads and writes checkpoint files only, the pool is not touched.
+    public int compact() throws IOException {
+        int merged = store.compact();
+        if (merged > 0) {
+            compactions.incrementAndGet();
+        }
+        return merged;
+    }
+
+    private void scheduledCheckpoint() {
+        try {
+            checkpoint();
+            if (deltasPerCompaction > 0 && store.getDeltaCount() >= deltasPerCompaction) {
+                compact();
+            }
+        } catch (IOException e) {
+            System.out.println(Thread.currentThread().getName() + " could not write checkpoint: " + e.getMessage());
+        }
+    }
+
+    public CheckpointStore.Recovery getRecovery() {
+        return recovery;
+    }
+
+    public CheckpointStore getStore() {
+        return store;
+    }
+
+    //Stop the background checkpoints and write a last delta
+    @Override
+    public void close() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        checkpoint();
+    }
+
+    @Override
+    public void printTicketPoolStatus() {
+        delegate.printTicketPoolStatus();
+        System.out.printf("Checkpoints: %d deltas, %d tickets written (last delta %d), %d compactions\n",
+                checkpoints.get(), ticketsWritten.get(), lastDeltaSize, compactions.get());
+        System.out.printf("Recovery: %d tickets from base + %d deltas in %d ms\n",
+                recovery.tickets(), recovery.deltas(), recovery.millis());
+    }
+
+    //========== Tracked operations ==========
+
+    @Override
+    public boolean addTicket(Ticket ticket) {
+        boolean added = delegate.addTicket(ticket);
+        if (added) {
+            dirty.mark(ticket.getTicketId());
+        }
+        return added;
+    }
+
+    @Override
+    public int addTickets(Collection<Ticket> tickets) {
+        List<Ticket> block = new ArrayList<>(tickets);
+        int added = delegate.addTickets(block);
+        for (int i = 0; i < added; i++) {
+            dirty.mark(block.get(i).getTicketId()); // pools add in order and stop when full
+        }
+        return added;
+    }
+
+    @Override
+    public Optional<Ticket> purchaseTicket() {
+        Optional<Ticket> ticket = delegate.purchaseTicket();
+        ticket.ifPresent(t -> dirty.mark(t.getTicketId()));
+        return ticket;
+    }
+
+    @Override
+    public CompletableFuture<Ticket> purchaseTicketAsync() {
+        return delegate.purchaseTicketAsync().thenApply(ticket -> {
+            dirty.mark(ticket.getTicketId());
+            return ticket;
+        });
+    }
+
+    @Override
+    public List<Ticket> purchaseTickets(int count, Duration timeout) {
+        List<Ticket> purchased = delegate.purchaseTickets(count, timeout);
+        purchased.forEach(ticket -> dirty.mark(ticket.getTicketId()));
+        return purchased;
+    }
+
+    @Override
+    public void cancelTicket(Ticket ticket) {
+        delegate.cancelTicket(ticket);
+        if (ticket != null) {
+            dirty.mark(ticket.getTicketId());
+        }
+    }
+
+    @Override
+    public void updateTicket(long ticketId, double newPrice, String newLocation, String newEventName) {
+        delegate.updateTicket(ticketId, newPrice, newLocation, newEventName);
+        dirty.mark(ticketId);
+    }
+
+    //========== Straight to the pool ==========
+
+    @Override
+    public Ticket createTicket(String eventName, String vendorName, String location, double price) {
+        return delegate.createTicket(eventName, vendorName, location, price);
+    }
+
+    @Override
+    public long getTicketIdHighWaterMark() {
+        return delegate.getTicketIdHighWaterMark();
+    }
+
+    @Override
+    public void advanceTicketIds(long highWaterMark) {
+        delegate.advanceTicketIds(highWaterMark);
+    }
+
+    @Override
+    public int getCurrentSize() {
+        return delegate.getCurrentSize();
+    }
+
+    @Override
+    public int getCapacity() {
+        return delegate.getCapacity();
+    }
+
+    @Override
+    public int getAvailableTicketCount() {
+        return delegate.getAvailableTicketCount();
+    }
+
+    @Override
+    public int getSoldTicketCount() {
+        return delegate.getSoldTicketCount();
+    }
+
+    @Override
+    public List<Ticket> getAllTickets() {
+        return delegate.getAllTickets();
+    }
+
+    @Override
+    public List<Ticket> getAvailableTickets() {
+        return delegate.getAvailableTickets();
+    }
+
+    @Override
+    public Optional<Ticket> getRandomAvailableTicket() {
+        return delegate.getRandomAvailableTicket();
+    }
+
+    @Override
+    public int getAllTicketsCount() {
+        return delegate.getAllTicketsCount();
+    }
+
+    @Override
+    public Optional<Ticket> findTicket(long ticketId) {
+        return delegate.findTicket(ticketId);
+    }
+
+    @Override
+    public boolean awaitTickets(WorkerRole role, long timeoutMillis) throws InterruptedException {
+        return delegate.awaitTickets(role, timeoutMillis);
+    }
+
+    @Override
+    public String toString() {
+        return "CheckpointingTicketPool{" +
+                "delegate=" + delegate +
+                ", directory=" + store.getDirectory() +
+                '}';
+    }
+}
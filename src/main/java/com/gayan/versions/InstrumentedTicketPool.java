@@ -0,0 +1,188 @@
+package com.gayan.versions;
+
+import com.gayan.entities.Ticket;
+import com.gayan.entities.TicketPool;
+import com.gayan.entities.WorkerRole;
+import com.gayan.utilz.LatencyHistogram;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Latency recording for any TicketPool. Every add, purchase, cancel and update call is timed with System.nanoTime
+ * and recorded in that operation's LatencyHistogram, waits included (a purchase that waits for a producer counts
+ * its whole wait, which is what the buyer sees). A batch call is one sample, and an async purchase is timed until
+ * its future completes. Recording takes no lock.
+ */
+public class InstrumentedTicketPool implements TicketPool {
+
+    public enum Operation {
+        ADD,
+        PURCHASE,
+        CANCEL,
+        UPDATE
+    }
+
+    private final TicketPool delegate;
+    private final Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+
+    public InstrumentedTicketPool(TicketPool delegate) {
+        this.delegate = delegate;
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new LatencyHistogram());
+        }
+    }
+
+    //Percentiles of every call of this operation so far
+    public LatencyHistogram.Summary getLatency(Operation operation) {
+        return latencies.get(operation).summary();
+    }
+
+    public TicketPool getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public void printTicketPoolStatus() {
+        delegate.printTicketPoolStatus();
+        for (Operation operation : Operation.values()) {
+            System.out.printf("%-8s latency: %s\n", operation, getLatency(operation));
+        }
+    }
+
+    //========== Timed operations ==========
+
+    @Override
+    public boolean addTicket(Ticket ticket) {
+        long start = System.nanoTime();
+        boolean added = delegate.addTicket(ticket);
+        latencies.get(Operation.ADD).record(System.nanoTime() - start);
+        return added;
+    }
+
+    @Override
+    public Optional<Ticket> purchaseTicket() {
+        long start = System.nanoTime();
+        Optional<Ticket> ticket = delegate.purchaseTicket();
+        latencies.get(Operation.PURCHASE).record(System.nanoTime() - start);
+        return ticket;
+    }
+
+    @Override
+    public int addTickets(Collection<Ticket> tickets) {
+        long start = System.nanoTime();
+        int added = delegate.addTickets(tickets);
+        latencies.get(Operation.ADD).record(System.nanoTime() - start);
+        return added;
+    }
+
+    @Override
+    public List<Ticket> purchaseTickets(int count, Duration timeout) {
+        long start = System.nanoTime();
+        List<Ticket> purchased = delegate.purchaseTickets(count, timeout);
+        latencies.get(Operation.PURCHASE).record(System.nanoTime() - start);
+        return purchased;
+    }
+
+    //Recorded when the ticket arrives (or the purchase fails), not when the future is handed back
+    @Override
+    public CompletableFuture<Ticket> purchaseTicketAsync() {
+        long start = System.nanoTime();
+        CompletableFuture<Ticket> ticket = delegate.purchaseTicketAsync();
+        ticket.whenComplete((sold, error) -> latencies.get(Operation.PURCHASE).record(System.nanoTime() - start));
+        return ticket; // the pool's own future, so cancelling it still reaches the pool
+    }
+
+    @Override
+    public void cancelTicket(Ticket ticket) {
+        long start = System.nanoTime();
+        delegate.cancelTicket(ticket);
+        latencies.get(Operation.CANCEL).record(System.nanoTime() - start);
+    }
+
+    @Override
+    public void updateTicket(long ticketId, double newPrice, String newLocation, String newEventName) {
+        long start = System.nanoTime();
+        delegate.updateTicket(ticketId, newPrice, newLocation, newEventName);
+        latencies.get(Operation.UPDATE).record(System.nanoTime() - start);
+    }
+
+    //========== Straight to the pool ==========
+
+    @Override
+    public Ticket createTicket(String eventName, String vendorName, String location, double price) {
+        return delegate.createTicket(eventName, vendorName, location, price);
+    }
+
+    @Override
+    public long getTicketIdHighWaterMark() {
+        return delegate.getTicketIdHighWaterMark();
+    }
+
+    @Override
+    public void advanceTicketIds(long highWaterMark) {
+        delegate.advanceTicketIds(highWaterMark);
+    }
+
+    @Override
+    public int getCurrentSize() {
+        return delegate.getCurrentSize();
+    }
+
+    @Override
+    public int getCapacity() {
+        return delegate.getCapacity();
+    }
+
+    @Override
+    public int getAvailableTicketCount() {
+        return delegate.getAvailableTicketCount();
+    }
+
+    @Override
+    public int getSoldTicketCount() {
+        return delegate.getSoldTicketCount();
+    }
+
+    @Override
+    public List<Ticket> getAllTickets() {
+        return delegate.getAllTickets();
+    }
+
+    @Override
+    public List<Ticket> getAvailableTickets() {
+        return delegate.getAvailableTickets();
+    }
+
+    @Override
+    public Optional<Ticket> getRandomAvailableTicket() {
+        return delegate.getRandomAvailableTicket();
+    }
+
+    @Override
+    public int getAllTicketsCount() {
+        return delegate.getAllTicketsCount();
+    }
+
+    @Override
+    public Optional<Ticket> findTicket(long ticketId) {
+        return delegate.findTicket(ticketId);
+    }
+
+    @Override
+    public boolean awaitTickets(WorkerRole role, long timeoutMillis) throws InterruptedException {
+        return delegate.awaitTickets(role, timeoutMillis);
+    }
+
+    @Override
+    public String toString() {
+        return "InstrumentedTicketPool{" +
+                "delegate=" + delegate +
+                '}';
+    }
+}
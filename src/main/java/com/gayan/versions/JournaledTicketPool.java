@@ -0,0 +1,375 @@
+package com.gayan.versions;
+
+import com.gayan.entities.Ticket;
+import com.gayan.entities.TicketPool;
+import com.gayan.entities.WorkerRole;
+import com.gayan.utilz.PoolSnapshot;
+import com.gayan.utilz.TicketJournal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Durable mode for any TicketPool: every add, purchase, cancel and update is appended to a TicketJournal and
+ * is on disk before the call returns. Records from concurrent threads share one write + fsync (group commit).
+ *
+ * Records are appended so the journal order matches what happened in memory: adds are logged before the pool
+ * sees them, purchases after the pool handed the ticket out, and cancels only once the pool put the ticket back
+ * on sale. Cancels, updates and purchase records of one ticket go through the same lock stripe, so a ticket
+ * bought again right after a cancel is never logged as bought before it was cancelled.
+ *
+ * Async purchases are appended on their own executor and completed once a commit covers them, so they share
+ * group commits with every other caller instead of each waiting out an fsync of its own.
+ *
+ * The journal is compacted once it holds more records than the pool has tickets (and at least compactAfterRecords):
+ * a background thread folds the committed records into one ADD record per ticket, so file size and replay time
+ * follow the pool. Buyers and producers only trigger it and never wait for it.
+ */
+public class JournaledTicketPool implements TicketPool, Closeable {
+
+    private static final int TICKET_STRIPES = 64;
+    private static final long COMPACT_AFTER_RECORDS = 100_000;
+
+    private final TicketPool delegate;
+    private final TicketJournal journal;
+    private final long compactAfterRecords;
+    //Per-ticket order of cancels, updates and purchase records; ReentrantLock so virtual threads are not pinned
+    private final ReentrantLock[] ticketLocks = new ReentrantLock[TICKET_STRIPES];
+    //Async sales are logged here, never on the thread that completed the delegate's future. Only appends, no fsync.
+    private final ExecutorService asyncSales = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Journal-Async-Sales");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Journal-Compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean compactionQueued = new AtomicBoolean(false);
+
+    /**
+     * Replay the journal (if the file exists) into the empty delegate, then keep journaling to the same file.
+     */
+    public JournaledTicketPool(TicketPool delegate, Path journalFile) throws IOException {
+        this(delegate, journalFile, 0);
+    }
+
+    public JournaledTicketPool(TicketPool delegate, Path journalFile, long commitWindowMicros) throws IOException {
+        this(delegate, journalFile, commitWindowMicros, COMPACT_AFTER_RECORDS);
+    }
+
+    public JournaledTicketPool(TicketPool delegate, Path journalFile, long commitWindowMicros, long compactAfterRecords) throws IOException {
+        this.delegate = delegate;
+        this.compactAfterRecords = compactAfterRecords;
+        List<Ticket> restored = replay(journalFile, delegate);
+        long highestId = 0;
+        for (Ticket ticket : restored) {
+            highestId = Math.max(highestId, ticket.getTicketId());
+        }
+        delegate.advanceTicketIds(highestId); // new IDs continue after the replayed tickets
+        for (int i = 0; i < TICKET_STRIPES; i++) {
+            ticketLocks[i] = new ReentrantLock();
+        }
+        this.journal = new TicketJournal(journalFile, commitWindowMicros);
+        if (!restored.isEmpty()) {
+            compact(); // start from the folded state instead of the whole history
+        }
+    }
+
+    //========== Replay ==========
+
+    /**
+     * Rebuild the journaled tickets in an empty pool, through its public API only, so any TicketPool works.
+     * The journal is folded to the final state of each ticket first, then loaded like a snapshot.
+     * Returns every ticket that made it into the pool.
+     */
+    public static List<Ticket> replay(Path journalFile, TicketPool pool) throws IOException {
+        List<TicketJournal.Entry> entries = TicketJournal.read(journalFile);
+        if (entries.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return PoolSnapshot.loadInto(pool, TicketJournal.fold(entries));
+    }
+
+    //========== Journaled operations ==========
+
+    @Override
+    public boolean addTicket(Ticket ticket) {
+        long seq = journal.appendAdd(ticket);
+        boolean added = delegate.addTicket(ticket);
+        if (!added) {
+            seq = journal.appendReject(ticket.getTicketId());
+        }
+        awaitDurable(seq);
+        maybeCompact();
+        return added;
+    }
+
+    @Override
+    public int addTickets(Collection<Ticket> tickets) {
+        List<Ticket> block = new ArrayList<>(tickets);
+        if (block.isEmpty()) {
+            return 0;
+        }
+        long seq = journal.appendAdds(block);
+        int added = delegate.addTickets(block);
+        for (int i = added; i < block.size(); i++) {
+            seq = journal.appendReject(block.get(i).getTicketId()); // pools add in order and stop when full
+        }
+        awaitDurable(seq);
+        maybeCompact();
+        return added;
+    }
+
+    @Override
+    public Optional<Ticket> purchaseTicket() {
+        Optional<Ticket> ticket = delegate.purchaseTicket();
+        ticket.ifPresent(t -> {
+            awaitDurable(logPurchases(List.of(t)));
+            maybeCompact();
+        });
+        return ticket;
+    }
+
+    //The completing thread (usually a producer inside the delegate) only hands over; the sale is appended on asyncSales
+    //and the future completes when the journal's next group commit covers it, nobody blocks on the fsync
+    @Override
+    public CompletableFuture<Ticket> purchaseTicketAsync() {
+        return delegate.purchaseTicketAsync().thenComposeAsync(ticket -> journal.whenDurable(logPurchases(List.of(ticket)))
+                .handle((durable, error) -> {
+                    if (error != null) {
+                        throw new UncheckedIOException(new IOException("Could not write the ticket journal", error));
+                    }
+                    maybeCompact();
+                    return ticket;
+                }), asyncSales);
+    }
+
+    @Override
+    public List<Ticket> purchaseTickets(int count, Duration timeout) {
+        List<Ticket> purchased = delegate.purchaseTickets(count, timeout);
+        if (!purchased.isEmpty()) {
+            awaitDurable(logPurchases(purchased));
+            maybeCompact();
+        }
+        return purchased;
+    }
+
+    //One append for the whole group, under the stripes of its tickets (taken in index order)
+    private long logPurchases(List<Ticket> tickets) {
+        TreeSet<Integer> stripes = new TreeSet<>();
+        for (Ticket ticket : tickets) {
+            stripes.add(stripeOf(ticket.getTicketId()));
+        }
+        for (int stripe : stripes) {
+            ticketLocks[stripe].lock();
+        }
+        try {
+            return journal.appendPurchases(tickets);
+        } finally {
+            for (int stripe : stripes.descendingSet()) {
+                ticketLocks[stripe].unlock();
+            }
+        }
+    }
+
+    //Logged only when the pool actually put the ticket back on sale; a refused cancel leaves no record
+    @Override
+    public void cancelTicket(Ticket ticket) {
+        if (ticket == null) {
+            return;
+        }
+        long seq;
+        ReentrantLock stripe = ticketLocks[stripeOf(ticket.getTicketId())];
+        stripe.lock();
+        try {
+            boolean wasSold = ticket.isSold();
+            delegate.cancelTicket(ticket);
+            if (!wasSold || ticket.isSold()) {
+                return;
+            }
+            seq = journal.appendCancel(ticket.getTicketId());
+        } finally {
+            stripe.unlock();
+        }
+        awaitDurable(seq);
+        maybeCompact();
+    }
+
+    @Override
+    public void updateTicket(long ticketId, double newPrice, String newLocation, String newEventName) {
+        long seq;
+        ReentrantLock stripe = ticketLocks[stripeOf(ticketId)];
+        stripe.lock();
+        try {
+            seq = journal.appendUpdate(ticketId, newPrice, newLocation, newEventName);
+            delegate.updateTicket(ticketId, newPrice, newLocation, newEventName);
+        } finally {
+            stripe.unlock();
+        }
+        awaitDurable(seq);
+        maybeCompact();
+    }
+
+    private static int stripeOf(long ticketId) {
+        return (int) (ticketId & (TICKET_STRIPES - 1));
+    }
+
+    //========== Compaction ==========
+
+    //Once the records since the last rewrite outnumber the tickets it wrote (so the cost is amortised), queue one
+    private void maybeCompact() {
+        long since = journal.getRecordsSinceRewrite();
+        if (since < compactAfterRecords || since < journal.getRewriteRecords() || !compactionQueued.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            compactor.execute(() -> {
+                try {
+                    journal.compact();
+                } catch (IOException | IllegalStateException e) {
+                    System.out.println("Could not compact the ticket journal: " + e.getMessage());
+                } finally {
+                    compactionQueued.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            compactionQueued.set(false); // closing
+        }
+    }
+
+    /**
+     * Compact the journal now, on the calling thread. Appends carry on meanwhile; see TicketJournal.compact.
+     */
+    public void compact() {
+        try {
+            journal.compact();
+        } catch (IOException e) {
+            throw new UncheckedIOException(Thread.currentThread().getName() + " could not compact the ticket journal", e);
+        }
+    }
+
+    //The in-memory change has already happened, so a journal that cannot be written is reported to the caller
+    private void awaitDurable(long seq) {
+        try {
+            journal.awaitDurable(seq);
+        } catch (IOException e) {
+            throw new UncheckedIOException(Thread.currentThread().getName() + " could not write the ticket journal", e);
+        }
+    }
+
+    @Override
+    public Ticket createTicket(String eventName, String vendorName, String location, double price) {
+        return delegate.createTicket(eventName, vendorName, location, price);
+    }
+
+    @Override
+    public long getTicketIdHighWaterMark() {
+        return delegate.getTicketIdHighWaterMark();
+    }
+
+    @Override
+    public void advanceTicketIds(long highWaterMark) {
+        delegate.advanceTicketIds(highWaterMark);
+    }
+
+    //Commit anything still pending and close the journal file
+    @Override
+    public void close() throws IOException {
+        asyncSales.shutdown();
+        compactor.shutdown();
+        try {
+            asyncSales.awaitTermination(5, TimeUnit.SECONDS); // let pending async sales reach the journal
+            compactor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        journal.close();
+    }
+
+    public TicketJournal getJournal() {
+        return journal;
+    }
+
+    @Override
+    public void printTicketPoolStatus() {
+        delegate.printTicketPoolStatus();
+        System.out.printf("Journal: %d records in %d commits (%.1f records per fsync), %d compactions\n",
+                journal.getRecordCount(), journal.getCommitCount(), journal.getAverageBatchSize(), journal.getRewriteCount());
+    }
+
+    //========== Read-only, straight to the pool ==========
+
+    @Override
+    public int getCurrentSize() {
+        return delegate.getCurrentSize();
+    }
+
+    @Override
+    public int getCapacity() {
+        return delegate.getCapacity();
+    }
+
+    @Override
+    public int getAvailableTicketCount() {
+        return delegate.getAvailableTicketCount();
+    }
+
+    @Override
+    public int getSoldTicketCount() {
+        return delegate.getSoldTicketCount();
+    }
+
+    @Override
+    public List<Ticket> getAllTickets() {
+        return delegate.getAllTickets();
+    }
+
+    @Override
+    public List<Ticket> getAvailableTickets() {
+        return delegate.getAvailableTickets();
+    }
+
+    @Override
+    public Optional<Ticket> getRandomAvailableTicket() {
+        return delegate.getRandomAvailableTicket();
+    }
+
+    @Override
+    public int getAllTicketsCount() {
+        return delegate.getAllTicketsCount();
+    }
+
+    @Override
+    public Optional<Ticket> findTicket(long ticketId) {
+        return delegate.findTicket(ticketId);
+    }
+
+    @Override
+    public boolean awaitTickets(WorkerRole role, long timeoutMillis) throws InterruptedException {
+        return delegate.awaitTickets(role, timeoutMillis);
+    }
+
+    @Override
+    public String toString() {
+        return "JournaledTicketPool{" +
+                "delegate=" + delegate +
+                '}';
+    }
+}
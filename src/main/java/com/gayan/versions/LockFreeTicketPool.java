@@ -0,0 +1,536 @@
+package com.gayan.versions;
+
+import com.gayan.entities.Ticket;
+import com.gayan.entities.TicketPool;
+import com.gayan.entities.WorkerRole;
+import com.gayan.utilz.PurchaseWaiters;
+import com.gayan.utilz.WorkerWaitQueues;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free version of the ticket pool.
+ * Available tickets live in a pre-allocated, power-of-two ring buffer (bounded MPMC queue).
+ * Producers and consumers claim slots with a CAS on the tail / head sequence numbers,
+ * so neither addTicket nor purchaseTicket waits on a monitor or a ReentrantLock.
+ *
+ * Tickets are found by ID in two concurrent maps, the unsold ones and the sold ones. A sale, a cancel or a
+ * lookup is a single map operation, so nothing in the pool takes a lock. Sold tickets stay whole Ticket objects
+ * in the map rather than compact SoldTicketLedger records: the ledger needs one writer at a time.
+ */
+public class LockFreeTicketPool implements TicketPool {
+
+    private final int TIME_OUT = 5000;
+    private static final int SPIN_TRIES = 64;
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    //Ring buffer of available tickets
+    private final AtomicReferenceArray<Ticket> buffer;
+    private final AtomicLongArray sequences; //per slot sequence number, tells if the slot is free or filled
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(0); //next slot to purchase from
+    private final AtomicLong tail = new AtomicLong(0); //next slot to add to
+
+    private final AtomicInteger availableCount = new AtomicInteger(0); //tickets added (or being added) and not yet claimed by a buyer, bounded by capacity
+    private final AtomicInteger soldCount = new AtomicInteger(0);
+    //Every unsold ticket by ID, in the ring or on its way in or out
+    private final ConcurrentHashMap<Long, Ticket> liveTickets = new ConcurrentHashMap<>();
+    //Every sold ticket by ID
+    private final ConcurrentHashMap<Long, Ticket> soldTickets = new ConcurrentHashMap<>();
+    private final PurchaseWaiters asyncBuyers = new PurchaseWaiters(); //lock-free queue of async buyers
+    private final WorkerWaitQueues workerWaiters = new WorkerWaitQueues(); //parked workers, one lock-free queue per role
+
+    private final int capacity;
+    private final AtomicLong ticketIdCounter;
+
+    public LockFreeTicketPool(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be greater than zero");
+        }
+        this.capacity = capacity;
+        int ringSize = ringSizeFor(capacity);
+        this.buffer = new AtomicReferenceArray<>(ringSize);
+        this.sequences = new AtomicLongArray(ringSize);
+        for (int i = 0; i < ringSize; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = ringSize - 1;
+        this.ticketIdCounter = new AtomicLong(1);
+    }
+
+    //Round the capacity up to the next power of two so slot index is a simple mask
+    private static int ringSizeFor(int capacity) {
+        int size = Integer.highestOneBit(capacity);
+        return size == capacity ? size : size << 1;
+    }
+
+    @Override
+    public boolean addTicket(Ticket ticket) {
+        if (ticket.isSold()) {
+            archiveSold(ticket); // already sold (a restore), straight to the sold map
+            return true;
+        }
+        // A buyer parked in purchaseTicket takes it directly, the ticket never touches the ring or availableCount
+        if (workerWaiters.handOff(ticket, () -> markSold(ticket))) {
+            return true;
+        }
+        boolean added = offer(ticket);
+        if (added) {
+            serveAsyncBuyers();
+        }
+        return added;
+    }
+
+    private void archiveSold(Ticket ticket) {
+        if (soldTickets.put(ticket.getTicketId(), ticket) == null) {
+            soldCount.incrementAndGet();
+        }
+    }
+
+    private boolean offer(Ticket ticket) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIME_OUT);
+        int attempt = 0;
+
+        // Reserve a place under the capacity limit first, the ring itself can never overflow after that
+        while (true) {
+            int current = availableCount.get();
+            if (current < capacity) {
+                if (availableCount.compareAndSet(current, current + 1)) {
+                    liveTickets.put(ticket.getTicketId(), ticket);
+                    enqueue(ticket);
+                    workerWaiters.ticketsAvailable(1);
+                    return true;
+                }
+                continue; // lost the CAS to another producer, retry straight away
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                System.out.println(Thread.currentThread().getName() + " could not add ticket - pool full after waiting.");
+                return false;
+            }
+            if (!backOff(attempt++)) {
+                System.out.println(Thread.currentThread().getName() + " was interrupted while adding ticket.");
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public int addTickets(Collection<Ticket> tickets) {
+        List<Ticket> unsold = new ArrayList<>(tickets.size());
+        int archived = 0;
+        for (Ticket ticket : tickets) {
+            if (ticket.isSold()) {
+                archiveSold(ticket);
+                archived++;
+            } else {
+                unsold.add(ticket);
+            }
+        }
+        int added = archived + offerAll(unsold);
+        if (added > 0) {
+            serveAsyncBuyers();
+        }
+        return added;
+    }
+
+    //Reserves as many places as are free with a single CAS, then fills them
+    private int offerAll(Collection<Ticket> tickets) {
+        List<Ticket> pending = new ArrayList<>(tickets);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIME_OUT);
+        int added = 0;
+        int attempt = 0;
+
+        while (added < pending.size()) {
+            int current = availableCount.get();
+            int room = capacity - current;
+            if (room > 0) {
+                int reserve = Math.min(room, pending.size() - added);
+                if (availableCount.compareAndSet(current, current + reserve)) {
+                    for (int i = 0; i < reserve; i++) {
+                        Ticket ticket = pending.get(added++);
+                        liveTickets.put(ticket.getTicketId(), ticket);
+                        enqueue(ticket);
+                    }
+                    workerWaiters.ticketsAvailable(reserve);
+                    attempt = 0;
+                }
+                continue;
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                System.out.println(Thread.currentThread().getName() + " could not add tickets - pool full after waiting (" + added + " added).");
+                return added;
+            }
+            if (!backOff(attempt++)) {
+                System.out.println(Thread.currentThread().getName() + " was interrupted while adding tickets.");
+                return added;
+            }
+        }
+        return added;
+    }
+
+    //Parks in the buyers' queue instead of backing off, so a producer can hand it a new ticket directly
+    @Override
+    public Optional<Ticket> purchaseTicket() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIME_OUT);
+        while (true) {
+            Ticket ticket = pollAvailable();
+            if (ticket != null) {
+                return Optional.of(ticket);
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return Optional.empty();
+            }
+            try {
+                ticket = workerWaiters.awaitHandOff(() -> availableCount.get() > 0, remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Optional.empty();
+            }
+            if (ticket != null) {
+                return Optional.of(ticket);
+            }
+        }
+    }
+
+    @Override
+    public CompletableFuture<Ticket> purchaseTicketAsync() {
+        Ticket ticket = pollAvailable();
+        if (ticket != null) {
+            return CompletableFuture.completedFuture(ticket);
+        }
+        CompletableFuture<Ticket> future = asyncBuyers.register(TIME_OUT);
+        serveAsyncBuyers(); // a ticket may have come in before we were queued
+        return future;
+    }
+
+    //Claim and take one ticket without waiting, null if there is none
+    private Ticket pollAvailable() {
+        while (true) {
+            int current = availableCount.get();
+            if (current == 0) {
+                return null;
+            }
+            // Claim first, the same as producers: take() may spin until a producer fills the slot
+            if (availableCount.compareAndSet(current, current - 1)) {
+                Ticket ticket = take();
+                markSold(ticket);
+                return ticket;
+            }
+        }
+    }
+
+    private void serveAsyncBuyers() {
+        if (asyncBuyers.hasWaiters()) {
+            asyncBuyers.drain(this::pollAvailable, this::restock);
+        }
+    }
+
+    @Override
+    public List<Ticket> purchaseTickets(int count, Duration timeout) {
+        if (count <= 0 || count > capacity) {
+            return new ArrayList<>();
+        }
+        return purchase(count, timeout.toNanos());
+    }
+
+    // Buyers claim tickets in availableCount before taking them off the ring (same as producers claim room),
+    // so a group purchase gets all of its tickets or none, and single buyers can never take one it counted on.
+    private List<Ticket> purchase(int count, long timeoutNanos) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        int attempt = 0;
+
+        while (true) {
+            int current = availableCount.get();
+            if (current >= count) {
+                if (availableCount.compareAndSet(current, current - count)) {
+                    List<Ticket> purchased = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        Ticket ticket = take();
+                        markSold(ticket);
+                        purchased.add(ticket);
+                    }
+                    return purchased;
+                }
+                continue; // lost the CAS, retry straight away
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                return new ArrayList<>();
+            }
+            if (!backOff(attempt++)) {
+                return new ArrayList<>();
+            }
+        }
+    }
+
+    @Override
+    public void cancelTicket(Ticket ticket) {
+        if (restock(ticket)) {
+            serveAsyncBuyers();
+        }
+    }
+
+    //Put a sold ticket back on sale
+    private boolean restock(Ticket ticket) {
+        if (ticket == null) {
+            return false;
+        }
+        // Two moves: out of the sold map, then back into the ring
+        long ticketId = ticket.getTicketId();
+        Ticket sold = soldTickets.remove(ticketId); // only one cancel can win the sale back
+        if (sold == null) {
+            return false; // not sold through this pool
+        }
+        if (sold != ticket) {
+            ticket.setVersion(sold.getVersion()); // a copy: bring back the sold ticket's (possibly updated) values
+        }
+        ticket.setSold(false);
+        soldCount.decrementAndGet();
+        liveTickets.put(ticketId, ticket); // findable while it waits for room
+
+        // Put it back like a producer would (waits for room if the pool is full)
+        if (!offer(ticket)) {
+            markSold(ticket);
+            return false;
+        }
+        return true;
+    }
+
+    //Sold first, then out of the live map, so findTicket always sees it in one of them
+    private void markSold(Ticket ticket) {
+        ticket.setSold(true); // slot was claimed by this thread only, no other buyer can see this ticket
+        soldTickets.put(ticket.getTicketId(), ticket);
+        liveTickets.remove(ticket.getTicketId(), ticket);
+        soldCount.incrementAndGet();
+    }
+
+    @Override
+    public int getCurrentSize() {
+        return availableCount.get();
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public int getAvailableTicketCount() {
+        return availableCount.get();
+    }
+
+    @Override
+    public int getSoldTicketCount() {
+        return soldCount.get();
+    }
+
+    @Override
+    public List<Ticket> getAllTickets() {
+        List<Ticket> allTickets = getAvailableTickets(); // unsold tickets
+        allTickets.addAll(soldTickets.values());
+        return allTickets;
+    }
+
+    public int getAllTicketsCount() {
+        return availableCount.get() + soldCount.get();
+    }
+
+    @Override
+    public void printTicketPoolStatus() {
+        int available = getAvailableTicketCount();
+        int sold = getSoldTicketCount();
+        int total = available + sold;
+        double percentageSold = total > 0 ? (double) sold / total * 100 : 0;
+
+        System.out.println("========== TICKET POOL STATISTICS ==========");
+        System.out.println("Total tickets: " + total + " (available " + available + "/" + capacity + ")");
+        System.out.println("Available tickets: " + available);
+        System.out.println("Sold tickets: " + sold);
+        System.out.printf("Percentage sold: %.2f%%\n", percentageSold);
+        System.out.printf("Hand-offs: %d of %d adds (hit rate %.2f%%)\n", workerWaiters.getHandOffs(),
+                workerWaiters.getHandOffAttempts(), workerWaiters.getHandOffHitRate());
+        System.out.println("============================================");
+    }
+
+    @Override
+    public long getTicketIdHighWaterMark() {
+        return ticketIdCounter.get() - 1;
+    }
+
+    @Override
+    public void advanceTicketIds(long highWaterMark) {
+        ticketIdCounter.accumulateAndGet(highWaterMark + 1, Math::max);
+    }
+
+    @Override
+    public Ticket createTicket(String eventName, String vendorName, String location, double price) {
+        long id = ticketIdCounter.getAndIncrement();
+        return new Ticket(id, eventName, vendorName, location, price);
+    }
+
+    @Override
+    public List<Ticket> getAvailableTickets() {
+        List<Ticket> available = new ArrayList<>();
+        long from = head.get();
+        long to = tail.get();
+        for (long pos = from; pos < to; pos++) {
+            Ticket ticket = peek(pos);
+            if (ticket != null) {
+                available.add(ticket);
+            }
+        }
+        return available;
+    }
+
+    @Override
+    public Optional<Ticket> getRandomAvailableTicket() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIME_OUT);
+        int attempt = 0;
+
+        while (true) {
+            long from = head.get();
+            long to = tail.get();
+            if (to > from) {
+                long pos = from + ThreadLocalRandom.current().nextLong(to - from);
+                Ticket ticket = peek(pos);
+                if (ticket != null) {
+                    return Optional.of(ticket);
+                }
+                // slot moved on under us, pick again after backing off
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                return Optional.empty();
+            }
+            if (!backOff(attempt++)) {
+                return Optional.empty();
+            }
+        }
+    }
+
+    @Override
+    public void updateTicket(long ticketId, double newPrice, String newLocation, String newEventName) {
+        // Published as one new version, writers never block buyers, readers or each other.
+        // Sold or unsold it is the same object, so a sale that lands meanwhile keeps the update.
+        Optional<Ticket> ticket = findTicket(ticketId);
+        if (ticket.isPresent()) {
+            ticket.get().update(newPrice, newLocation, newEventName);
+        } else {
+            System.out.println("Failed to update ticket Ticket ID: " + ticketId + " not found");
+        }
+    }
+
+    //One lookup per map. A sale puts the ticket in the sold map before taking it out of the live one.
+    @Override
+    public Optional<Ticket> findTicket(long ticketId) {
+        Ticket ticket = liveTickets.get(ticketId);
+        if (ticket == null) {
+            ticket = soldTickets.get(ticketId);
+        }
+        return Optional.ofNullable(ticket);
+    }
+
+    //========== Ring Buffer ==========
+
+    // Only called after a place has been reserved in availableCount, so a free slot is always coming
+    private void enqueue(Ticket ticket) {
+        long pos = tail.get();
+        while (true) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    buffer.set(index, ticket);
+                    sequences.set(index, pos + 1); // publish: slot is now filled
+                    return;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                Thread.onSpinWait(); // a buyer claimed this slot but has not released it yet
+                pos = tail.get();
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    // Only called after a ticket has been claimed in availableCount. Its producer may still be filling the slot.
+    private Ticket take() {
+        Ticket ticket;
+        while ((ticket = dequeue()) == null) {
+            Thread.onSpinWait();
+        }
+        return ticket;
+    }
+
+    private Ticket dequeue() {
+        long pos = head.get();
+        while (true) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    Ticket ticket = buffer.get(index);
+                    buffer.set(index, null);
+                    sequences.set(index, pos + mask + 1); // release: slot is free for the next lap
+                    return ticket;
+                }
+                pos = head.get();
+            } else if (diff < 0) {
+                return null; // empty
+            } else {
+                pos = head.get();
+            }
+        }
+    }
+
+    // Read a filled slot without claiming it, null if the slot was not filled or changed while reading
+    private Ticket peek(long pos) {
+        int index = (int) (pos & mask);
+        if (sequences.get(index) != pos + 1) {
+            return null;
+        }
+        Ticket ticket = buffer.get(index);
+        return sequences.get(index) == pos + 1 ? ticket : null;
+    }
+
+    //Spin first, then park for a growing amount of time. Returns false if the thread was interrupted.
+    private boolean backOff(int attempt) {
+        if (attempt < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else {
+            long parkNanos = Math.min(MAX_PARK_NANOS, 1_000L << Math.min(attempt - SPIN_TRIES, 10));
+            LockSupport.parkNanos(parkNanos);
+        }
+        return !Thread.currentThread().isInterrupted();
+    }
+
+    // Workers (Reader/Writer/Consumer) park in their role's queue while the pool is empty.
+    // Each add wakes one buyer per ticket; with nobody parked that is a single volatile read, so it stays lock-free.
+    @Override
+    public boolean awaitTickets(WorkerRole role, long timeoutMillis) throws InterruptedException {
+        return workerWaiters.await(role, () -> role.canProceed(this), TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+    }
+
+    @Override
+    public String toString() {
+        return "LockFreeTicketPool{" +
+                "available=" + availableCount.get() +
+                ", sold=" + soldCount.get() +
+                ", capacity=" + capacity +
+                ", ticketIdCounter=" + ticketIdCounter +
+                '}';
+    }
+}
@@ -0,0 +1,314 @@
+package com.gayan.versions;
+
+import com.gayan.entities.Ticket;
+import com.gayan.entities.TicketPool;
+import com.gayan.entities.WorkerRole;
+import com.gayan.utilz.LatencyHistogram;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An InstrumentedTicketPool registered as a platform MXBean, so a running pool can be watched and steered
+ * with standard JMX tools instead of the simulation menu. Rates count tickets moved, batches and group
+ * purchases included, over at least a second between reads.
+ *
+ * The pools' own capacity is fixed when they are built, so resize sets an admission limit in front of it:
+ * adds are turned away once the pool holds that many tickets. The limit is checked before each add, so
+ * adds racing past it can go over by a few, never past the pool's own capacity. Pausing producers holds
+ * every add in a gate until they are resumed, buyers carry on.
+ */
+public class ManagedTicketPool extends InstrumentedTicketPool implements ManagedTicketPoolMXBean, AutoCloseable {
+
+    private static final String DOMAIN = "com.gayan";
+    private static final long RATE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final ObjectName objectName;
+    private final int poolCapacity;
+    private volatile int admissionLimit;
+    private final AtomicInteger waitingBuyers = new AtomicInteger();
+    private final LongAdder added = new LongAdder();
+    private final LongAdder purchased = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+
+    //Producers park here while paused
+    private final Object pauseGate = new Object();
+    private volatile boolean producersPaused = false;
+
+    //Counts at the start of the current rate window and the rates of the last one, guarded by this
+    private long windowStart = System.nanoTime();
+    private final long[] windowCounts = new long[3];
+    private final double[] rates = new double[3];
+
+    private ManagedTicketPool(TicketPool delegate, ObjectName objectName) {
+        super(delegate);
+        this.objectName = objectName;
+        this.poolCapacity = delegate.getCapacity();
+        this.admissionLimit = poolCapacity;
+    }
+
+    //Wrap the pool and register it as com.gayan:type=TicketPool,name=<name>, close() unregisters it
+    public static ManagedTicketPool register(TicketPool delegate, String name) throws JMException {
+        ObjectName objectName = new ObjectName(DOMAIN + ":type=TicketPool,name=" + ObjectName.quote(name));
+        ManagedTicketPool pool = new ManagedTicketPool(delegate, objectName);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(pool, objectName);
+        return pool;
+    }
+
+    public ObjectName getObjectName() {
+        return objectName;
+    }
+
+    @Override
+    public void close() {
+        resumeProducers();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(objectName);
+        } catch (InstanceNotFoundException e) {
+            // already gone
+        } catch (MBeanRegistrationException e) {
+            throw new IllegalStateException("Could not unregister " + objectName, e);
+        }
+    }
+
+    //========== Producers ==========
+
+    @Override
+    public boolean addTicket(Ticket ticket) {
+        if (!awaitResumed() || roomUnderLimit() <= 0) {
+            return false;
+        }
+        boolean success = super.addTicket(ticket);
+        if (success) {
+            added.increment();
+        }
+        return success;
+    }
+
+    @Override
+    public int addTickets(Collection<Ticket> tickets) {
+        if (!awaitResumed()) {
+            return 0;
+        }
+        int room = roomUnderLimit();
+        if (room <= 0) {
+            return 0;
+        }
+        Collection<Ticket> admitted = tickets.size() <= room ? tickets : new ArrayList<>(tickets).subList(0, room);
+        int count = super.addTickets(admitted);
+        added.add(count);
+        return count;
+    }
+
+    //Adds the admission limit still lets in. Unlimited until a resize lowers it, the pool's own capacity applies then.
+    //The available count is a plain counter read in the pools, getCurrentSize takes the exclusive lock in some.
+    private int roomUnderLimit() {
+        int limit = admissionLimit;
+        return limit >= poolCapacity ? Integer.MAX_VALUE : limit - getAvailableTicketCount();
+    }
+
+    //False when interrupted while paused, the add is dropped as on a full pool
+    private boolean awaitResumed() {
+        if (!producersPaused) {
+            return true;
+        }
+        synchronized (pauseGate) {
+            while (producersPaused) {
+                try {
+                    pauseGate.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void pauseProducers() {
+        producersPaused = true;
+    }
+
+    @Override
+    public void resumeProducers() {
+        synchronized (pauseGate) {
+            producersPaused = false;
+            pauseGate.notifyAll();
+        }
+    }
+
+    @Override
+    public boolean isProducersPaused() {
+        return producersPaused;
+    }
+
+    @Override
+    public void resize(int capacity) {
+        if (capacity < 1 || capacity > poolCapacity) {
+            throw new IllegalArgumentException("Capacity must be between 1 and " + poolCapacity + ", was " + capacity);
+        }
+        admissionLimit = capacity;
+    }
+
+    @Override
+    public int getCapacity() {
+        return admissionLimit;
+    }
+
+    //========== Buyers ==========
+
+    @Override
+    public Optional<Ticket> purchaseTicket() {
+        waitingBuyers.incrementAndGet();
+        try {
+            Optional<Ticket> ticket = super.purchaseTicket();
+            ticket.ifPresent(bought -> purchased.increment());
+            return ticket;
+        } finally {
+            waitingBuyers.decrementAndGet();
+        }
+    }
+
+    @Override
+    public List<Ticket> purchaseTickets(int count, Duration timeout) {
+        waitingBuyers.incrementAndGet();
+        try {
+            List<Ticket> tickets = super.purchaseTickets(count, timeout);
+            purchased.add(tickets.size());
+            return tickets;
+        } finally {
+            waitingBuyers.decrementAndGet();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Ticket> purchaseTicketAsync() {
+        waitingBuyers.incrementAndGet();
+        CompletableFuture<Ticket> ticket = super.purchaseTicketAsync();
+        ticket.whenComplete((bought, failure) -> {
+            waitingBuyers.decrementAndGet();
+            if (bought != null) {
+                purchased.increment();
+            }
+        });
+        return ticket;
+    }
+
+    @Override
+    public void cancelTicket(Ticket ticket) {
+        super.cancelTicket(ticket);
+        cancelled.increment();
+    }
+
+    @Override
+    public boolean awaitTickets(WorkerRole role, long timeoutMillis) throws InterruptedException {
+        if (role != WorkerRole.BUYER) {
+            return super.awaitTickets(role, timeoutMillis);
+        }
+        waitingBuyers.incrementAndGet();
+        try {
+            return super.awaitTickets(role, timeoutMillis);
+        } finally {
+            waitingBuyers.decrementAndGet();
+        }
+    }
+
+    @Override
+    public int getWaitingBuyers() {
+        return waitingBuyers.get();
+    }
+
+    //========== Rates and latencies ==========
+
+    @Override
+    public double getAddsPerSecond() {
+        return rate(0);
+    }
+
+    @Override
+    public double getPurchasesPerSecond() {
+        return rate(1);
+    }
+
+    @Override
+    public double getCancelsPerSecond() {
+        return rate(2);
+    }
+
+    //Rate over the last full window; a read a second or more after the window started closes it
+    private synchronized double rate(int index) {
+        long now = System.nanoTime();
+        long elapsed = now - windowStart;
+        if (elapsed >= RATE_WINDOW_NANOS) {
+            long[] counts = {added.sum(), purchased.sum(), cancelled.sum()};
+            for (int i = 0; i < counts.length; i++) {
+                rates[i] = (counts[i] - windowCounts[i]) * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+                windowCounts[i] = counts[i];
+            }
+            windowStart = now;
+        }
+        return rates[index];
+    }
+
+    @Override
+    public long getPurchaseLatencyP50Nanos() {
+        return getLatency(Operation.PURCHASE).getP50();
+    }
+
+    @Override
+    public long getPurchaseLatencyP99Nanos() {
+        return getLatency(Operation.PURCHASE).getP99();
+    }
+
+    @Override
+    public long getPurchaseLatencyP999Nanos() {
+        return getLatency(Operation.PURCHASE).getP999();
+    }
+
+    @Override
+    public Map<String, Long> getLatencyNanos() {
+        Map<String, Long> latencies = new LinkedHashMap<>();
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram.Summary summary = getLatency(operation);
+            for (double percentile : PERCENTILES) {
+                String label = percentile == Math.rint(percentile) ? String.valueOf((int) percentile) : String.valueOf(percentile);
+                latencies.put(operation + " p" + label, summary.getValueAtPercentile(percentile));
+            }
+            latencies.put(operation + " max", summary.getMax());
+        }
+        return latencies;
+    }
+
+    @Override
+    public void printTicketPoolStatus() {
+        super.printTicketPoolStatus();
+        System.out.println("JMX " + objectName + ": admission limit " + admissionLimit + "/" + poolCapacity +
+                (producersPaused ? ", producers paused" : "") + ", " + waitingBuyers.get() + " buyers waiting");
+    }
+
+    @Override
+    public String toString() {
+        return "ManagedTicketPool{" +
+                "objectName=" + objectName +
+                ", delegate=" + getDelegate() +
+                '}';
+    }
+}
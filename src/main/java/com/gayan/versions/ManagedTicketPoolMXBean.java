@@ -0,0 +1,47 @@
+package com.gayan.versions;
+
+import java.util.Map;
+
+/**
+ * What a ManagedTicketPool shows over JMX (jconsole, VisualVM, jcmd), under com.gayan:type=TicketPool.
+ * Every attribute is a counter read, nothing walks the tickets.
+ */
+public interface ManagedTicketPoolMXBean {
+
+    int getCurrentSize();
+
+    //The admission limit, at most the pool's own capacity, see resize
+    int getCapacity();
+
+    int getAvailableTicketCount();
+
+    int getSoldTicketCount();
+
+    double getAddsPerSecond();
+
+    double getPurchasesPerSecond();
+
+    double getCancelsPerSecond();
+
+    //Buyers inside a purchase or waiting for tickets right now, async ones included
+    int getWaitingBuyers();
+
+    long getPurchaseLatencyP50Nanos();
+
+    long getPurchaseLatencyP99Nanos();
+
+    long getPurchaseLatencyP999Nanos();
+
+    //"PURCHASE p99" -> nanoseconds, for every operation and p50, p90, p99, p99.9 and max
+    Map<String, Long> getLatencyNanos();
+
+    boolean isProducersPaused();
+
+    //Limit the tickets the pool holds, between 1 and the capacity it was built with
+    void resize(int capacity);
+
+    //Hold every add until resumeProducers
+    void pauseProducers();
+
+    void resumeProducers();
+}
@@ -0,0 +1,563 @@
+package com.gayan.versions;
+
+import com.gayan.entities.Ticket;
+import com.gayan.entities.TicketPool;
+import com.gayan.entities.WorkerRole;
+import com.gayan.utilz.PurchaseWaiters;
+import com.gayan.utilz.SoldTicketLedger;
+import com.gayan.utilz.TicketColumns;
+import com.gayan.utilz.WorkerWaitQueues;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ReentrantLock pool whose tickets live off the heap in TicketColumns, with the unsold ones queued as
+ * slot numbers in an off-heap ring. Only the lock, the counters and the waiting workers are heap objects,
+ * so the pool size is bounded by memory rather than by GC, and a large pool adds nothing to GC pauses.
+ * A sold ticket leaves the columns for the sold ledger (spill it to a file to keep those records off the heap
+ * too), and its slot is reused by the next ticket added.
+ *
+ * Tickets handed out (purchases, lookups, listings) are views built from the columns or copies from the
+ * ledger: changing one does not change the pool, use updateTicket. cancelTicket restores the archived values
+ * into the caller's object before it goes on sale again.
+ */
+public class OffHeapTicketPool implements TicketPool {
+    private final int TIME_OUT = 5000;
+
+    private final TicketColumns columns = new TicketColumns(); //the unsold tickets
+    private final SlotQueue available; //their slots, in purchase order
+    //Compact archive of the sold tickets, guarded by lock
+    private final SoldTicketLedger soldLedger;
+    private final int capacity;
+    private final AtomicLong ticketIdCounter;
+    private final ReentrantLock lock;
+    private final Condition notFull;
+    private final Condition notEmpty; //group buyers
+    private final Condition writerNotEmpty; //writers
+
+    private volatile int availableCount = 0;
+    private volatile int soldCount = 0;
+    //Async buyers, served after the lock is released
+    private final PurchaseWaiters asyncBuyers = new PurchaseWaiters();
+    //Workers waiting from outside the pool, one queue per role
+    private final WorkerWaitQueues workerWaiters = new WorkerWaitQueues();
+
+    public OffHeapTicketPool(int capacity) {
+        this(capacity, SoldTicketLedger.inMemory());
+    }
+
+    public OffHeapTicketPool(int capacity, SoldTicketLedger soldLedger) {
+        this.capacity = capacity;
+        this.soldLedger = soldLedger;
+        this.available = new SlotQueue(Math.min(capacity, 1024));
+        this.ticketIdCounter = new AtomicLong(1);
+        this.lock = new ReentrantLock();
+        this.notFull = lock.newCondition();
+        this.notEmpty = lock.newCondition();
+        this.writerNotEmpty = lock.newCondition();
+    }
+
+    @Override
+    public boolean addTicket(Ticket ticket) {
+        lock.lock();
+        try {
+            long startTime = System.currentTimeMillis();
+            long remaining = TIME_OUT;
+
+            if (alreadyStored(ticket)) {
+                return false;
+            }
+            if (handOff(ticket)) {
+                return true; // went straight to a buyer waiting in purchaseTicket
+            }
+            if (ticket.isSold()) {
+                soldLedger.archive(ticket); // already sold (a restore), straight to the archive
+                soldCount++;
+                return true;
+            }
+
+            while (available.size() >= capacity) {
+                if (remaining <= 0) {
+                    System.out.println(Thread.currentThread().getName() + " timed out trying to add ticket.");
+                    return false;
+                }
+                try {
+                    if (!notFull.await(remaining, TimeUnit.MILLISECONDS)) {
+                        System.out.println(Thread.currentThread().getName() + " waited but pool is still full. Exiting addTicket.");
+                        return false;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    System.out.println(Thread.currentThread().getName() + " was interrupted while adding ticket.");
+                    return false;
+                }
+                remaining = TIME_OUT - (System.currentTimeMillis() - startTime);
+            }
+            if (alreadyStored(ticket)) { // added by another producer while this one waited for room
+                return false;
+            }
+
+            available.offer(columns.append(ticket));
+            availableCount++;
+            signalTicketsAvailable();
+        } finally {
+            lock.unlock();
+        }
+
+        workerWaiters.ticketsAvailable(1);
+        serveAsyncBuyers();
+        return true;
+    }
+
+    @Override
+    public int addTickets(Collection<Ticket> newTickets) {
+        int added = addAll(newTickets);
+        if (added > 0) {
+            workerWaiters.ticketsAvailable(added);
+            serveAsyncBuyers();
+        }
+        return added;
+    }
+
+    //One lock round for the whole block, buyers are signalled before waiting for room
+    private int addAll(Collection<Ticket> newTickets) {
+        int added = 0;
+        int signalPending = 0;
+        lock.lock();
+        try {
+            long startTime = System.currentTimeMillis();
+
+            for (Ticket ticket : newTickets) {
+                if (alreadyStored(ticket)) {
+                    return added; // stops here like a full pool, so callers can tell which tickets went in
+                }
+                if (ticket.isSold()) {
+                    soldLedger.archive(ticket);
+                    soldCount++;
+                    added++;
+                    continue;
+                }
+                while (available.size() >= capacity) {
+                    if (signalPending > 0) {
+                        signalTicketsAvailable();
+                        signalPending = 0;
+                    }
+                    long remaining = TIME_OUT - (System.currentTimeMillis() - startTime);
+                    if (remaining <= 0) {
+                        System.out.println(Thread.currentThread().getName() + " timed out trying to add tickets (" + added + " added).");
+                        return added;
+                    }
+                    try {
+                        notFull.await(remaining, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        System.out.println(Thread.currentThread().getName() + " was interrupted while adding tickets.");
+                        return added;
+                    }
+                }
+                if (alreadyStored(ticket)) {
+                    return added;
+                }
+
+                available.offer(columns.append(ticket));
+                availableCount++;
+                added++;
+                signalPending++;
+            }
+            return added;
+        } finally {
+            if (signalPending > 0) {
+                signalTicketsAvailable();
+            }
+            lock.unlock();
+        }
+    }
+
+    //Waits in the buyers' queue without the lock, where a producer can hand it a new ticket directly
+    @Override
+    public Optional<Ticket> purchaseTicket() {
+        long startTime = System.currentTimeMillis();
+        long remainingTime = TIME_OUT;
+
+        while (remainingTime > 0) {
+            Ticket ticket = pollAvailable();
+            if (ticket != null) {
+                return Optional.of(ticket);
+            }
+            try {
+                ticket = workerWaiters.awaitHandOff(() -> WorkerRole.BUYER.canProceed(this),
+                        TimeUnit.MILLISECONDS.toNanos(remainingTime));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Optional.empty();
+            }
+            if (ticket != null) {
+                return Optional.of(ticket);
+            }
+            remainingTime = TIME_OUT - (System.currentTimeMillis() - startTime);
+        }
+        return Optional.empty();
+    }
+
+    //Called holding the lock. The buyer gets the producer's object, the ledger keeps a sold copy.
+    private boolean handOff(Ticket ticket) {
+        return !ticket.isSold() && workerWaiters.handOff(ticket, () -> {
+            ticket.setSold(true);
+            soldLedger.archive(ticket);
+            soldCount++;
+        });
+    }
+
+    //Called holding the lock. A ticket ID is held once, in the columns or in the ledger, so a second add is refused.
+    private boolean alreadyStored(Ticket ticket) {
+        if (columns.slotOf(ticket.getTicketId()) < 0 && !soldLedger.contains(ticket.getTicketId())) {
+            return false;
+        }
+        System.out.println(Thread.currentThread().getName() + " tried to add ticket " + ticket.getTicketId()
+                + ", which is already in the pool.");
+        return true;
+    }
+
+    //Called holding the lock
+    private void signalTicketsAvailable() {
+        notEmpty.signalAll();
+        writerNotEmpty.signalAll();
+    }
+
+    @Override
+    public boolean awaitTickets(WorkerRole role, long timeoutMillis) throws InterruptedException {
+        return workerWaiters.await(role, () -> role.canProceed(this), TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+    }
+
+    @Override
+    public CompletableFuture<Ticket> purchaseTicketAsync() {
+        Ticket ticket = pollAvailable();
+        if (ticket != null) {
+            return CompletableFuture.completedFuture(ticket);
+        }
+        CompletableFuture<Ticket> future = asyncBuyers.register(TIME_OUT);
+        serveAsyncBuyers(); // a ticket may have come in before we were queued
+        return future;
+    }
+
+    //Sell the first unsold ticket without waiting, null if there is none
+    private Ticket pollAvailable() {
+        lock.lock();
+        try {
+            int slot = available.poll();
+            if (slot < 0) {
+                return null;
+            }
+            Ticket ticket = sell(slot);
+            availableCount--;
+            soldCount++;
+            notFull.signal();
+            return ticket;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Hand new tickets straight to queued async buyers, outside the lock so their callbacks never run under it
+    private void serveAsyncBuyers() {
+        if (asyncBuyers.hasWaiters()) {
+            asyncBuyers.drain(this::pollAvailable, this::putBackOnSale);
+        }
+    }
+
+    @Override
+    public List<Ticket> purchaseTickets(int count, Duration timeout) {
+        List<Ticket> purchased = new ArrayList<>(Math.max(count, 0));
+        if (count <= 0 || count > capacity) {
+            return purchased;
+        }
+        lock.lock();
+        try {
+            long remainingNanos = timeout.toNanos();
+            // Wait until the whole group can be served, a partial purchase is never made
+            while (availableCount < count) {
+                if (remainingNanos <= 0) {
+                    return purchased;
+                }
+                remainingNanos = notEmpty.awaitNanos(remainingNanos);
+            }
+
+            for (int i = 0; i < count; i++) {
+                purchased.add(sell(available.poll()));
+            }
+            availableCount -= count;
+            soldCount += count;
+            notFull.signalAll();
+            return purchased;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new ArrayList<>();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Called holding the lock. Moves the ticket in this slot to the ledger and frees the slot.
+    private Ticket sell(int slot) {
+        Ticket ticket = columns.view(slot);
+        ticket.setSold(true);
+        soldLedger.archive(ticket);
+        columns.remove(slot);
+        return ticket;
+    }
+
+    @Override
+    public void cancelTicket(Ticket ticket) {
+        if (putBackOnSale(ticket)) {
+            serveAsyncBuyers();
+        }
+    }
+
+    //Restock and wake a parked worker; also gives back the ticket of an async buyer that timed out
+    private boolean putBackOnSale(Ticket ticket) {
+        if (!restock(ticket)) {
+            return false;
+        }
+        workerWaiters.ticketsAvailable(1);
+        return true;
+    }
+
+    //Put a sold ticket back on sale, even if producers filled the pool meanwhile
+    private boolean restock(Ticket ticket) {
+        lock.lock();
+        try {
+            if (ticket == null || !ticket.isSold() || !soldLedger.restore(ticket)) {
+                return false;
+            }
+            ticket.setSold(false);
+            available.offer(columns.append(ticket));
+            soldCount--;
+            availableCount++;
+            signalTicketsAvailable();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getCurrentSize() {
+        lock.lock();
+        try {
+            return available.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public int getAvailableTicketCount() {
+        return availableCount;
+    }
+
+    @Override
+    public int getSoldTicketCount() {
+        return soldCount;
+    }
+
+    @Override
+    public List<Ticket> getAllTickets() {
+        lock.lock();
+        try {
+            List<Ticket> all = new ArrayList<>(available.size() + soldLedger.size());
+            for (int i = 0; i < available.size(); i++) {
+                all.add(columns.view(available.get(i)));
+            }
+            soldLedger.addTo(all); // copies of the sold tickets
+            return all;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getAllTicketsCount() {
+        return availableCount + soldCount;
+    }
+
+    @Override
+    public void printTicketPoolStatus() {
+        lock.lock();
+        try {
+            int available = getAvailableTicketCount();
+            int sold = getSoldTicketCount();
+            int total = available + sold;
+            double percentageSold = total > 0 ? (double) sold / total * 100 : 0;
+
+            System.out.println("========== TICKET POOL STATISTICS ==========");
+            System.out.println("Total tickets: " + total + " (" + this.available.size() + "/" + capacity + " in the pool)");
+            System.out.println("Available tickets: " + available);
+            System.out.println("Sold tickets: " + sold);
+            System.out.printf("Percentage sold: %.2f%%\n", percentageSold);
+            System.out.printf("Hand-offs: %d of %d adds (hit rate %.2f%%)\n", workerWaiters.getHandOffs(),
+                    workerWaiters.getHandOffAttempts(), workerWaiters.getHandOffHitRate());
+            System.out.printf("Off-heap: %d KB of columns for %d slots\n",
+                    (columns.getOffHeapBytes() + this.available.getOffHeapBytes()) / 1024, columns.slotCount());
+            System.out.println("Sold ledger: " + soldLedger.describe());
+            System.out.println("============================================");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getTicketIdHighWaterMark() {
+        return ticketIdCounter.get() - 1;
+    }
+
+    @Override
+    public void advanceTicketIds(long highWaterMark) {
+        ticketIdCounter.accumulateAndGet(highWaterMark + 1, Math::max);
+    }
+
+    @Override
+    public Ticket createTicket(String eventName, String vendorName, String location, double price) {
+        long id = ticketIdCounter.getAndIncrement();
+        return new Ticket(id, eventName, vendorName, location, price);
+    }
+
+    @Override
+    public List<Ticket> getAvailableTickets() {
+        lock.lock();
+        try {
+            List<Ticket> unsold = new ArrayList<>(available.size());
+            for (int i = 0; i < available.size(); i++) {
+                unsold.add(columns.view(available.get(i)));
+            }
+            return unsold;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<Ticket> getRandomAvailableTicket() {
+        lock.lock();
+        try {
+            long startTime = System.currentTimeMillis();
+            long remainingTime = TIME_OUT;
+
+            while (remainingTime > 0) {
+                if (available.size() > 0) {
+                    int slot = available.get(ThreadLocalRandom.current().nextInt(available.size()));
+                    return Optional.of(columns.view(slot));
+                }
+                if (!writerNotEmpty.await(remainingTime, TimeUnit.MILLISECONDS)) {
+                    return Optional.empty(); // Timeout occurred
+                }
+                remainingTime = TIME_OUT - (System.currentTimeMillis() - startTime);
+            }
+            return Optional.empty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void updateTicket(long ticketId, double newPrice, String newLocation, String newEventName) {
+        lock.lock();
+        try {
+            int slot = columns.slotOf(ticketId);
+            if (slot >= 0) {
+                columns.update(slot, newPrice, newLocation, newEventName);
+            } else {
+                soldLedger.update(ticketId, newPrice, newLocation, newEventName);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<Ticket> findTicket(long ticketId) {
+        lock.lock();
+        try {
+            int slot = columns.slotOf(ticketId);
+            return Optional.ofNullable(slot >= 0 ? columns.view(slot) : soldLedger.find(ticketId)); // sold ones come back as a copy
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * FIFO ring of int slot numbers in a direct buffer. Grows (doubling) instead of blocking,
+     * because a cancel may put a ticket back into a full pool. Guarded by the pool's lock.
+     */
+    private static final class SlotQueue {
+        private ByteBuffer ring;
+        private int length;
+        private int head = 0;
+        private int size = 0;
+
+        SlotQueue(int initialLength) {
+            length = Math.max(16, initialLength);
+            ring = ByteBuffer.allocateDirect(length * 4).order(ByteOrder.nativeOrder());
+        }
+
+        void offer(int slot) {
+            if (size == length) {
+                grow();
+            }
+            ring.putInt(((head + size) % length) << 2, slot);
+            size++;
+        }
+
+        int poll() {
+            if (size == 0) {
+                return -1;
+            }
+            int slot = ring.getInt(head << 2);
+            head = (head + 1) % length;
+            size--;
+            return slot;
+        }
+
+        //i-th slot from the head
+        int get(int i) {
+            return ring.getInt(((head + i) % length) << 2);
+        }
+
+        int size() {
+            return size;
+        }
+
+        long getOffHeapBytes() {
+            return (long) length * 4;
+        }
+
+        private void grow() {
+            ByteBuffer bigger = ByteBuffer.allocateDirect(length * 8).order(ByteOrder.nativeOrder());
+            for (int i = 0; i < size; i++) {
+                bigger.putInt(i << 2, get(i));
+            }
+            ring = bigger;
+            length <<= 1;
+            head = 0;
+        }
+    }
+}
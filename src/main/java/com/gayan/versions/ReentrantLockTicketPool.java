@@ -2,8 +2,16 @@ package com.gayan.versions;
 
 import com.gayan.entities.Ticket;
 import com.gayan.entities.TicketPool;
-
+import com.gayan.entities.WorkerRole;
+import com.gayan.utilz.AvailableTickets;
+import com.gayan.utilz.InstrumentedLock;
+import com.gayan.utilz.PurchaseWaiters;
+import com.gayan.utilz.SoldTicketLedger;
+import com.gayan.utilz.WorkerWaitQueues;
+
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
@@ -13,30 +21,64 @@ import java.util.concurrent.locks.ReentrantLock;
 public class ReentrantLockTicketPool implements TicketPool {
     private final int TIME_OUT = 5000;
 
-    private final Queue<Ticket> tickets;
+    //Unsold tickets only: the purchase queue (oldest first), the ID index and the random-pick array in one. Guarded by lock.
+    private final AvailableTickets tickets = new AvailableTickets();
     private final int capacity;
     private final AtomicLong ticketIdCounter;
-    private final ReentrantLock lock;
+    private final ReentrantLock reentrantLock;
+    //The pool's lock, every acquire names its operation. Records wait and hold times when asked to at construction.
+    private final InstrumentedLock lock;
     private final Condition notFull;
-    private final Condition notEmpty;
+    private final Condition notEmpty; //group buyers, they need several tickets so all of them re-check
+    private final Condition writerNotEmpty; //writers, they leave the ticket in the pool so all of them can go
+
+    //Kept up to date by add/purchase/cancel under the lock, volatile so status reads need no lock or scan
+    private volatile int availableCount = 0;
+    private volatile int soldCount = 0;
+    //Sold tickets move out of tickets into this compact archive, so they no longer take up capacity. Guarded by lock.
+    private final SoldTicketLedger soldLedger;
+    //Async buyers, served after the lock is released
+    private final PurchaseWaiters asyncBuyers = new PurchaseWaiters();
+    //Workers waiting from outside the pool, one queue per role
+    private final WorkerWaitQueues workerWaiters = new WorkerWaitQueues();
 
     public ReentrantLockTicketPool(int capacity) {
+        this(capacity, SoldTicketLedger.inMemory());
+    }
+
+    public ReentrantLockTicketPool(int capacity, SoldTicketLedger soldLedger) {
+        this(capacity, soldLedger, false);
+    }
+
+    //recordLockTimes: time every wait for and hold of the lock, per operation, see getLockStats()
+    public ReentrantLockTicketPool(int capacity, SoldTicketLedger soldLedger, boolean recordLockTimes) {
         this.capacity = capacity;
-        this.tickets = new LinkedList<>();
+        this.soldLedger = soldLedger;
         this.ticketIdCounter = new AtomicLong(1);
-        this.lock = new ReentrantLock();
+        this.reentrantLock = new ReentrantLock();
+        this.lock = InstrumentedLock.of(reentrantLock, recordLockTimes);
         this.notFull = lock.newCondition();
         this.notEmpty = lock.newCondition();
+        this.writerNotEmpty = lock.newCondition();
     }
 
     @Override
     public boolean addTicket(Ticket ticket) {
         boolean added;
-        lock.lock();
+        lock.lock("addTicket");
         try {
             long startTime = System.currentTimeMillis();
             long remaining = TIME_OUT;
 
+            if (handOff(ticket)) {
+                return true; // went straight to a buyer waiting in purchaseTicket, nobody else needs waking
+            }
+            if (ticket.isSold()) {
+                soldLedger.archive(ticket); // already sold (a restore), straight to the archive
+                soldCount++;
+                return true;
+            }
+
             while (tickets.size() >= capacity) {
                 if (remaining <= 0) {
                     System.out.println(Thread.currentThread().getName() + " timed out trying to add ticket.");
@@ -58,51 +100,200 @@ public class ReentrantLockTicketPool implements TicketPool {
                 remaining = TIME_OUT - elapsed;
             }
 
-            tickets.offer(ticket);
-            notEmpty.signalAll();
+            tickets.add(ticket);
+            availableCount++;
+            signalTicketsAvailable(); // wake up group buyers and writers waiting for tickets
             added = true;
-             // wake up consumers waiting for tickets
 
         } finally {
             lock.unlock();
         }
 
+        workerWaiters.ticketsAvailable(1);
+        serveAsyncBuyers();
         return added;
     }
 
 
     @Override
-    public Optional<Ticket> purchaseTicket() {
-        lock.lock();
+    public int addTickets(Collection<Ticket> newTickets) {
+        int added = addAll(newTickets);
+        if (added > 0) {
+            workerWaiters.ticketsAvailable(added);
+            serveAsyncBuyers();
+        }
+        return added;
+    }
+
+    //One lock round for the whole block. Buyers are signalled before waiting for room, so they can make it.
+    private int addAll(Collection<Ticket> newTickets) {
+        int added = 0;
+        int signalPending = 0;
+        lock.lock("addTickets");
         try {
             long startTime = System.currentTimeMillis();
-            long remainingTime = TIME_OUT;
 
-            while (remainingTime > 0) {
-                Optional<Ticket> optionalTicket = tickets.stream()
-                        .filter(ticket -> !ticket.isSold())
-                        .findFirst();
-                if (optionalTicket.isPresent()) {
-                    Ticket ticket = optionalTicket.get();
-                    ticket.setSold(true);
-                    notFull.signalAll();
-                    return Optional.of(ticket);
+            for (Ticket ticket : newTickets) {
+                if (ticket.isSold()) {
+                    soldLedger.archive(ticket);
+                    soldCount++;
+                    added++;
+                    continue;
+                }
+                while (tickets.size() >= capacity) {
+                    if (signalPending > 0) {
+                        signalTicketsAvailable();
+                        signalPending = 0;
+                    }
+                    long remaining = TIME_OUT - (System.currentTimeMillis() - startTime);
+                    if (remaining <= 0) {
+                        System.out.println(Thread.currentThread().getName() + " timed out trying to add tickets (" + added + " added).");
+                        return added;
+                    }
+                    try {
+                        notFull.await(remaining, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        System.out.println(Thread.currentThread().getName() + " was interrupted while adding tickets.");
+                        return added;
+                    }
                 }
-                boolean signaled = notEmpty.await(remainingTime, TimeUnit.MILLISECONDS);
 
-                // Recalculate remaining time
-                long elapsed = System.currentTimeMillis() - startTime;
-                remainingTime = TIME_OUT - elapsed;
+                tickets.add(ticket);
+                availableCount++;
+                added++;
+                signalPending++;
+            }
+            return added;
+        } finally {
+            if (signalPending > 0) {
+                signalTicketsAvailable();
+            }
+            lock.unlock();
+        }
+    }
+
+    //Waits in the buyers' queue without the lock, where a producer can hand it a new ticket directly
+    @Override
+    public Optional<Ticket> purchaseTicket() {
+        long startTime = System.currentTimeMillis();
+        long remainingTime = TIME_OUT;
+
+        while (remainingTime > 0) {
+            Ticket ticket = pollAvailable();
+            if (ticket != null) {
+                return Optional.of(ticket);
+            }
+            try {
+                ticket = workerWaiters.awaitHandOff(() -> WorkerRole.BUYER.canProceed(this),
+                        TimeUnit.MILLISECONDS.toNanos(remainingTime));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Optional.empty();
+            }
+            if (ticket != null) {
+                return Optional.of(ticket);
+            }
+            long elapsed = System.currentTimeMillis() - startTime;
+            remainingTime = TIME_OUT - elapsed;
+        }
+        return Optional.empty();
+    }
+
+    //Called holding the lock. Gives a new ticket to a buyer parked in purchaseTicket, recorded as sold
+    //straight into the ledger, so it never takes a slot in tickets or counts as available.
+    private boolean handOff(Ticket ticket) {
+        return !ticket.isSold() && workerWaiters.handOff(ticket, () -> {
+            ticket.setSold(true);
+            soldLedger.archive(ticket);
+            soldCount++;
+        });
+    }
+
+    //Called holding the lock, once the ticket is out of tickets. Its slot is free again for producers.
+    private void recordSale(Ticket ticket) {
+        ticket.setSold(true);
+        soldLedger.archive(ticket);
+    }
+
+    //Called holding the lock. Single buyers wait in workerWaiters; group buyers and writers only exist in small numbers.
+    private void signalTicketsAvailable() {
+        notEmpty.signalAll();
+        writerNotEmpty.signalAll();
+    }
+
+    @Override
+    public boolean awaitTickets(WorkerRole role, long timeoutMillis) throws InterruptedException {
+        return workerWaiters.await(role, () -> role.canProceed(this), TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+    }
+
+    @Override
+    public CompletableFuture<Ticket> purchaseTicketAsync() {
+        Ticket ticket = pollAvailable();
+        if (ticket != null) {
+            return CompletableFuture.completedFuture(ticket);
+        }
+        CompletableFuture<Ticket> future = asyncBuyers.register(TIME_OUT);
+        serveAsyncBuyers(); // a ticket may have come in before we were queued
+        return future;
+    }
+
+    //Take the first unsold ticket without waiting, null if there is none.
+    //Everything in tickets is unsold, so this is the head of the queue, not a scan past the sold ones.
+    private Ticket pollAvailable() {
+        lock.lock("purchaseTicket");
+        try {
+            Ticket ticket = tickets.poll();
+            if (ticket == null) {
+                return null;
+            }
+            recordSale(ticket);
+            availableCount--;
+            soldCount++;
+            notFull.signal();
+            return ticket;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Hand new tickets straight to queued async buyers, outside the lock so their callbacks never run under it
+    private void serveAsyncBuyers() {
+        if (asyncBuyers.hasWaiters()) {
+            asyncBuyers.drain(this::pollAvailable, this::putBackOnSale);
+        }
+    }
 
-                // If timed out and still no ticket, exit
-                if (!signaled && remainingTime <= 0) {
-                    return Optional.empty();
+    @Override
+    public List<Ticket> purchaseTickets(int count, Duration timeout) {
+        List<Ticket> purchased = new ArrayList<>(Math.max(count, 0));
+        if (count <= 0 || count > capacity) {
+            return purchased;
+        }
+        lock.lock("purchaseTickets");
+        try {
+            long remainingNanos = timeout.toNanos();
+            // Wait until the whole group can be served, a partial purchase is never made
+            while (availableCount < count) {
+                if (remainingNanos <= 0) {
+                    return purchased;
                 }
+                remainingNanos = notEmpty.awaitNanos(remainingNanos);
             }
-            return Optional.empty();
+
+            // Same first-unsold order as purchaseTicket
+            for (int i = 0; i < count; i++) {
+                Ticket ticket = tickets.poll();
+                recordSale(ticket);
+                purchased.add(ticket);
+            }
+            availableCount -= count;
+            soldCount += count;
+            notFull.signalAll();
+            return purchased;
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            return Optional.empty();
+            return new ArrayList<>();
         } finally {
             lock.unlock();
         }
@@ -110,13 +301,33 @@ public class ReentrantLockTicketPool implements TicketPool {
 
     @Override
     public void cancelTicket(Ticket ticket) {
-        lock.lock();
+        if (putBackOnSale(ticket)) {
+            serveAsyncBuyers();
+        }
+    }
+
+    //Restock and wake a parked worker; also gives back the ticket of an async buyer that timed out
+    private boolean putBackOnSale(Ticket ticket) {
+        if (!restock(ticket)) {
+            return false;
+        }
+        workerWaiters.ticketsAvailable(1);
+        return true;
+    }
+
+    //Put a sold ticket back on sale. It takes a slot in tickets again, even if producers filled the pool meanwhile.
+    private boolean restock(Ticket ticket) {
+        lock.lock("cancelTicket");
         try {
-            if (ticket != null) {
+            if (ticket != null && ticket.isSold() && soldLedger.restore(ticket)) {
                 ticket.setSold(false);
-                //tickets.offer(ticket);
-                notEmpty.signalAll();
+                tickets.add(ticket);
+                soldCount--;
+                availableCount++;
+                signalTicketsAvailable();
+                return true;
             }
+            return false;
         } finally {
             lock.unlock();
         }
@@ -124,7 +335,7 @@ public class ReentrantLockTicketPool implements TicketPool {
 
     @Override
     public int getCurrentSize() {
-        lock.lock();
+        lock.lock("getCurrentSize");
         try {
             return tickets.size();
         } finally {
@@ -139,38 +350,30 @@ public class ReentrantLockTicketPool implements TicketPool {
 
     @Override
     public int getAvailableTicketCount() {
-        lock.lock();
-        try {
-            return (int) tickets.stream().filter(ticket -> !ticket.isSold()).count();
-        } finally {
-            lock.unlock();
-        }
+        return availableCount;
     }
 
     @Override
     public int getSoldTicketCount() {
-        lock.lock();
-        try {
-            return (int) tickets.stream().filter(Ticket::isSold).count();
-        } finally {
-            lock.unlock();
-        }
+        return soldCount;
     }
 
     @Override
     public List<Ticket> getAllTickets() {
-        lock.lock();
+        lock.lock("getAllTickets");
         try {
-            return new ArrayList<>(tickets);
+            List<Ticket> all = tickets.toList();
+            soldLedger.addTo(all); // copies of the sold tickets
+            return all;
         } finally {
             lock.unlock();
         }
     }
 
     public int getAllTicketsCount() {
-        lock.lock();
+        lock.lock("getAllTicketsCount");
         try{
-            return tickets.size();
+            return tickets.size() + soldLedger.size();
         }finally {
             lock.unlock();
         }
@@ -179,22 +382,38 @@ public class ReentrantLockTicketPool implements TicketPool {
 
     @Override
     public void printTicketPoolStatus() {
-        lock.lock();
+        lock.lock("printTicketPoolStatus");
         try {
-            int total = tickets.size();
+            int total = tickets.size() + soldLedger.size();
             int available = getAvailableTicketCount();
             int sold = getSoldTicketCount();
             double percentageSold = total > 0 ? (double) sold / total * 100 : 0;
 
             System.out.println("========== TICKET POOL STATISTICS ==========");
-            System.out.println("Total tickets: " + total + "/" + capacity);
+            System.out.println("Total tickets: " + total + " (" + tickets.size() + "/" + capacity + " in the pool)");
             System.out.println("Available tickets: " + available);
             System.out.println("Sold tickets: " + sold);
             System.out.printf("Percentage sold: %.2f%%\n", percentageSold);
+            System.out.printf("Hand-offs: %d of %d adds (hit rate %.2f%%)\n", workerWaiters.getHandOffs(),
+                    workerWaiters.getHandOffAttempts(), workerWaiters.getHandOffHitRate());
+            System.out.println("Sold ledger: " + soldLedger.describe());
             System.out.println("============================================");
         } finally {
             lock.unlock();
         }
+        if (lock.isRecording()) {
+            getLockStats().forEach(System.out::println); // outside the lock, its own printing is not held against it
+        }
+    }
+
+    @Override
+    public long getTicketIdHighWaterMark() {
+        return ticketIdCounter.get() - 1;
+    }
+
+    @Override
+    public void advanceTicketIds(long highWaterMark) {
+        ticketIdCounter.accumulateAndGet(highWaterMark + 1, Math::max);
     }
 
     @Override
@@ -205,15 +424,9 @@ public class ReentrantLockTicketPool implements TicketPool {
 
     @Override
     public List<Ticket> getAvailableTickets() {
-        lock.lock();
+        lock.lock("getAvailableTickets");
         try {
-            List<Ticket> available = new ArrayList<>();
-            for (Ticket ticket : tickets) {
-                if (!ticket.isSold()) {
-                    available.add(ticket);
-                }
-            }
-            return available;
+            return tickets.toList();
         } finally {
             lock.unlock();
         }
@@ -221,18 +434,17 @@ public class ReentrantLockTicketPool implements TicketPool {
 
     @Override
     public Optional<Ticket> getRandomAvailableTicket() {
-        lock.lock();
+        lock.lock("getRandomAvailableTicket");
         try {
             long startTime = System.currentTimeMillis();
             long remainingTime = TIME_OUT;
 
             while (remainingTime > 0) {
-                List<Ticket> availableTickets = getAvailableTickets();
-                if (!availableTickets.isEmpty()) {
-                    int randomIndex = new Random().nextInt(availableTickets.size());
-                    return Optional.of(availableTickets.get(randomIndex));
+                Ticket ticket = tickets.random();
+                if (ticket != null) {
+                    return Optional.of(ticket);
                 }
-                if (!notEmpty.await(remainingTime, TimeUnit.MILLISECONDS)) {
+                if (!writerNotEmpty.await(remainingTime, TimeUnit.MILLISECONDS)) {
                     return Optional.empty(); // Timeout occurred
                 }
                 long elapsed = System.currentTimeMillis() - startTime;
@@ -269,23 +481,37 @@ public class ReentrantLockTicketPool implements TicketPool {
 
     @Override
     public void updateTicket(long ticketId, double newPrice, String newLocation, String newEventName) {
-        lock.lock();
+        lock.lock("updateTicket");
         try {
-            for (Ticket ticket : tickets) {
-                if (ticket.getTicketId() == ticketId) {
-                    ticket.setPrice(newPrice);
-                    ticket.setLocation(newLocation);
-                    ticket.setEventName(newEventName);
-                    return;
-                }
+            Ticket ticket = tickets.get(ticketId);
+            if (ticket != null) {
+                ticket.update(newPrice, newLocation, newEventName);
+            } else {
+                soldLedger.update(ticketId, newPrice, newLocation, newEventName);
             }
         } finally {
             lock.unlock();
         }
     }
 
+    @Override
+    public Optional<Ticket> findTicket(long ticketId) {
+        lock.lock("findTicket");
+        try {
+            Ticket ticket = tickets.get(ticketId);
+            return Optional.ofNullable(ticket != null ? ticket : soldLedger.find(ticketId)); // sold ones come back as a copy
+        } finally {
+            lock.unlock();
+        }
+    }
+
     public ReentrantLock getLock() {
-        return lock;
+        return reentrantLock;
+    }
+
+    //Wait and hold times per operation, empty unless the pool was built with recordLockTimes
+    public List<InstrumentedLock.Stats> getLockStats() {
+        return lock.getStats();
     }
 
     public Condition getNotEmptyCondition() {
@@ -0,0 +1,703 @@
+package com.gayan.versions;
+
+import com.gayan.entities.Ticket;
+import com.gayan.entities.TicketPool;
+import com.gayan.entities.WorkerRole;
+import com.gayan.utilz.AvailableTickets;
+import com.gayan.utilz.PurchaseWaiters;
+import com.gayan.utilz.SoldTicketLedger;
+import com.gayan.utilz.WorkerWaitQueues;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sharded version of the ticket pool.
+ * Capacity is split across N independent sub-pools (one per available processor), each with its own lock.
+ * Producers add to the shard of their thread and consumers buy from their home shard,
+ * only stealing from the other shards when the home shard is empty.
+ * Each shard keeps its available and sold counts in volatile fields, written under its lock, and the pool's
+ * counts add them up without taking any lock. A total read while another thread moves a ticket between shards
+ * can be one off for that moment. Listings and group purchases lock every shard in index order, so they see
+ * the shards at one moment. Sold tickets go to a per-shard SoldTicketLedger, so no Ticket object is kept per sale.
+ * Within a shard tickets are sold oldest first; across shards there is no global order, a buyer empties its
+ * home shard before it steals from the others.
+ */
+public class ShardedTicketPool implements TicketPool {
+
+    private final int TIME_OUT = 5000;
+
+    private final Shard[] shards;
+    private final int capacity;
+    private final AtomicLong ticketIdCounter;
+
+    //Slow path only: used when every shard is empty (buyers) or full (producers)
+    private final ReentrantLock waitLock = new ReentrantLock();
+    private final Condition notEmpty = waitLock.newCondition();
+    private final Condition notFull = waitLock.newCondition();
+    private final AtomicInteger waitingBuyers = new AtomicInteger(0);
+    private final AtomicInteger waitingProducers = new AtomicInteger(0);
+    //Async buyers are not parked at all, they are completed by whoever adds or cancels a ticket
+    private final PurchaseWaiters asyncBuyers = new PurchaseWaiters();
+    //Workers waiting from outside the pool, one queue per role
+    private final WorkerWaitQueues workerWaiters = new WorkerWaitQueues();
+
+    public ShardedTicketPool(int capacity) {
+        this(capacity, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ShardedTicketPool(int capacity, int shardCount) {
+        if (capacity <= 0 || shardCount <= 0) {
+            throw new IllegalArgumentException("Capacity and shard count must be greater than zero");
+        }
+        this.capacity = capacity;
+        int count = Math.min(shardCount, capacity); // every shard must be able to hold at least one ticket
+        this.shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            int shardCapacity = capacity / count + (i < capacity % count ? 1 : 0);
+            shards[i] = new Shard(shardCapacity);
+        }
+        this.ticketIdCounter = new AtomicLong(1);
+    }
+
+    //Each sub-pool holds its own available tickets and the tickets sold out of it. Every method runs under lock.
+    private static final class Shard {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final AvailableTickets available = new AvailableTickets(); //oldest first, ID lookup, O(1) random pick and removal
+        private final SoldTicketLedger soldLedger = SoldTicketLedger.inMemory();
+        private final int capacity;
+        //Written under lock, read without it by the wait checks and the pool's counts
+        private volatile int availableCount;
+        private volatile int soldCount;
+
+        private Shard(int capacity) {
+            this.capacity = capacity;
+        }
+
+        private void add(Ticket ticket) {
+            available.add(ticket);
+            availableCount = available.size();
+        }
+
+        private Ticket poll() {
+            Ticket ticket = available.poll();
+            if (ticket != null) {
+                availableCount = available.size();
+                sell(ticket);
+            }
+            return ticket;
+        }
+
+        private void sell(Ticket ticket) {
+            ticket.setSold(true);
+            soldLedger.archive(ticket);
+            soldCount = soldLedger.size();
+        }
+
+        //Take a cancelled ticket out of this shard's ledger, false if it was not sold from here
+        private boolean restore(Ticket ticket) {
+            if (!ticket.isSold() || !soldLedger.restore(ticket)) {
+                return false;
+            }
+            soldCount = soldLedger.size();
+            ticket.setSold(false);
+            return true;
+        }
+    }
+
+    private int homeShard() {
+        return (int) (Thread.currentThread().getId() % shards.length);
+    }
+
+    @Override
+    public boolean addTicket(Ticket ticket) {
+        if (ticket.isSold()) {
+            archiveSold(ticket); // already sold (a restore), straight to the home shard's ledger
+            return true;
+        }
+        if (handOff(ticket)) {
+            return true;
+        }
+        boolean added = offer(ticket);
+        if (added) {
+            serveAsyncBuyers();
+        }
+        return added;
+    }
+
+    //A buyer parked in purchaseTicket takes the ticket directly. Sold tickets take no room, so it goes to the home shard's ledger.
+    private boolean handOff(Ticket ticket) {
+        return workerWaiters.handOff(ticket, () -> archiveSold(ticket));
+    }
+
+    private void archiveSold(Ticket ticket) {
+        Shard shard = shards[homeShard()];
+        shard.lock.lock();
+        try {
+            shard.sell(ticket);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    private boolean offer(Ticket ticket) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIME_OUT);
+        while (true) {
+            if (offerToAnyShard(ticket, homeShard())) {
+                return true;
+            }
+            // Every shard is full, wait for a buyer to make room.
+            // The pool monitor is never taken while waitLock is held, so Consumer workers holding it cannot deadlock us.
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                System.out.println(Thread.currentThread().getName() + " could not add ticket - pool full after waiting.");
+                return false;
+            }
+            if (!awaitRoom(remaining)) {
+                return false;
+            }
+        }
+    }
+
+    //Fills each shard's free room under one lock round per shard, home shard first
+    @Override
+    public int addTickets(Collection<Ticket> tickets) {
+        List<Ticket> pending = new ArrayList<>(tickets.size());
+        int archived = 0;
+        for (Ticket ticket : tickets) {
+            if (ticket.isSold()) {
+                archiveSold(ticket);
+                archived++;
+            } else {
+                pending.add(ticket);
+            }
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIME_OUT);
+        int added = 0;
+        while (true) {
+            int placed = offerAllToShards(pending, added, homeShard());
+            if (placed > added) {
+                added = placed;
+                serveAsyncBuyers();
+            }
+            if (added == pending.size()) {
+                return archived + added;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                System.out.println(Thread.currentThread().getName() + " could not add tickets - pool full after waiting (" + added + " added).");
+                return archived + added;
+            }
+            if (!awaitRoom(remaining)) {
+                return archived + added;
+            }
+        }
+    }
+
+    @Override
+    public Optional<Ticket> purchaseTicket() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIME_OUT);
+        while (true) {
+            Ticket ticket = pollFromAnyShard(homeShard());
+            if (ticket != null) {
+                return Optional.of(ticket);
+            }
+            // Every shard is empty, wait in the buyers' queue where a producer can hand us a new ticket directly
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return Optional.empty();
+            }
+            try {
+                ticket = workerWaiters.awaitHandOff(() -> hasTickets(1), remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Optional.empty();
+            }
+            if (ticket != null) {
+                return Optional.of(ticket);
+            }
+        }
+    }
+
+    @Override
+    public CompletableFuture<Ticket> purchaseTicketAsync() {
+        Ticket ticket = pollFromAnyShard(homeShard());
+        if (ticket != null) {
+            return CompletableFuture.completedFuture(ticket);
+        }
+        CompletableFuture<Ticket> future = asyncBuyers.register(TIME_OUT);
+        serveAsyncBuyers(); // a ticket may have come in before we were queued
+        return future;
+    }
+
+    //Hand new tickets straight to queued async buyers. Runs with no shard lock held.
+    private void serveAsyncBuyers() {
+        if (asyncBuyers.hasWaiters()) {
+            asyncBuyers.drain(() -> pollFromAnyShard(homeShard()), this::restock);
+        }
+    }
+
+    //A group may span shards, so all shards are locked (index order) to take the tickets in one step
+    @Override
+    public List<Ticket> purchaseTickets(int count, Duration timeout) {
+        List<Ticket> purchased = new ArrayList<>(Math.max(count, 0));
+        if (count <= 0 || count > capacity) {
+            return purchased;
+        }
+        long deadline = System.nanoTime() + timeout.toNanos();
+        int home = homeShard();
+        while (true) {
+            lockAll();
+            try {
+                int available = 0;
+                for (Shard shard : shards) {
+                    available += shard.available.size();
+                }
+                // All or nothing, a partial purchase is never made
+                if (available >= count) {
+                    for (int i = 0; purchased.size() < count; i++) {
+                        Shard shard = shards[(home + i) % shards.length];
+                        Ticket ticket;
+                        while (purchased.size() < count && (ticket = shard.poll()) != null) {
+                            purchased.add(ticket);
+                        }
+                    }
+                }
+            } finally {
+                unlockAll();
+            }
+            if (!purchased.isEmpty()) {
+                signalProducers(count);
+                return purchased;
+            }
+            if (!awaitTickets(deadline, count)) {
+                return purchased;
+            }
+        }
+    }
+
+    @Override
+    public void cancelTicket(Ticket ticket) {
+        if (restock(ticket)) {
+            serveAsyncBuyers();
+        }
+    }
+
+    //Put a sold ticket back on sale. All shards are locked so it leaves one ledger and lands in a shard in one step.
+    private boolean restock(Ticket ticket) {
+        if (ticket == null) {
+            return false;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIME_OUT);
+        while (true) {
+            boolean placed;
+            lockAll();
+            try {
+                int from = -1;
+                for (int i = 0; i < shards.length && from < 0; i++) {
+                    if (shards[i].restore(ticket)) {
+                        from = i;
+                    }
+                }
+                if (from < 0) {
+                    return false; // not sold from this pool
+                }
+                // Give it back to the shard it was sold from (or any shard with room)
+                placed = addToShardWithRoom(ticket, from);
+                if (!placed) {
+                    shards[from].sell(ticket); // no room anywhere yet, it stays sold
+                }
+            } finally {
+                unlockAll();
+            }
+            if (placed) {
+                signalBuyers(1);
+                return true;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                System.out.println(Thread.currentThread().getName() + " could not restock ticket - pool full after waiting.");
+                return false;
+            }
+            if (!awaitRoom(remaining)) {
+                return false;
+            }
+        }
+    }
+
+    //Caller holds every shard lock
+    private boolean addToShardWithRoom(Ticket ticket, int home) {
+        for (int i = 0; i < shards.length; i++) {
+            Shard shard = shards[(home + i) % shards.length];
+            if (shard.available.size() < shard.capacity) {
+                shard.add(ticket);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int getCurrentSize() {
+        return getAvailableTicketCount();
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public int getAvailableTicketCount() {
+        int count = 0;
+        for (Shard shard : shards) {
+            count += shard.availableCount;
+        }
+        return count;
+    }
+
+    @Override
+    public int getSoldTicketCount() {
+        int count = 0;
+        for (Shard shard : shards) {
+            count += shard.soldCount;
+        }
+        return count;
+    }
+
+    @Override
+    public List<Ticket> getAllTickets() {
+        lockAll();
+        try {
+            List<Ticket> allTickets = new ArrayList<>();
+            for (Shard shard : shards) {
+                shard.available.addTo(allTickets);
+            }
+            for (Shard shard : shards) {
+                shard.soldLedger.addTo(allTickets); // copies of the sold tickets
+            }
+            return allTickets;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    public int getAllTicketsCount() {
+        int count = 0;
+        for (Shard shard : shards) {
+            count += shard.availableCount + shard.soldCount;
+        }
+        return count;
+    }
+
+    @Override
+    public void printTicketPoolStatus() {
+        int available = 0;
+        int sold = 0;
+        int[] perShard = new int[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            perShard[i] = shards[i].availableCount;
+            available += perShard[i];
+            sold += shards[i].soldCount;
+        }
+        int total = available + sold;
+        double percentageSold = total > 0 ? (double) sold / total * 100 : 0;
+
+        System.out.println("========== TICKET POOL STATISTICS ==========");
+        System.out.println("Total tickets: " + total + " (available " + available + "/" + capacity + ")");
+        System.out.println("Available tickets: " + available);
+        System.out.println("Sold tickets: " + sold);
+        System.out.printf("Percentage sold: %.2f%%\n", percentageSold);
+        System.out.printf("Hand-offs: %d of %d adds (hit rate %.2f%%)\n", workerWaiters.getHandOffs(),
+                workerWaiters.getHandOffAttempts(), workerWaiters.getHandOffHitRate());
+        System.out.println("Available per shard: " + Arrays.toString(perShard));
+        System.out.println("============================================");
+    }
+
+    @Override
+    public long getTicketIdHighWaterMark() {
+        return ticketIdCounter.get() - 1;
+    }
+
+    @Override
+    public void advanceTicketIds(long highWaterMark) {
+        ticketIdCounter.accumulateAndGet(highWaterMark + 1, Math::max);
+    }
+
+    @Override
+    public Ticket createTicket(String eventName, String vendorName, String location, double price) {
+        long id = ticketIdCounter.getAndIncrement();
+        return new Ticket(id, eventName, vendorName, location, price);
+    }
+
+    @Override
+    public List<Ticket> getAvailableTickets() {
+        lockAll();
+        try {
+            List<Ticket> available = new ArrayList<>();
+            for (Shard shard : shards) {
+                shard.available.addTo(available);
+            }
+            return available;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    @Override
+    public Optional<Ticket> getRandomAvailableTicket() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIME_OUT);
+        while (true) {
+            int start = ThreadLocalRandom.current().nextInt(shards.length);
+            for (int i = 0; i < shards.length; i++) {
+                Shard shard = shards[(start + i) % shards.length];
+                shard.lock.lock();
+                try {
+                    Ticket ticket = shard.available.random();
+                    if (ticket != null) {
+                        return Optional.of(ticket);
+                    }
+                } finally {
+                    shard.lock.unlock();
+                }
+            }
+
+            if (!awaitTickets(deadline, 1)) {
+                return Optional.empty();
+            }
+        }
+    }
+
+    @Override
+    public void updateTicket(long ticketId, double newPrice, String newLocation, String newEventName) {
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                Ticket ticket = shard.available.get(ticketId);
+                if (ticket != null) {
+                    ticket.update(newPrice, newLocation, newEventName);
+                    return;
+                }
+                if (shard.soldLedger.update(ticketId, newPrice, newLocation, newEventName)) {
+                    return;
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        System.out.println("Failed to update ticket Ticket ID: " + ticketId + " not found");
+    }
+
+    @Override
+    public boolean awaitTickets(WorkerRole role, long timeoutMillis) throws InterruptedException {
+        // Every role here needs an available ticket (the current size is the available count), checked lock-free
+        return workerWaiters.await(role, () -> hasTickets(1), TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+    }
+
+    @Override
+    public Optional<Ticket> findTicket(long ticketId) {
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                Ticket ticket = shard.available.get(ticketId);
+                if (ticket == null) {
+                    ticket = shard.soldLedger.find(ticketId); // sold ones come back as a copy
+                }
+                if (ticket != null) {
+                    return Optional.of(ticket);
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return Optional.empty();
+    }
+
+    //========== Shard Helpers ==========
+
+    //Try the home shard first, then the others in order. Only one shard lock is held at a time.
+    private boolean offerToAnyShard(Ticket ticket, int home) {
+        for (int i = 0; i < shards.length; i++) {
+            Shard shard = shards[(home + i) % shards.length];
+            shard.lock.lock();
+            try {
+                if (shard.available.size() >= shard.capacity) {
+                    continue;
+                }
+                shard.add(ticket);
+            } finally {
+                shard.lock.unlock();
+            }
+            signalBuyers(1);
+            return true;
+        }
+        return false;
+    }
+
+    //Spread pending[from..] over the shards, one lock round per shard. Returns the new count of tickets placed.
+    private int offerAllToShards(List<Ticket> pending, int from, int home) {
+        int next = from;
+        for (int i = 0; i < shards.length && next < pending.size(); i++) {
+            Shard shard = shards[(home + i) % shards.length];
+            int placed = 0;
+            shard.lock.lock();
+            try {
+                while (next < pending.size() && shard.available.size() < shard.capacity) {
+                    shard.add(pending.get(next++));
+                    placed++;
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+            if (placed > 0) {
+                signalBuyers(placed);
+            }
+        }
+        return next;
+    }
+
+    //Buy from the home shard, steal from the others only when the home shard is empty
+    private Ticket pollFromAnyShard(int home) {
+        for (int i = 0; i < shards.length; i++) {
+            Shard shard = shards[(home + i) % shards.length];
+            Ticket ticket;
+            shard.lock.lock();
+            try {
+                ticket = shard.poll();
+                if (ticket == null) {
+                    continue;
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+            signalProducers(1);
+            return ticket;
+        }
+        return null;
+    }
+
+    //Park until a buyer makes room or the time runs out. Returns false on interrupt.
+    private boolean awaitRoom(long remaining) {
+        waitLock.lock();
+        waitingProducers.incrementAndGet();
+        try {
+            // Registered as a waiter before this re-check, so a buyer making room from now on will signal
+            if (!hasRoom()) {
+                notFull.awaitNanos(remaining);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println(Thread.currentThread().getName() + " was interrupted while adding ticket.");
+            return false;
+        } finally {
+            waitingProducers.decrementAndGet();
+            waitLock.unlock();
+        }
+    }
+
+    //Park until a producer signals or the deadline passes. Returns false on timeout or interrupt.
+    private boolean awaitTickets(long deadline, int needed) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            return false;
+        }
+        waitLock.lock();
+        waitingBuyers.incrementAndGet();
+        try {
+            // Registered as a waiter before this re-check, so a producer adding from now on will signal
+            if (!hasTickets(needed)) {
+                notEmpty.awaitNanos(remaining);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            waitingBuyers.decrementAndGet();
+            waitLock.unlock();
+        }
+    }
+
+    //Shard by shard from the counters, no shard lock taken, stops as soon as enough tickets have been seen
+    private boolean hasTickets(int needed) {
+        int seen = 0;
+        for (Shard shard : shards) {
+            seen += shard.availableCount;
+            if (seen >= needed) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasRoom() {
+        for (Shard shard : shards) {
+            if (shard.availableCount < shard.capacity) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void signalBuyers(int added) {
+        if (waitingBuyers.get() > 0) {
+            waitLock.lock();
+            try {
+                notEmpty.signalAll();
+            } finally {
+                waitLock.unlock();
+            }
+        }
+        // Workers (Reader/Writer/Consumer) park in their role's queue, one buyer is woken per new ticket
+        workerWaiters.ticketsAvailable(added);
+    }
+
+    private void signalProducers(int freed) {
+        if (waitingProducers.get() > 0) {
+            waitLock.lock();
+            try {
+                if (freed == 1) {
+                    notFull.signal();
+                } else {
+                    notFull.signalAll();
+                }
+            } finally {
+                waitLock.unlock();
+            }
+        }
+    }
+
+    //Lock every shard in index order, for listings and group purchases that must see the shards at one moment
+    private void lockAll() {
+        for (Shard shard : shards) {
+            shard.lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = shards.length - 1; i >= 0; i--) {
+            shards[i].lock.unlock();
+        }
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    @Override
+    public String toString() {
+        return "ShardedTicketPool{" +
+                "shards=" + shards.length +
+                ", capacity=" + capacity +
+                ", ticketIdCounter=" + ticketIdCounter +
+                '}';
+    }
+}
@@ -0,0 +1,602 @@
+package com.gayan.versions;
+
+import com.gayan.entities.Ticket;
+import com.gayan.entities.TicketPool;
+import com.gayan.entities.WorkerRole;
+import com.gayan.utilz.AvailableTickets;
+import com.gayan.utilz.PurchaseWaiters;
+import com.gayan.utilz.SoldTicketLedger;
+import com.gayan.utilz.WorkerWaitQueues;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * StampedLock version of the ticket pool.
+ * Mutations (add, purchase, cancel, update) take the write lock.
+ * Status reads (sizes, counts, pool status) use an optimistic read stamp
+ * and only fall back to the read lock when a writer got in between, so Readers and
+ * status polling never block producers or consumers.
+ * Ticket listings and snapshots copy the same way: the dense available-ticket array and the ledger are copied
+ * under an optimistic stamp, and only a copy a writer got in between is redone under the read lock.
+ */
+public class StampedLockTicketPool implements TicketPool {
+
+    private final int TIME_OUT = 5000;
+
+    private int availableCount; //tickets in the pool, sold ones move to soldLedger and free their room
+    private int soldCount;
+    private long ledgerBytes; //soldLedger's record bytes, so status can read them under an optimistic stamp
+    //Unsold tickets: the purchase queue (oldest first), the ID index and the random-pick array in one, guarded by lock
+    private final AvailableTickets availableTickets = new AvailableTickets();
+    //Compact archive of the sold tickets, guarded by lock
+    private final SoldTicketLedger soldLedger;
+
+    private final int capacity;
+    private final AtomicLong ticketIdCounter;
+    private final StampedLock lock = new StampedLock();
+
+    //StampedLock has no conditions, blocked producers/buyers park here instead
+    private final ReentrantLock waitLock = new ReentrantLock();
+    private final Condition notEmpty = waitLock.newCondition();
+    private final Condition notFull = waitLock.newCondition();
+    private final AtomicInteger waitingBuyers = new AtomicInteger(0);
+    private final AtomicInteger waitingProducers = new AtomicInteger(0);
+    //Async buyers are not parked at all, they are completed by whoever adds or cancels a ticket
+    private final PurchaseWaiters asyncBuyers = new PurchaseWaiters();
+    //Workers waiting from outside the pool, one queue per role
+    private final WorkerWaitQueues workerWaiters = new WorkerWaitQueues();
+
+    public StampedLockTicketPool(int capacity) {
+        this(capacity, SoldTicketLedger.inMemory());
+    }
+
+    public StampedLockTicketPool(int capacity, SoldTicketLedger soldLedger) {
+        this.capacity = capacity;
+        this.soldLedger = soldLedger;
+        this.ticketIdCounter = new AtomicLong(1);
+    }
+
+    @Override
+    public boolean addTicket(Ticket ticket) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIME_OUT);
+        while (true) {
+            if (tryAdd(ticket)) {
+                serveAsyncBuyers();
+                return true;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                System.out.println(Thread.currentThread().getName() + " timed out trying to add ticket.");
+                return false;
+            }
+            if (!awaitRoom(remaining)) {
+                return false;
+            }
+        }
+    }
+
+    //Fills whatever room there is under one write lock, and only waits when the pool is full
+    @Override
+    public int addTickets(Collection<Ticket> newTickets) {
+        List<Ticket> pending = new ArrayList<>(newTickets);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIME_OUT);
+        int added = 0;
+        while (true) {
+            int placed = tryAddAll(pending, added);
+            if (placed > 0) {
+                added += placed;
+                serveAsyncBuyers();
+            }
+            if (added == pending.size()) {
+                return added;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                System.out.println(Thread.currentThread().getName() + " timed out trying to add tickets (" + added + " added).");
+                return added;
+            }
+            if (!awaitRoom(remaining)) {
+                return added;
+            }
+        }
+    }
+
+    @Override
+    public Optional<Ticket> purchaseTicket() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIME_OUT);
+        while (true) {
+            Ticket ticket = pollAvailable();
+            if (ticket != null) {
+                return Optional.of(ticket);
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return Optional.empty();
+            }
+            // Single buyers wait in the buyers' queue, where a producer can hand them a new ticket directly
+            try {
+                ticket = workerWaiters.awaitHandOff(() -> WorkerRole.BUYER.canProceed(this), remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Optional.empty();
+            }
+            if (ticket != null) {
+                return Optional.of(ticket);
+            }
+        }
+    }
+
+    @Override
+    public CompletableFuture<Ticket> purchaseTicketAsync() {
+        Ticket ticket = pollAvailable();
+        if (ticket != null) {
+            return CompletableFuture.completedFuture(ticket);
+        }
+        CompletableFuture<Ticket> future = asyncBuyers.register(TIME_OUT);
+        serveAsyncBuyers(); // a ticket may have come in before we were queued
+        return future;
+    }
+
+    @Override
+    public List<Ticket> purchaseTickets(int count, Duration timeout) {
+        List<Ticket> purchased = new ArrayList<>(Math.max(count, 0));
+        if (count <= 0 || count > capacity) {
+            return purchased;
+        }
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (true) {
+            long stamp = lock.writeLock();
+            try {
+                // All or nothing, a partial purchase is never made
+                if (availableCount >= count) {
+                    for (int i = 0; i < count; i++) {
+                        Ticket ticket = availableTickets.poll();
+                        recordSale(ticket);
+                        purchased.add(ticket);
+                    }
+                    availableCount -= count;
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            if (!purchased.isEmpty()) {
+                signalProducers(count);
+                return purchased;
+            }
+            if (!awaitTickets(deadline, count)) {
+                return purchased;
+            }
+        }
+    }
+
+    @Override
+    public void cancelTicket(Ticket ticket) {
+        if (restock(ticket)) {
+            serveAsyncBuyers();
+        }
+    }
+
+    //Put a sold ticket back on sale. It takes its room in the pool again, even if producers filled it meanwhile.
+    private boolean restock(Ticket ticket) {
+        if (ticket == null) {
+            return false;
+        }
+        long stamp = lock.writeLock();
+        try {
+            if (!ticket.isSold() || !soldLedger.restore(ticket)) {
+                return false;
+            }
+            ticket.setSold(false);
+            availableTickets.add(ticket);
+            availableCount++;
+            soldCount--;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        signalBuyers(1);
+        return true;
+    }
+
+    @Override
+    public int getCurrentSize() {
+        long stamp = lock.tryOptimisticRead();
+        int current = availableCount;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                current = availableCount;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return current;
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public int getAvailableTicketCount() {
+        long stamp = lock.tryOptimisticRead();
+        int available = availableCount;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                available = availableCount;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return available;
+    }
+
+    @Override
+    public int getSoldTicketCount() {
+        long stamp = lock.tryOptimisticRead();
+        int sold = soldCount;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                sold = soldCount;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return sold;
+    }
+
+    @Override
+    public List<Ticket> getAllTickets() {
+        return readOptimistically(() -> {
+            List<Ticket> all = availableTickets.toList();
+            soldLedger.addTo(all); // copies of the sold tickets
+            return all;
+        });
+    }
+
+    public int getAllTicketsCount() {
+        long stamp = lock.tryOptimisticRead();
+        int total = availableCount + soldCount;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                total = availableCount + soldCount;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public void printTicketPoolStatus() {
+        // Take the numbers under one stamp so they always agree with each other
+        long stamp = lock.tryOptimisticRead();
+        int total = availableCount + soldCount;
+        int available = availableCount;
+        int sold = soldCount;
+        long recordBytes = ledgerBytes;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                total = availableCount + soldCount;
+                available = availableCount;
+                sold = soldCount;
+                recordBytes = ledgerBytes;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        double percentageSold = total > 0 ? (double) sold / total * 100 : 0;
+
+        System.out.println("========== TICKET POOL STATISTICS ==========");
+        System.out.println("Total tickets: " + total + " (" + available + "/" + capacity + " in the pool)");
+        System.out.println("Available tickets: " + available);
+        System.out.println("Sold tickets: " + sold);
+        System.out.printf("Percentage sold: %.2f%%\n", percentageSold);
+        System.out.printf("Hand-offs: %d of %d adds (hit rate %.2f%%)\n", workerWaiters.getHandOffs(),
+                workerWaiters.getHandOffAttempts(), workerWaiters.getHandOffHitRate());
+        System.out.println("Sold ledger: " + soldLedger.describe(sold, recordBytes)); // formatted outside the lock
+        System.out.println("============================================");
+    }
+
+    @Override
+    public long getTicketIdHighWaterMark() {
+        return ticketIdCounter.get() - 1;
+    }
+
+    @Override
+    public void advanceTicketIds(long highWaterMark) {
+        ticketIdCounter.accumulateAndGet(highWaterMark + 1, Math::max);
+    }
+
+    @Override
+    public Ticket createTicket(String eventName, String vendorName, String location, double price) {
+        long id = ticketIdCounter.getAndIncrement();
+        return new Ticket(id, eventName, vendorName, location, price);
+    }
+
+    @Override
+    public List<Ticket> getAvailableTickets() {
+        return readOptimistically(() -> availableTickets.toList());
+    }
+
+    @Override
+    public Optional<Ticket> getRandomAvailableTicket() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIME_OUT);
+        while (true) {
+            long stamp = lock.readLock();
+            try {
+                Ticket ticket = availableTickets.random();
+                if (ticket != null) {
+                    return Optional.of(ticket);
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            if (!awaitTickets(deadline, 1)) {
+                return Optional.empty();
+            }
+        }
+    }
+
+    //An unsold ticket gets a new version under the read lock, so writers run alongside listings and each other.
+    //Only a sold ticket (a ledger record) needs the write lock.
+    @Override
+    public void updateTicket(long ticketId, double newPrice, String newLocation, String newEventName) {
+        long stamp = lock.readLock();
+        try {
+            Ticket ticket = availableTickets.get(ticketId);
+            if (ticket != null) {
+                ticket.update(newPrice, newLocation, newEventName);
+                return;
+            }
+            long writeStamp = lock.tryConvertToWriteLock(stamp);
+            if (writeStamp == 0L) {
+                lock.unlockRead(stamp);
+                stamp = lock.writeLock();
+                ticket = availableTickets.get(ticketId); // may have been restocked meanwhile
+                if (ticket != null) {
+                    ticket.update(newPrice, newLocation, newEventName);
+                    return;
+                }
+            } else {
+                stamp = writeStamp;
+            }
+            soldLedger.update(ticketId, newPrice, newLocation, newEventName);
+        } finally {
+            lock.unlock(stamp);
+        }
+    }
+
+    @Override
+    public boolean awaitTickets(WorkerRole role, long timeoutMillis) throws InterruptedException {
+        return workerWaiters.await(role, () -> role.canProceed(this), TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+    }
+
+    @Override
+    public Optional<Ticket> findTicket(long ticketId) {
+        long stamp = lock.readLock();
+        try {
+            Ticket ticket = availableTickets.get(ticketId);
+            return Optional.ofNullable(ticket != null ? ticket : soldLedger.find(ticketId)); // sold ones come back as a copy
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    //========== Helpers ==========
+
+    /**
+     * Run a copy without taking the lock, and keep it if no writer got in between.
+     * A copy that overlapped a write may be torn or may even have thrown, so it is redone under the read lock.
+     */
+    private <T> T readOptimistically(Supplier<T> copy) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            try {
+                T result = copy.get();
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                // Read half-moved tickets, the stamp is invalid as well
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return copy.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private boolean tryAdd(Ticket ticket) {
+        boolean handedOff;
+        long stamp = lock.writeLock();
+        try {
+            if (ticket.isSold()) {
+                archiveSold(ticket); // already sold (a restore), straight to the archive
+                return true;
+            }
+            // A buyer parked in purchaseTicket takes it directly, it never becomes available or takes room
+            handedOff = workerWaiters.handOff(ticket, () -> archiveSold(ticket));
+            if (!handedOff) {
+                if (availableCount >= capacity) {
+                    return false;
+                }
+                availableTickets.add(ticket);
+                availableCount++;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        if (!handedOff) {
+            signalBuyers(1);
+        }
+        return true;
+    }
+
+    //Take the next unsold ticket without waiting, null if there is none
+    private Ticket pollAvailable() {
+        Ticket ticket;
+        long stamp = lock.writeLock();
+        try {
+            ticket = availableTickets.poll();
+            if (ticket != null) {
+                recordSale(ticket);
+                availableCount--;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        if (ticket != null) {
+            signalProducers(1);
+        }
+        return ticket;
+    }
+
+    //Called holding the write lock, once the ticket is out of availableTickets
+    private void recordSale(Ticket ticket) {
+        archiveSold(ticket);
+    }
+
+    //Called holding the write lock
+    private void archiveSold(Ticket ticket) {
+        ticket.setSold(true);
+        soldLedger.archive(ticket);
+        soldCount++;
+        ledgerBytes = soldLedger.getRecordBytes();
+    }
+
+    //Hand new tickets straight to queued async buyers, outside the lock so their callbacks never run under it
+    private void serveAsyncBuyers() {
+        if (asyncBuyers.hasWaiters()) {
+            asyncBuyers.drain(this::pollAvailable, this::restock);
+        }
+    }
+
+    //Adds pending[from..] until the pool is full, returns how many went in
+    private int tryAddAll(List<Ticket> pending, int from) {
+        int added = 0;
+        long stamp = lock.writeLock();
+        try {
+            int i = from;
+            while (i < pending.size()) {
+                Ticket ticket = pending.get(i);
+                if (ticket.isSold()) {
+                    archiveSold(ticket); // sold tickets take no room
+                } else if (availableCount < capacity) {
+                    availableTickets.add(ticket);
+                    availableCount++;
+                } else {
+                    break;
+                }
+                i++;
+            }
+            added = i - from;
+            if (added == 0) {
+                return 0;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        signalBuyers(added);
+        return added;
+    }
+
+    //Park until a buyer makes room or the time runs out. Returns false on interrupt.
+    private boolean awaitRoom(long remaining) {
+        waitLock.lock();
+        waitingProducers.incrementAndGet();
+        try {
+            // Registered as a waiter before this re-check, so a buyer making room from now on will signal
+            if (!hasRoom()) {
+                notFull.awaitNanos(remaining);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println(Thread.currentThread().getName() + " was interrupted while adding ticket.");
+            return false;
+        } finally {
+            waitingProducers.decrementAndGet();
+            waitLock.unlock();
+        }
+    }
+
+    //Park until a producer signals or the deadline passes. Returns false on timeout or interrupt.
+    private boolean awaitTickets(long deadline, int needed) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            return false;
+        }
+        waitLock.lock();
+        waitingBuyers.incrementAndGet();
+        try {
+            // Registered as a waiter before this re-check, so a producer adding from now on will signal
+            if (getAvailableTicketCount() < needed) {
+                notEmpty.awaitNanos(remaining);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            waitingBuyers.decrementAndGet();
+            waitLock.unlock();
+        }
+    }
+
+    private boolean hasRoom() {
+        return getCurrentSize() < capacity;
+    }
+
+    private void signalBuyers(int added) {
+        if (waitingBuyers.get() > 0) {
+            waitLock.lock();
+            try {
+                notEmpty.signalAll();
+            } finally {
+                waitLock.unlock();
+            }
+        }
+        // Workers (Reader/Writer/Consumer) park in their role's queue, one buyer is woken per new ticket
+        workerWaiters.ticketsAvailable(added);
+    }
+
+    private void signalProducers(int freed) {
+        if (waitingProducers.get() > 0) {
+            waitLock.lock();
+            try {
+                if (freed == 1) {
+                    notFull.signal();
+                } else {
+                    notFull.signalAll();
+                }
+            } finally {
+                waitLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "StampedLockTicketPool{" +
+                "size=" + getCurrentSize() +
+                ", capacity=" + capacity +
+                ", ticketIdCounter=" + ticketIdCounter +
+                '}';
+    }
+}
@@ -2,41 +2,71 @@ package com.gayan.versions;
 
 import com.gayan.entities.Ticket;
 import com.gayan.entities.TicketPool;
-
+import com.gayan.entities.WorkerRole;
+import com.gayan.utilz.AvailableTickets;
+import com.gayan.utilz.MonitorContentionSampler;
+import com.gayan.utilz.PurchaseWaiters;
+import com.gayan.utilz.SoldTicketLedger;
+import com.gayan.utilz.WorkerWaitQueues;
+
+import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class SynchronizedTicketPool implements TicketPool {
 
     private final int TIME_OUT = 10000;
-    //Shared Resource
-    private final Queue<Ticket> tickets;
+    //Shared Resource: the unsold tickets, as the purchase queue (oldest first), the ID index and the
+    //random-pick array (Writers) in one structure, guarded by this
+    private final AvailableTickets tickets = new AvailableTickets();
     //private Queue<Ticket> availableTickets;
-    private Queue<Ticket> soldTickets;
+    //Sold tickets leave tickets for this compact archive, guarded by this
+    private final SoldTicketLedger soldLedger;
     private final int capacity;
     private final AtomicLong ticketIdCounter;
+    //Async buyers, served outside the monitor
+    private final PurchaseWaiters asyncBuyers = new PurchaseWaiters();
+    //Single-ticket buyers, writers and readers park here, one queue per role
+    private final WorkerWaitQueues workerWaiters = new WorkerWaitQueues();
+    //Group buyers still wait on the monitor, which is only notified while some are waiting. Guarded by this.
+    private int groupBuyersWaiting = 0;
 
     private volatile boolean poolClosed = false;
 
     //Constructor
     public SynchronizedTicketPool(int capacity) {
+        this(capacity, SoldTicketLedger.inMemory());
+    }
+
+    public SynchronizedTicketPool(int capacity, SoldTicketLedger soldLedger) {
         this.capacity = capacity;
-        tickets = new LinkedList<>();
         //availableTickets = new LinkedList<>();
-        soldTickets = new LinkedList<>();
+        this.soldLedger = soldLedger;
         this.ticketIdCounter = new AtomicLong(1);
     }
 
     @Override
     public boolean addTicket(Ticket ticket) {
         try {
-            boolean success = tickets.offer(ticket);
-            if (success) {
-                synchronized (this) {
-                    notifyAll(); // 👈 Wake up any waiting Readers
+            boolean success;
+            synchronized (this) {
+                if (handOff(ticket)) {
+                    return true; // 👈 Went straight to a waiting buyer, nobody else needs waking
+                }
+                if (ticket.isSold()) {
+                    soldLedger.archive(ticket); // already sold (a restore), straight to the archive
+                    return true;
+                }
+                success = tickets.add(ticket);
+                if (success) {
+                    notifyGroupBuyers();
                 }
+            }
+            if (success) {
+                workerWaiters.ticketsAvailable(1); // 👈 Wake up one buyer, and a reader and a writer
+                serveAsyncBuyers();
             } else {
                 System.out.println(Thread.currentThread().getName() + " could not add ticket - pool full after waiting.");
             }
@@ -48,24 +78,54 @@ public class SynchronizedTicketPool implements TicketPool {
         }
     }
 
+    //Whole block goes in under one monitor entry, then one buyer is woken per added ticket
+    @Override
+    public int addTickets(Collection<Ticket> newTickets) {
+        int added = 0;
+        synchronized (this) {
+            for (Ticket ticket : newTickets) {
+                if (ticket.isSold()) {
+                    soldLedger.archive(ticket);
+                    added++;
+                } else if (tickets.add(ticket)) {
+                    added++;
+                }
+            }
+            if (added > 0) {
+                notifyGroupBuyers();
+            }
+        }
+        if (added > 0) {
+            workerWaiters.ticketsAvailable(added);
+            serveAsyncBuyers();
+        }
+        return added;
+    }
+
     //Get all the available tickets if required
     public List<Ticket> getAvailableTickets() {
-        return new ArrayList<>(tickets);
+        return tickets.toList();
 
     }
 
+    //Waits in the writers' queue, outside the monitor, so producers are not held up
     @Override
-    public synchronized Optional<Ticket> getRandomAvailableTicket() {
+    public Optional<Ticket> getRandomAvailableTicket() {
+        long startTime = System.currentTimeMillis();
+
         while (true) {
-            List<Ticket> availableTickets = getAvailableTickets();
+            Ticket ticket = randomPick();
+            if (ticket != null) {
+                return Optional.of(ticket);
+            }
 
-            if (!availableTickets.isEmpty()) {
-                int randomIndex = ThreadLocalRandom.current().nextInt(availableTickets.size());
-                return Optional.of(availableTickets.get(randomIndex));
+            long remainingTime = TIME_OUT - (System.currentTimeMillis() - startTime);
+            if (remainingTime <= 0) {
+                return Optional.empty();
             }
 
             try {
-                wait(TIME_OUT);
+                awaitTickets(WorkerRole.WRITER, remainingTime);
             } catch (InterruptedException e) {
                 System.out.println(Thread.currentThread().getName() + " was interrupted while waiting for available tickets.");
                 Thread.currentThread().interrupt();
@@ -74,17 +134,19 @@ public class SynchronizedTicketPool implements TicketPool {
         }
     }
 
+    private synchronized Ticket randomPick() {
+        return tickets.random();
+    }
+
+    //Waits in the buyers' queue, outside the monitor, and is woken only when a ticket is added for it
     @Override
-    public synchronized Optional<Ticket> purchaseTicket() {
+    public Optional<Ticket> purchaseTicket() {
         long startTime = System.currentTimeMillis();
         long totalTimeout = TIME_OUT;
 
         while (System.currentTimeMillis() - startTime < totalTimeout) {
-            Ticket ticket = tickets.poll();
+            Ticket ticket = pollAvailable();
             if(ticket != null) {
-                ticket.setSold(true);
-                this.soldTickets.offer(ticket);
-                notifyAll();
                 return Optional.of(ticket);
             }
 
@@ -96,9 +158,12 @@ public class SynchronizedTicketPool implements TicketPool {
                 return Optional.empty();
             }
 
-            // No ticket found, wait
+            // No ticket found, wait (a producer may hand us one directly)
             try {
-                wait(remainingTime);
+                ticket = workerWaiters.awaitHandOff(() -> WorkerRole.BUYER.canProceed(this), TimeUnit.MILLISECONDS.toNanos(remainingTime));
+                if (ticket != null) {
+                    return Optional.of(ticket);
+                }
             } catch (InterruptedException e) {
                 System.out.println(Thread.currentThread().getName() + " was interrupted during purchase.");
                 Thread.currentThread().interrupt();
@@ -108,6 +173,85 @@ public class SynchronizedTicketPool implements TicketPool {
         return Optional.empty();
     }
 
+    @Override
+    public boolean awaitTickets(WorkerRole role, long timeoutMillis) throws InterruptedException {
+        return workerWaiters.await(role, () -> role.canProceed(this), TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+    }
+
+    @Override
+    public CompletableFuture<Ticket> purchaseTicketAsync() {
+        Ticket ticket = pollAvailable();
+        if (ticket != null) {
+            return CompletableFuture.completedFuture(ticket);
+        }
+        CompletableFuture<Ticket> future = asyncBuyers.register(TIME_OUT);
+        serveAsyncBuyers(); // a ticket may have come in before we were queued
+        return future;
+    }
+
+    //Take the next unsold ticket without waiting, null if there is none
+    private synchronized Ticket pollAvailable() {
+        Ticket ticket = tickets.poll();
+        if (ticket != null) {
+            recordSale(ticket);
+        }
+        return ticket;
+    }
+
+    //Called holding the monitor, once the ticket is out of tickets
+    private void recordSale(Ticket ticket) {
+        ticket.setSold(true);
+        soldLedger.archive(ticket);
+    }
+
+    //Called holding the monitor. Give a new ticket to a buyer parked in purchaseTicket, it never enters tickets.
+    private boolean handOff(Ticket ticket) {
+        return !ticket.isSold() && workerWaiters.handOff(ticket, () -> recordSale(ticket));
+    }
+
+    //Hand new tickets straight to queued async buyers. Never called while holding the monitor,
+    //so the buyers' callbacks do not run under it.
+    private void serveAsyncBuyers() {
+        if (asyncBuyers.hasWaiters()) {
+            asyncBuyers.drain(this::pollAvailable, this::putBackOnSale);
+        }
+    }
+
+    @Override
+    public synchronized List<Ticket> purchaseTickets(int count, Duration timeout) {
+        List<Ticket> purchased = new ArrayList<>(Math.max(count, 0));
+        if (count <= 0) {
+            return purchased;
+        }
+        long startTime = System.currentTimeMillis();
+        long totalTimeout = timeout.toMillis();
+
+        // Wait until the whole group can be served, a partial purchase is never made
+        while (tickets.size() < count) {
+            long remainingTime = totalTimeout - (System.currentTimeMillis() - startTime);
+            if (remainingTime <= 0) {
+                return purchased;
+            }
+            groupBuyersWaiting++;
+            try {
+                wait(remainingTime);
+            } catch (InterruptedException e) {
+                System.out.println(Thread.currentThread().getName() + " was interrupted during purchase.");
+                Thread.currentThread().interrupt();
+                return purchased;
+            } finally {
+                groupBuyersWaiting--;
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            Ticket ticket = tickets.poll();
+            recordSale(ticket);
+            purchased.add(ticket);
+        }
+        return purchased;
+    }
+
     @Override
     public synchronized void updateTicket(
             long ticketId,
@@ -116,34 +260,60 @@ public class SynchronizedTicketPool implements TicketPool {
             String newEventName
     ){
 
-        for (Ticket ticket : tickets) {
-            if(ticket.getTicketId() == ticketId) {
-                ticket.setPrice(newPrice);
-                ticket.setLocation(newLocation);
-                ticket.setEventName(newEventName);
-                System.out.println("Updated ticket: " + ticket.getTicketId() +
-                        " | New Price: " + newPrice +
-                        " | New Location: " + newLocation +
-                        " | New Event: " + newEventName);
-                notifyAll();
-                return;
+        Ticket ticket = tickets.get(ticketId);
+        if(ticket != null || soldLedger.update(ticketId, newPrice, newLocation, newEventName)) {
+            if (ticket != null) {
+                ticket.update(newPrice, newLocation, newEventName);
             }
+            System.out.println("Updated ticket: " + ticketId +
+                    " | New Price: " + newPrice +
+                    " | New Location: " + newLocation +
+                    " | New Event: " + newEventName);
+            return;
         }
         System.out.println("Failed to update ticket Ticket ID: " + ticketId + " not found");
     }
 
+    @Override
+    public synchronized Optional<Ticket> findTicket(long ticketId) {
+        Ticket ticket = tickets.get(ticketId);
+        return Optional.ofNullable(ticket != null ? ticket : soldLedger.find(ticketId)); // sold ones come back as a copy
+    }
+
     //Cancel Ticket by Consumer
     @Override
-    public synchronized void cancelTicket(Ticket ticket) {
-        if (ticket != null) {
-            ticket.setSold(false);
+    public void cancelTicket(Ticket ticket) {
+        if (putBackOnSale(ticket)) {
+            serveAsyncBuyers();
+        }
+    }
 
-            // Remove from sold tickets queue
-            this.soldTickets.remove(ticket);
+    //Restock and wake a parked worker; also gives back the ticket of an async buyer that timed out
+    private boolean putBackOnSale(Ticket ticket) {
+        if (!restock(ticket)) {
+            return false;
+        }
+        workerWaiters.ticketsAvailable(1);
+        return true;
+    }
+
+    //Put a sold ticket back on sale
+    private synchronized boolean restock(Ticket ticket) {
+        if (ticket != null && ticket.isSold() && soldLedger.restore(ticket)) {
+            ticket.setSold(false);
 
             // Add back to unsold tickets queue
-            tickets.offer(ticket);
+            tickets.add(ticket);
 
+            notifyGroupBuyers();
+            return true;
+        }
+        return false;
+    }
+
+    //Called holding the monitor. Nobody else waits on it any more, so skip the notify when no group is waiting.
+    private void notifyGroupBuyers() {
+        if (groupBuyersWaiting > 0) {
             notifyAll();
         }
     }
@@ -169,7 +339,7 @@ public class SynchronizedTicketPool implements TicketPool {
     //Get Total Sold Tickets
     @Override
     public synchronized int getSoldTicketCount() {
-        return this.soldTickets.size();
+        return soldLedger.size();
     }
 
     //close pool
@@ -180,14 +350,14 @@ public class SynchronizedTicketPool implements TicketPool {
 
     //Get All Tickets
     @Override
-    public List<Ticket> getAllTickets() {
-        List<Ticket> allTickets = new ArrayList<>(tickets);         // unsold tickets
-        allTickets.addAll(soldTickets);                        // add sold tickets
+    public synchronized List<Ticket> getAllTickets() {
+        List<Ticket> allTickets = tickets.toList();         // unsold tickets
+        soldLedger.addTo(allTickets);                          // add copies of the sold tickets
         return allTickets;
     }
 
-    public int getAllTicketsCount() {
-        return (tickets.size() + soldTickets.size());
+    public synchronized int getAllTicketsCount() {
+        return (tickets.size() + soldLedger.size());
     }
 
     //Print the Statistics
@@ -233,11 +403,31 @@ public class SynchronizedTicketPool implements TicketPool {
                 " | " + BOLD + "Percentage sold: " + RESET +
                 (percentageSold > 75 ? RED : percentageSold > 50 ? YELLOW : GREEN) +
                 String.format("%.2f%%", percentageSold) + RESET);
+        System.out.println("║ " + BOLD + "Hand-offs: " + RESET + workerWaiters.getHandOffs() +
+                " of " + workerWaiters.getHandOffAttempts() + " adds" +
+                " | " + BOLD + "Hit rate: " + RESET + String.format("%.2f%%", workerWaiters.getHandOffHitRate()));
+        System.out.println("║ " + BOLD + "Sold ledger: " + RESET + soldLedger.describe());
 
         System.out.println(BOLD + "╚══════════════════════════════════════════════════════╝" + RESET);
         System.out.println();
     }
 
+    //synchronized has no lock object to time, so wait and hold times per operation are sampled from thread dumps.
+    //Close the sampler to stop it.
+    public MonitorContentionSampler startContentionSampling(Duration interval) {
+        return new MonitorContentionSampler(this, interval);
+    }
+
+    @Override
+    public long getTicketIdHighWaterMark() {
+        return ticketIdCounter.get() - 1;
+    }
+
+    @Override
+    public void advanceTicketIds(long highWaterMark) {
+        ticketIdCounter.accumulateAndGet(highWaterMark + 1, Math::max);
+    }
+
     //Create Ticket
     public synchronized Ticket createTicket(
             String eventName,
@@ -2,7 +2,10 @@ package com.gayan.workers;
 
 import com.gayan.entities.Ticket;
 import com.gayan.entities.TicketPool;
+import com.gayan.entities.WorkerRole;
 
+import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
@@ -10,6 +13,8 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 public class Consumer implements Runnable{
     private static final ConcurrentHashMap<String, AtomicInteger> consumerTicketCount = new ConcurrentHashMap<>();
+    private static final Duration BATCH_TIMEOUT = Duration.ofSeconds(5);
+    private static final long IDLE_WAIT_MILLIS = 1000; //park in the buyers' queue this long before trying again
 
     private int counter = 0;
     private int cancelCount = 0;
@@ -20,6 +25,7 @@ public class Consumer implements Runnable{
     //This is created to mainly simulate the real world allowing to do stress testing
     private static final ThreadLocalRandom random = ThreadLocalRandom.current();
     private final boolean simulateCancel; //configuration
+    private final int batchSize; //configuration, seats bought together per purchase (group buyers)
 
     private volatile boolean running = true; //Dynamically remove the consumer
 
@@ -28,27 +34,38 @@ public class Consumer implements Runnable{
         this.purchaseRateAtMillis = purchaseRateAtMillis;
         this.purchaseLimit = purchaseLimit;
         this.simulateCancel = false;
+        this.batchSize = 1;
     }
 
     public Consumer(TicketPool ticketPool, int purchaseLimit, int purchaseRateAtMillis, boolean simulateCancel) {
+        this(ticketPool, purchaseLimit, purchaseRateAtMillis, simulateCancel, 1);
+    }
+
+    public Consumer(TicketPool ticketPool, int purchaseLimit, int purchaseRateAtMillis, boolean simulateCancel, int batchSize) {
         this.ticketPool = ticketPool;
         this.purchaseLimit = purchaseLimit;
         this.purchaseRateAtMillis = purchaseRateAtMillis;
         this.simulateCancel = simulateCancel;
+        this.batchSize = Math.max(1, batchSize);
     }
 
     @Override
     public void run() {
         while (running && counter < purchaseLimit) {
             try {
-                Optional<Ticket> optionalTicket;
-                synchronized (ticketPool) {
-                    while ((optionalTicket = ticketPool.purchaseTicket()).isEmpty()) {
-                        ticketPool.wait();  // 💤 wait until Producer notifies
+                int batch = Math.min(batchSize, purchaseLimit - counter);
+                if (batch == 1) {
+                    Optional<Ticket> optionalTicket;
+                    while ((optionalTicket = ticketPool.purchaseTicket()).isEmpty() && running) {
+                        ticketPool.awaitTickets(WorkerRole.BUYER, IDLE_WAIT_MILLIS);  // 💤 park until a Producer adds a ticket for us
                     }
-                }
 
-                optionalTicket.ifPresent(this::handleTicket);
+                    optionalTicket.ifPresent(this::handleTicket);
+                } else {
+                    // Group purchase waits inside the pool for the whole group, so no monitor wait here
+                    List<Ticket> tickets = ticketPool.purchaseTickets(batch, BATCH_TIMEOUT);
+                    tickets.forEach(this::handleTicket);
+                }
                 Thread.sleep(purchaseRateAtMillis);
 
             } catch (InterruptedException e) {
@@ -57,7 +74,7 @@ public class Consumer implements Runnable{
                 break;
             }
         }
-        printConsumerSummary();
+        printOwnSummary();
     }
 
     private void handleTicket(Ticket ticket) {
@@ -92,6 +109,13 @@ public class Consumer implements Runnable{
         running = false;
     }
 
+    //One line per consumer on exit, the full table is O(consumers) and is printed on demand only
+    private void printOwnSummary() {
+        String name = Thread.currentThread().getName();
+        AtomicInteger purchased = consumerTicketCount.get(name);
+        System.out.printf("%-20s | %-10d\n", name, purchased == null ? 0 : purchased.get());
+    }
+
     public static void printConsumerSummary() {
         System.out.println("\n--- Consumer Ticket Purchase Summary ---");
         System.out.printf("%-20s | %-10s\n", "Consumer Name", "Tickets Purchased");
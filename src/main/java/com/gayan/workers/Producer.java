@@ -3,6 +3,8 @@ package com.gayan.workers;
 import com.gayan.entities.Ticket;
 import com.gayan.entities.TicketPool;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -15,6 +17,7 @@ public class Producer implements Runnable {
     private final TicketPool ticketPool;
     private final int creationRateAtMillis; //configuration
     private final int maxNoOfTickets; //configuration
+    private final int batchSize; //configuration, tickets handed to the pool per addTickets call
 
     private volatile boolean running = true; //to stop the producer dynamically
 
@@ -32,9 +35,22 @@ public class Producer implements Runnable {
             String vendorName,
             String location,
             double price) {
+        this(ticketPool, creationRateAtMillis, maxNoOfTickets, eventName, vendorName, location, price, 1);
+    }
+
+    public Producer(
+            TicketPool ticketPool,
+            int creationRateAtMillis,
+            int maxNoOfTickets,
+            String eventName,
+            String vendorName,
+            String location,
+            double price,
+            int batchSize) {
         this.ticketPool = ticketPool;
         this.creationRateAtMillis = creationRateAtMillis;
         this.maxNoOfTickets = maxNoOfTickets;
+        this.batchSize = Math.max(1, batchSize);
         this.eventName = eventName;
         this.vendorName = vendorName;
         this.location = location;
@@ -45,12 +61,28 @@ public class Producer implements Runnable {
     public void run() {
         int retryCount = 0;
         final int maxRetries = 3;
+        List<Ticket> pending = new ArrayList<>(batchSize); //created but not taken by a full pool, retried before new ones
 
         while(running && ticketCounter < maxNoOfTickets) {
             try{
-                Ticket ticket = ticketPool.createTicket(eventName, vendorName, location, price);
-                boolean result = ticketPool.addTicket(ticket);
-                if(!result) {
+                int batch = Math.min(batchSize, maxNoOfTickets - ticketCounter);
+                while (pending.size() < batch) {
+                    pending.add(ticketPool.createTicket(eventName, vendorName, location, price));
+                }
+                int added;
+                if (batch == 1) {
+                    added = ticketPool.addTicket(pending.get(0)) ? 1 : 0;
+                } else {
+                    added = ticketPool.addTickets(pending);
+                }
+                // Pools add in order and stop when full, so the rest are kept for the retry
+                pending.subList(0, added).clear();
+                ticketCounter += added;
+                if (added > 0) {
+                    vendorTicketCount.computeIfAbsent(vendorName, k -> new AtomicInteger(0)).addAndGet(added);
+                }
+
+                if(added < batch) {
                     retryCount++;
                     if(retryCount >= maxRetries) {
                         retryCount = 0;
@@ -61,9 +93,6 @@ public class Producer implements Runnable {
 
                 }
 
-                ticketCounter++;
-                vendorTicketCount.computeIfAbsent(vendorName, k -> new AtomicInteger(0)).incrementAndGet();
-
                 Thread.sleep(creationRateAtMillis);
             }catch (InterruptedException e){
                 System.out.println(Thread.currentThread().getName() + " interrupted.");
@@ -1,9 +1,12 @@
 package com.gayan.workers;
 
 import com.gayan.entities.TicketPool;
+import com.gayan.entities.WorkerRole;
 
 public class Reader implements Runnable{
 
+    private static final long IDLE_WAIT_MILLIS = 1000; //park in the readers' queue this long before checking again
+
     private int counter = 0;
     private final TicketPool ticketPool;
     private final int readRateAtMillis;
@@ -20,11 +23,9 @@ public class Reader implements Runnable{
     public void run() {
         while (running && counter < maxReadAttempts) {
             try {
-                synchronized (ticketPool) {
-                    // If pool is empty, wait until producer adds and notifies
-                    while (ticketPool.getCurrentSize() == 0) {
-                        ticketPool.wait(); // 💤 wait until Producer notifies
-                    }
+                // If pool is empty, park in the readers' queue until a producer adds
+                while (ticketPool.getCurrentSize() == 0) {
+                    ticketPool.awaitTickets(WorkerRole.READER, IDLE_WAIT_MILLIS); // 💤 wait until Producer wakes us
                 }
 
                 counter++;
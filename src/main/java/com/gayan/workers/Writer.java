@@ -2,6 +2,7 @@ package com.gayan.workers;
 
 import com.gayan.entities.Ticket;
 import com.gayan.entities.TicketPool;
+import com.gayan.entities.WorkerRole;
 
 import java.util.Optional;
 import java.util.concurrent.ThreadLocalRandom;
@@ -9,6 +10,8 @@ import java.util.concurrent.ThreadLocalRandom;
 //This is like an admin in a system for maintenance
 public class Writer implements Runnable{
 
+    private static final long IDLE_WAIT_MILLIS = 1000; //park in the writers' queue this long before checking again
+
     private final TicketPool ticketPool;
     private int updateCounter = 0;
     private final int updateAtRateMillis;
@@ -47,10 +50,8 @@ public class Writer implements Runnable{
         while (running && updateCounter < maxUpdateAttempts) {
             try {
                 Optional<Ticket> optionalTicket;
-                synchronized (ticketPool) {
-                    while ((optionalTicket = ticketPool.getRandomAvailableTicket()).isEmpty()) {
-                        ticketPool.wait(); // 👈 Wait until Producer notifies
-                    }
+                while ((optionalTicket = ticketPool.getRandomAvailableTicket()).isEmpty()) {
+                    ticketPool.awaitTickets(WorkerRole.WRITER, IDLE_WAIT_MILLIS); // 👈 Wait until Producer wakes us
                 }
                 // Now you have a ticket to update
                 Ticket ticket = optionalTicket.get();
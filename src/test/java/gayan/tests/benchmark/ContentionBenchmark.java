@@ -0,0 +1,170 @@
+package gayan.tests.benchmark;
+
+import com.gayan.entities.Ticket;
+import com.gayan.entities.TicketPool;
+import gayan.tests.utilz.TestUtilz;
+import gayan.tests.utilz.TestUtilz.PoolType;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Producers, consumers, readers and writers hitting one pool at the same time, each role as its own JMH
+ * thread group, so the results give a throughput per role and show which one a pool holds back.
+ * Each role does what its worker does per cycle, without the worker's sleeps.
+ *
+ * Two mixes by default: "mixed" (producer:consumer:reader:writer = 1:16:4:1) and "balanced" (8 producers,
+ * 8 consumers). Other ratios with -tg, which lists thread counts in method name order within the group:
+ * -tg 2,8,4,1 on mixed is 2 consumers, 8 producers, 4 readers, 1 writer. Allocation rate comes from the GC
+ * profiler, which BenchmarkRunner turns on unless another profiler is asked for.
+ *
+ * Producers skip a full pool and consumers an empty one instead of waiting the pool's TIME_OUT, otherwise
+ * threads parked when an iteration ends would hold it up by seconds. The skips are counted in RoleCounters.
+ */
+@Fork(1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ContentionBenchmark {
+
+    @State(Scope.Group)
+    public static class PoolState {
+
+        @Param
+        public PoolType poolType;
+
+        @Param({"1000", "100000"})
+        public int poolSize;
+
+        TicketPool pool;
+
+        //A fresh half full pool each iteration, so the sold tickets of the last one do not pile up
+        @Setup(Level.Iteration)
+        public void setUp() {
+            pool = TestUtilz.createTicketPool(poolType, poolSize);
+            List<Ticket> tickets = new ArrayList<>(poolSize / 2);
+            for (int i = 0; i < poolSize / 2; i++) {
+                tickets.add(newTicket(pool, i));
+            }
+            pool.addTickets(tickets);
+        }
+    }
+
+    //Per thread, summed per role in the results: the calls that did something and the ones that were skipped
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class RoleCounters {
+        public long added;
+        public long poolFull;
+        public long purchased;
+        public long soldOut;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            added = 0;
+            poolFull = 0;
+            purchased = 0;
+            soldOut = 0;
+        }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public boolean producer(PoolState state, RoleCounters counters) {
+        return produce(state, counters);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(16)
+    public Optional<Ticket> consumer(PoolState state, RoleCounters counters) {
+        return consume(state, counters);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(4)
+    public int reader(PoolState state) {
+        // The Reader's size check each cycle, and the counters its status report reads
+        TicketPool pool = state.pool;
+        return pool.getCurrentSize() + pool.getAvailableTicketCount() + pool.getSoldTicketCount();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public Optional<Ticket> writer(PoolState state) {
+        Optional<Ticket> ticket = state.pool.getRandomAvailableTicket();
+        ticket.ifPresent(t -> state.pool.updateTicket(t.getTicketId(),
+                ThreadLocalRandom.current().nextDouble(50.0, 300.0), "Benchmark Location", "Benchmark Event"));
+        return ticket;
+    }
+
+    @Benchmark
+    @Group("balanced")
+    @GroupThreads(8)
+    public boolean balancedProducer(PoolState state, RoleCounters counters) {
+        return produce(state, counters);
+    }
+
+    @Benchmark
+    @Group("balanced")
+    @GroupThreads(8)
+    public Optional<Ticket> balancedConsumer(PoolState state, RoleCounters counters) {
+        return consume(state, counters);
+    }
+
+    private static boolean produce(PoolState state, RoleCounters counters) {
+        TicketPool pool = state.pool;
+        if (pool.getAvailableTicketCount() >= pool.getCapacity()) {
+            counters.poolFull++;
+            return false;
+        }
+        boolean added = pool.addTicket(newTicket(pool, (int) counters.added));
+        if (added) {
+            counters.added++;
+        }
+        return added;
+    }
+
+    private static Optional<Ticket> consume(PoolState state, RoleCounters counters) {
+        TicketPool pool = state.pool;
+        if (pool.getAvailableTicketCount() == 0) {
+            counters.soldOut++;
+            return Optional.empty();
+        }
+        Optional<Ticket> ticket = pool.purchaseTicket();
+        if (ticket.isPresent()) {
+            counters.purchased++;
+        } else {
+            counters.soldOut++;
+        }
+        return ticket;
+    }
+
+    private static Ticket newTicket(TicketPool pool, int i) {
+        return pool.createTicket("Benchmark Event " + (i % 16), "Benchmark Vendor", "Benchmark Location",
+                100.0 + (i % 100));
+    }
+}
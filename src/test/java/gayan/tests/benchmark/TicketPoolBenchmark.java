@@ -0,0 +1,214 @@
+package gayan.tests.benchmark;
+
+import com.gayan.entities.Ticket;
+import com.gayan.entities.TicketPool;
+import gayan.tests.utilz.TestUtilz;
+import gayan.tests.utilz.TestUtilz.PoolType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for every TicketPool operation, over each PoolType and pool size.
+ *
+ * addTicket, purchaseTicket and cancelTicket change the pool, so they run in batches of BATCH calls
+ * (SingleShotTime, the score is per batch): the pool is built once per trial and put back the way it was
+ * after each batch, outside the measured time. The rest leave the pool as it is and are measured per call.
+ *
+ * Run from the benchmarks jar (mvn -P benchmarks -DskipTests package, then java -jar target/benchmarks.jar),
+ * see BenchmarkRunner.
+ */
+@Fork(1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TicketPoolBenchmark {
+
+    static final int BATCH = 100; //pool changing calls per measured batch
+
+    @State(Scope.Benchmark)
+    public static class PoolState {
+
+        @Param
+        public PoolType poolType;
+
+        @Param({"100", "10000", "1000000"})
+        public int poolSize;
+
+        TicketPool pool;
+        long[] ticketIds;
+
+        //A pool holding poolSize unsold tickets, with room for one more batch
+        @Setup(Level.Trial)
+        public void setUp() {
+            pool = TestUtilz.createTicketPool(poolType, poolSize + BATCH);
+            ticketIds = fill(pool, poolSize);
+        }
+    }
+
+    //Tickets waiting to be added by the next batch
+    @State(Scope.Benchmark)
+    public static class AddState {
+        final List<Ticket> tickets = new ArrayList<>(BATCH);
+        int next;
+
+        @Setup(Level.Iteration)
+        public void setUp(PoolState state) {
+            tickets.clear();
+            for (int i = 0; i < BATCH; i++) {
+                tickets.add(newTicket(state.pool, i));
+            }
+            next = 0;
+        }
+
+        //Sell what was added so the next batch finds the same free room
+        @TearDown(Level.Iteration)
+        public void tearDown(PoolState state) {
+            for (int i = 0; i < next; i++) {
+                state.pool.purchaseTicket();
+            }
+        }
+    }
+
+    //Tickets bought by the last batch, cancelled back once it is done
+    @State(Scope.Benchmark)
+    public static class PurchaseState {
+        final List<Ticket> bought = new ArrayList<>(BATCH);
+
+        @TearDown(Level.Iteration)
+        public void tearDown(PoolState state) {
+            for (Ticket ticket : bought) {
+                state.pool.cancelTicket(ticket);
+            }
+            bought.clear();
+        }
+    }
+
+    //BATCH sold tickets for the next batch to cancel
+    @State(Scope.Benchmark)
+    public static class CancelState {
+        final List<Ticket> sold = new ArrayList<>(BATCH);
+        int next;
+
+        @Setup(Level.Iteration)
+        public void setUp(PoolState state) {
+            sold.clear();
+            for (int i = 0; i < BATCH; i++) {
+                sold.add(state.pool.purchaseTicket().orElseThrow());
+            }
+            next = 0;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 20, batchSize = BATCH)
+    @Measurement(iterations = 50, batchSize = BATCH)
+    public boolean addTicket(PoolState state, AddState add) {
+        return state.pool.addTicket(add.tickets.get(add.next++));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 20, batchSize = BATCH)
+    @Measurement(iterations = 50, batchSize = BATCH)
+    public Optional<Ticket> purchaseTicket(PoolState state, PurchaseState purchase) {
+        Optional<Ticket> ticket = state.pool.purchaseTicket();
+        ticket.ifPresent(purchase.bought::add);
+        return ticket;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 20, batchSize = BATCH)
+    @Measurement(iterations = 50, batchSize = BATCH)
+    public void cancelTicket(PoolState state, CancelState cancel) {
+        state.pool.cancelTicket(cancel.sold.get(cancel.next++));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public void updateTicket(PoolState state) {
+        long ticketId = state.ticketIds[ThreadLocalRandom.current().nextInt(state.ticketIds.length)];
+        state.pool.updateTicket(ticketId, 150.0, "Benchmark Location", "Benchmark Event");
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public Optional<Ticket> getRandomAvailableTicket(PoolState state) {
+        return state.pool.getRandomAvailableTicket();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public int getAvailableTicketCount(PoolState state) {
+        return state.pool.getAvailableTicketCount();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public int getSoldTicketCount(PoolState state) {
+        return state.pool.getSoldTicketCount();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public int getAllTicketsCount(PoolState state) {
+        return state.pool.getAllTicketsCount();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public int getCurrentSize(PoolState state) {
+        return state.pool.getCurrentSize();
+    }
+
+    //Loads the pool in blocks, returns the IDs it was given
+    private static long[] fill(TicketPool pool, int count) {
+        long[] ids = new long[count];
+        List<Ticket> block = new ArrayList<>(10_000);
+        for (int i = 0; i < count; i++) {
+            Ticket ticket = newTicket(pool, i);
+            ids[i] = ticket.getTicketId();
+            block.add(ticket);
+            if (block.size() == 10_000 || i == count - 1) {
+                pool.addTickets(block);
+                block.clear();
+            }
+        }
+        return ids;
+    }
+
+    //A handful of names only, so filling a million tickets does not grow the attribute dictionary
+    private static Ticket newTicket(TicketPool pool, int i) {
+        return pool.createTicket("Benchmark Event " + (i % 16), "Benchmark Vendor", "Benchmark Location",
+                100.0 + (i % 100));
+    }
+}
@@ -2,20 +2,55 @@ package gayan.tests.correctness;
 
 import com.gayan.entities.Ticket;
 import com.gayan.entities.TicketPool;
+import com.gayan.entities.WorkerRole;
+import com.gayan.utilz.AttributeDictionary;
+import com.gayan.utilz.AvailableTickets;
+import com.gayan.utilz.InstrumentedLock;
+import com.gayan.utilz.LatencyHistogram;
+import com.gayan.utilz.LongIntMap;
+import com.gayan.utilz.MonitorContentionSampler;
+import com.gayan.utilz.SoldTicketLedger;
+import com.gayan.utilz.TicketColumns;
+import com.gayan.utilz.WorkerWaitQueues;
+import com.gayan.versions.BlockingQueueTicketPool;
+import com.gayan.versions.CheckpointingTicketPool;
+import com.gayan.versions.InstrumentedTicketPool;
+import com.gayan.versions.JournaledTicketPool;
+import com.gayan.versions.ManagedTicketPool;
+import com.gayan.versions.OffHeapTicketPool;
 import com.gayan.versions.ReentrantLockTicketPool;
+import com.gayan.versions.SynchronizedTicketPool;
 import gayan.tests.BaseTestConfig;
 import gayan.tests.utilz.TestUtilz;
 
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.EnumSource;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.RuntimeMBeanException;
+import javax.management.openmbean.TabularData;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.HashSet;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -84,6 +119,812 @@ public class CorrectnessTest extends BaseTestConfig {
         assertEquals("Updated Concert", updatedTicket.getEventName(), "Event name should be updated");
     }
 
+    @ParameterizedTest
+    @EnumSource(TestUtilz.PoolType.class)
+    @DisplayName("Test find ticket by ID")
+    void testFindTicketById(TestUtilz.PoolType poolType) {
+        TicketPool pool = TestUtilz.createTicketPool(poolType, 100);
+        List<Ticket> tickets = TestUtilz.createTestTickets(pool, 50);
+        tickets.forEach(pool::addTicket);
+
+        Ticket sold = pool.purchaseTicket().orElseThrow();
+
+        for (Ticket ticket : tickets) {
+            assertEquals(ticket.getTicketId(), pool.findTicket(ticket.getTicketId()).map(Ticket::getTicketId).orElse(-1L), "Ticket should be found by its ID");
+            if (ticket.getTicketId() != sold.getTicketId() && TestUtilz.sharesTicketObjects(poolType)) {
+                assertSame(ticket, pool.findTicket(ticket.getTicketId()).get(), "Unsold ticket should be the pooled object");
+            }
+        }
+        assertTrue(pool.findTicket(sold.getTicketId()).get().isSold(), "Sold ticket should still be found");
+        assertFalse(pool.findTicket(-1).isPresent(), "Unknown ID should not be found");
+
+        pool.cancelTicket(sold);
+        pool.updateTicket(sold.getTicketId(), 10.0, "Paris", "Cancelled Concert");
+        assertEquals(10.0, pool.findTicket(sold.getTicketId()).get().getPrice(), "Cancelled ticket should still be updatable");
+    }
+
+    @ParameterizedTest
+    @EnumSource(TestUtilz.PoolType.class)
+    @DisplayName("Test batch add and group purchase")
+    void testBatchAddAndGroupPurchase(TestUtilz.PoolType poolType) {
+        TicketPool pool = TestUtilz.createTicketPool(poolType, 100);
+        List<Ticket> tickets = TestUtilz.createTestTickets(pool, 20);
+
+        assertEquals(20, pool.addTickets(tickets), "Whole batch should be added");
+        assertEquals(20, pool.getAvailableTicketCount(), "All batch tickets should be available");
+
+        List<Ticket> group = pool.purchaseTickets(8, Duration.ofSeconds(1));
+        assertEquals(8, group.size(), "Group should get all of its seats");
+        assertTrue(group.stream().allMatch(Ticket::isSold), "Group tickets should be marked as sold");
+        assertEquals(8, group.stream().distinct().count(), "Group tickets should all be different");
+        assertEquals(12, pool.getAvailableTicketCount(), "Remaining tickets should be available");
+        assertEquals(8, pool.getSoldTicketCount(), "Group tickets should be counted as sold");
+
+        // Not enough left for this group, nothing should be taken
+        List<Ticket> tooBig = pool.purchaseTickets(13, Duration.ofMillis(200));
+        assertTrue(tooBig.isEmpty(), "Group purchase should be all or nothing");
+        assertEquals(12, pool.getAvailableTicketCount(), "Failed group purchase should not take any ticket");
+    }
+
+    @ParameterizedTest
+    @EnumSource(TestUtilz.PoolType.class)
+    @DisplayName("Test async purchase completes when tickets are added")
+    void testAsyncPurchase(TestUtilz.PoolType poolType) throws Exception {
+        TicketPool pool = TestUtilz.createTicketPool(poolType, DEFAULT_CAPACITY);
+
+        List<CompletableFuture<Ticket>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(pool.purchaseTicketAsync());
+        }
+        assertTrue(futures.stream().noneMatch(CompletableFuture::isDone), "Nothing to buy yet, futures should be pending");
+
+        TestUtilz.createTestTickets(pool, 5).forEach(pool::addTicket);
+
+        Set<Ticket> received = new HashSet<>();
+        for (CompletableFuture<Ticket> future : futures) {
+            Ticket ticket = future.get(2, TimeUnit.SECONDS);
+            assertTrue(ticket.isSold(), "Async ticket should be marked as sold");
+            received.add(ticket);
+        }
+        assertEquals(5, received.size(), "Each async buyer should get a different ticket");
+        assertEquals(0, pool.getAvailableTicketCount(), "All tickets should have gone to async buyers");
+        assertEquals(5, pool.getSoldTicketCount(), "Async purchases should be counted as sold");
+    }
+
+    @ParameterizedTest
+    @EnumSource(TestUtilz.PoolType.class)
+    @DisplayName("Test ticket added while a buyer waits is handed over and counted as sold")
+    void testHandOffToWaitingBuyer(TestUtilz.PoolType poolType) throws InterruptedException {
+        TicketPool pool = TestUtilz.createTicketPool(poolType, DEFAULT_CAPACITY);
+        AtomicReference<Optional<Ticket>> bought = new AtomicReference<>();
+
+        Thread buyer = new Thread(() -> bought.set(pool.purchaseTicket()), "HandOffBuyer");
+        buyer.start();
+        // Wait until the buyer is parked inside purchaseTicket
+        long waitUntil = System.currentTimeMillis() + 2000;
+        while (buyer.getState() != Thread.State.TIMED_WAITING && System.currentTimeMillis() < waitUntil) {
+            Thread.sleep(5);
+        }
+
+        Ticket ticket = TestUtilz.createTestTickets(pool, 1).get(0);
+        assertTrue(pool.addTicket(ticket), "Ticket should be added");
+        buyer.join(TimeUnit.SECONDS.toMillis(TEST_TIMEOUT_SECONDS));
+
+        assertNotNull(bought.get(), "Buyer should have returned");
+        assertEquals(ticket, bought.get().orElse(null), "Waiting buyer should get the added ticket");
+        assertTrue(ticket.isSold(), "Handed over ticket should be marked as sold");
+        assertEquals(0, pool.getAvailableTicketCount(), "Handed over ticket should not be available");
+        assertEquals(1, pool.getSoldTicketCount(), "Handed over ticket should be counted as sold");
+        // Pools with a sold-ticket ledger hand back an archived copy, so compare by ID
+        assertEquals(ticket.getTicketId(), pool.findTicket(ticket.getTicketId()).map(Ticket::getTicketId).orElse(-1L), "Handed over ticket should be indexed");
+        assertTrue(pool.findTicket(ticket.getTicketId()).get().isSold(), "Handed over ticket should be found as sold");
+    }
+
+    @Test
+    @DisplayName("Test the off-heap pool refuses a ticket ID it already holds")
+    void testOffHeapRefusesStoredTicketId() {
+        // Arrange - one ticket sold, so its ID is only in the sold ledger
+        OffHeapTicketPool pool = new OffHeapTicketPool(DEFAULT_CAPACITY);
+        Ticket first = pool.createTicket("Event", "Vendor", "Location", 10.0);
+        assertTrue(pool.addTicket(first), "Ticket should be added");
+        assertEquals(first.getTicketId(), pool.purchaseTicket().orElseThrow().getTicketId(), "Ticket should be sold");
+        Ticket copy = new Ticket(first.getTicketId(), "Event", "Vendor", "Location", 10.0);
+
+        // Act
+        boolean readded = pool.addTicket(copy);
+        Ticket next = pool.createTicket("Event", "Vendor", "Location", 10.0);
+        int added = pool.addTickets(List.of(next, copy, pool.createTicket("Event", "Vendor", "Location", 10.0)));
+
+        // Assert
+        assertFalse(readded, "A stored ID should not be added again");
+        assertEquals(1, added, "A batch should stop at the stored ID");
+        assertEquals(1, pool.getAvailableTicketCount(), "Only the new ticket should be on sale");
+        assertEquals(next.getTicketId(), pool.purchaseTicket().orElseThrow().getTicketId(), "The sold ID should not be sold again");
+        assertEquals(2, pool.getAllTicketsCount(), "Each ID should be counted once");
+        assertEquals(pool.getAllTicketsCount(), pool.getAllTickets().size(), "Listing and count should agree");
+    }
+
+    @Test
+    @DisplayName("Test hand-off passes over a buyer waiting in awaitTickets")
+    void testHandOffSkipsNonReceivingWaiter() throws InterruptedException {
+        WorkerWaitQueues queues = new WorkerWaitQueues();
+        AtomicReference<Ticket> handedOver = new AtomicReference<>();
+        Thread awaiting = new Thread(() -> {
+            try {
+                queues.await(WorkerRole.BUYER, () -> false, TimeUnit.SECONDS.toNanos(TEST_TIMEOUT_SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "AwaitingBuyer");
+        awaiting.start();
+        while (!queues.hasWaiters(WorkerRole.BUYER)) {
+            Thread.sleep(5);
+        }
+        Thread buyer = new Thread(() -> {
+            try {
+                handedOver.set(queues.awaitHandOff(() -> false, TimeUnit.SECONDS.toNanos(TEST_TIMEOUT_SECONDS)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "HandOffBuyer");
+        buyer.start();
+        long waitUntil = System.currentTimeMillis() + 2000;
+        while (buyer.getState() != Thread.State.TIMED_WAITING && System.currentTimeMillis() < waitUntil) {
+            Thread.sleep(5);
+        }
+
+        Ticket ticket = new Ticket(1, "Event", "Vendor", "Hall", 10.0);
+        assertTrue(queues.handOff(ticket, () -> {}), "The buyer behind the awaiting one should take the ticket");
+        buyer.join(TimeUnit.SECONDS.toMillis(TEST_TIMEOUT_SECONDS));
+        assertEquals(ticket, handedOver.get(), "The hand-off buyer should get the ticket");
+        assertTrue(awaiting.isAlive(), "The awaiting buyer should stay queued");
+
+        queues.signal(WorkerRole.BUYER, 1);
+        awaiting.join(TimeUnit.SECONDS.toMillis(TEST_TIMEOUT_SECONDS));
+        assertFalse(awaiting.isAlive(), "A signal should still reach the awaiting buyer");
+    }
+
+    @ParameterizedTest
+    @EnumSource(TestUtilz.PoolType.class)
+    @DisplayName("Test journaled pool replays adds, purchases, cancels and updates into a new pool")
+    void testJournalReplay(TestUtilz.PoolType poolType) throws IOException {
+        Path journalFile = Files.createTempFile("ticket-journal", ".bin");
+        try {
+            List<Ticket> tickets;
+            Ticket updated;
+            try (JournaledTicketPool pool = new JournaledTicketPool(TestUtilz.createTicketPool(poolType, DEFAULT_CAPACITY), journalFile)) {
+                tickets = TestUtilz.createTestTickets(pool, 10);
+                assertEquals(8, pool.addTickets(tickets.subList(0, 8)), "Batch should be added");
+                assertTrue(pool.addTicket(tickets.get(8)), "Ticket should be added");
+                assertTrue(pool.addTicket(tickets.get(9)), "Ticket should be added");
+
+                List<Ticket> bought = pool.purchaseTickets(3, Duration.ofSeconds(1));
+                assertEquals(3, bought.size(), "Group purchase should succeed");
+                Ticket single = pool.purchaseTicket().orElseThrow();
+                pool.cancelTicket(bought.get(0));
+
+                updated = single;
+                pool.updateTicket(updated.getTicketId(), 250.0, "New Location", "New Event");
+                assertTrue(pool.getJournal().getCommitCount() > 0, "Journal should have been committed");
+            }
+
+            TicketPool restoredPool = TestUtilz.createTicketPool(poolType, DEFAULT_CAPACITY);
+            List<Ticket> restored = JournaledTicketPool.replay(journalFile, restoredPool);
+
+            assertEquals(10, restored.size(), "Every journaled ticket should be restored");
+            assertEquals(7, restoredPool.getAvailableTicketCount(), "Cancelled ticket should be on sale again");
+            assertEquals(3, restoredPool.getSoldTicketCount(), "Sold tickets should stay sold");
+            Ticket restoredUpdate = restoredPool.findTicket(updated.getTicketId()).orElseThrow();
+            assertTrue(restoredUpdate.isSold(), "Purchased ticket should be restored as sold");
+            assertEquals(250.0, restoredUpdate.getPrice(), "Update should be replayed");
+            assertEquals("New Location", restoredUpdate.getLocation(), "Update should be replayed");
+            assertEquals("New Event", restoredUpdate.getEventName(), "Update should be replayed");
+
+            // Reopening continues the journal and the ticket IDs
+            try (JournaledTicketPool reopened = new JournaledTicketPool(TestUtilz.createTicketPool(poolType, DEFAULT_CAPACITY), journalFile)) {
+                assertEquals(10, reopened.getAllTicketsCount(), "Reopened pool should replay the journal");
+                long highestId = tickets.stream().mapToLong(Ticket::getTicketId).max().orElse(0);
+                assertTrue(reopened.createTicket("E", "V", "L", 1.0).getTicketId() > highestId, "New IDs should not reuse journaled ones");
+            }
+        } finally {
+            Files.deleteIfExists(journalFile);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(TestUtilz.PoolType.class)
+    @DisplayName("Test journal skips refused cancels, keeps long names and compacts to the pool's state")
+    void testJournalCompaction(TestUtilz.PoolType poolType) throws IOException, InterruptedException {
+        Path journalFile = Files.createTempFile("ticket-journal", ".bin");
+        String longName = "E".repeat(70_000); // past what a short length prefix can hold
+        try {
+            Ticket renamed;
+            long sizeBefore;
+            try (JournaledTicketPool pool = new JournaledTicketPool(TestUtilz.createTicketPool(poolType, DEFAULT_CAPACITY), journalFile, 0, 50)) {
+                List<Ticket> tickets = TestUtilz.createTestTickets(pool, 10);
+                assertEquals(10, pool.addTickets(tickets), "Batch should be added");
+                long records = pool.getJournal().getRecordCount();
+                pool.cancelTicket(tickets.get(0)); // never sold, the pool refuses it
+                assertEquals(records, pool.getJournal().getRecordCount(), "A refused cancel should not be journaled");
+
+                renamed = pool.purchaseTicket().orElseThrow();
+                pool.updateTicket(renamed.getTicketId(), 99.0, "Hall", longName);
+                for (int i = 0; i < 30; i++) {
+                    Ticket bought = pool.purchaseTicket().orElseThrow();
+                    if (bought.getTicketId() != renamed.getTicketId()) {
+                        pool.cancelTicket(bought);
+                    }
+                }
+                // Compaction runs on a background thread, give it a moment
+                long waitUntil = System.currentTimeMillis() + 2000;
+                while (pool.getJournal().getRewriteCount() == 0 && System.currentTimeMillis() < waitUntil) {
+                    Thread.sleep(5);
+                }
+                assertTrue(pool.getJournal().getRewriteCount() > 0, "The journal should have been compacted");
+                sizeBefore = Files.size(journalFile);
+                pool.compact();
+                assertTrue(Files.size(journalFile) <= sizeBefore, "Compaction should not grow the journal");
+            }
+
+            TicketPool restoredPool = TestUtilz.createTicketPool(poolType, DEFAULT_CAPACITY);
+            List<Ticket> restored = JournaledTicketPool.replay(journalFile, restoredPool);
+            assertEquals(10, restored.size(), "Every ticket should survive compaction");
+            assertEquals(1, restoredPool.getSoldTicketCount(), "Only the renamed ticket should stay sold");
+            Ticket restoredRename = restoredPool.findTicket(renamed.getTicketId()).orElseThrow();
+            assertTrue(restoredRename.isSold(), "Sold state should survive compaction");
+            assertEquals(longName, restoredRename.getEventName(), "A long name should be journaled whole");
+        } finally {
+            Files.deleteIfExists(journalFile);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(TestUtilz.PoolType.class)
+    @DisplayName("Test snapshot and restore keep tickets, sold state and ticket IDs")
+    void testSnapshotRestore(TestUtilz.PoolType poolType) throws IOException {
+        Path snapshotFile = Files.createTempFile("ticket-snapshot", ".bin");
+        try {
+            TicketPool pool = TestUtilz.createTicketPool(poolType, DEFAULT_CAPACITY);
+            List<Ticket> tickets = TestUtilz.createTestTickets(pool, 20);
+            assertEquals(20, pool.addTickets(tickets), "Batch should be added");
+            List<Ticket> bought = pool.purchaseTickets(5, Duration.ofSeconds(1));
+            assertEquals(5, bought.size(), "Group purchase should succeed");
+            pool.createTicket("Unused", "Vendor", "Location", 1.0); // moves the high-water mark past the last added ticket
+            long highWaterMark = pool.getTicketIdHighWaterMark();
+
+            pool.snapshot(snapshotFile);
+
+            TicketPool restoredPool = TestUtilz.createTicketPool(poolType, DEFAULT_CAPACITY);
+            assertEquals(20, restoredPool.restore(snapshotFile), "Every ticket should be restored");
+            assertEquals(15, restoredPool.getAvailableTicketCount(), "Unsold tickets should be available");
+            assertEquals(5, restoredPool.getSoldTicketCount(), "Sold tickets should stay sold");
+            for (Ticket added : tickets) {
+                Ticket ticket = pool.findTicket(added.getTicketId()).orElseThrow();
+                Ticket restored = restoredPool.findTicket(ticket.getTicketId()).orElseThrow();
+                assertEquals(ticket.isSold(), restored.isSold(), "Sold state should be restored");
+                assertEquals(ticket.getEventName(), restored.getEventName(), "Event should be restored");
+                assertEquals(ticket.getVendorName(), restored.getVendorName(), "Vendor should be restored");
+                assertEquals(ticket.getLocation(), restored.getLocation(), "Location should be restored");
+                assertEquals(ticket.getPrice(), restored.getPrice(), "Price should be restored");
+            }
+            assertEquals(highWaterMark, restoredPool.getTicketIdHighWaterMark(), "ID high-water mark should be restored");
+            assertEquals(highWaterMark + 1, restoredPool.createTicket("E", "V", "L", 1.0).getTicketId(), "New IDs should continue after the snapshot");
+        } finally {
+            Files.deleteIfExists(snapshotFile);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(TestUtilz.PoolType.class)
+    @DisplayName("Test restore keeps more sold tickets than the pool can hold on sale")
+    void testRestoreMoreSoldThanCapacity(TestUtilz.PoolType poolType) throws IOException {
+        Path snapshotFile = Files.createTempFile("ticket-snapshot", ".bin");
+        try {
+            TicketPool pool = TestUtilz.createTicketPool(poolType, 10);
+            for (int round = 0; round < 3; round++) {
+                assertEquals(10, pool.addTickets(TestUtilz.createTestTickets(pool, 10)), "Batch should be added");
+                assertEquals(10, pool.purchaseTickets(10, Duration.ofSeconds(1)).size(), "Whole pool should be bought");
+            }
+            assertEquals(4, pool.addTickets(TestUtilz.createTestTickets(pool, 4)), "Batch should be added");
+            pool.snapshot(snapshotFile);
+
+            TicketPool restoredPool = TestUtilz.createTicketPool(poolType, 10);
+            assertEquals(34, restoredPool.restore(snapshotFile), "Sold tickets should not need room in the pool");
+            assertEquals(30, restoredPool.getSoldTicketCount(), "Sold tickets should stay sold");
+            assertEquals(4, restoredPool.getAvailableTicketCount(), "Only the unsold tickets should be on sale");
+        } finally {
+            Files.deleteIfExists(snapshotFile);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(TestUtilz.PoolType.class)
+    @DisplayName("Test delta checkpoints only write changed tickets and recover as base plus deltas")
+    void testDeltaCheckpointRecovery(TestUtilz.PoolType poolType) throws IOException {
+        Path checkpointDir = Files.createTempDirectory("ticket-checkpoints");
+        try {
+            List<Ticket> tickets;
+            Ticket updated;
+            try (CheckpointingTicketPool pool = new CheckpointingTicketPool(TestUtilz.createTicketPool(poolType, DEFAULT_CAPACITY), checkpointDir)) {
+                tickets = TestUtilz.createTestTickets(pool, 20);
+                assertEquals(20, pool.addTickets(tickets), "Batch should be added");
+                assertEquals(20, pool.checkpoint(), "First delta should hold every added ticket");
+                assertEquals(0, pool.checkpoint(), "Nothing changed, so nothing should be written");
+
+                List<Ticket> bought = pool.purchaseTickets(3, Duration.ofSeconds(1));
+                assertEquals(3, bought.size(), "Group purchase should succeed");
+                updated = pool.getAvailableTickets().get(0);
+                pool.updateTicket(updated.getTicketId(), 250.0, "New Location", "New Event");
+                assertEquals(4, pool.checkpoint(), "Only the purchased and updated tickets should be written");
+
+                assertEquals(2, pool.compact(), "Compaction should merge both deltas");
+                assertEquals(0, pool.getStore().getDeltaCount(), "Merged deltas should be deleted");
+
+                pool.cancelTicket(bought.get(0));
+            } // close writes the cancel as the last delta
+
+            TicketPool restoredPool = TestUtilz.createTicketPool(poolType, DEFAULT_CAPACITY);
+            try (CheckpointingTicketPool recovered = new CheckpointingTicketPool(restoredPool, checkpointDir)) {
+                assertEquals(20, recovered.getRecovery().tickets(), "Every ticket should be recovered");
+                assertEquals(1, recovered.getRecovery().deltas(), "Recovery should apply the delta written after the base");
+                assertEquals(18, recovered.getAvailableTicketCount(), "Cancelled ticket should be on sale again");
+                assertEquals(2, recovered.getSoldTicketCount(), "Sold tickets should stay sold");
+                Ticket restoredUpdate = recovered.findTicket(updated.getTicketId()).orElseThrow();
+                assertEquals(250.0, restoredUpdate.getPrice(), "Update should be recovered");
+                assertEquals("New Event", restoredUpdate.getEventName(), "Update should be recovered");
+                long highestId = tickets.stream().mapToLong(Ticket::getTicketId).max().orElse(0);
+                assertTrue(recovered.createTicket("E", "V", "L", 1.0).getTicketId() > highestId, "New IDs should not reuse checkpointed ones");
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(checkpointDir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(TestUtilz.PoolType.class)
+    @DisplayName("Test sold tickets free their room but can still be found, updated and cancelled")
+    void testSoldTicketsLeaveThePool(TestUtilz.PoolType poolType) {
+        int capacity = 10;
+        TicketPool pool = TestUtilz.createTicketPool(poolType, capacity);
+        List<Ticket> tickets = TestUtilz.createTestTickets(pool, capacity * 2 + 1);
+        assertEquals(capacity, pool.addTickets(tickets.subList(0, capacity)), "First batch should fill the pool");
+        List<Ticket> bought = pool.purchaseTickets(capacity, Duration.ofSeconds(1));
+        assertEquals(capacity, bought.size(), "Whole pool should be bought");
+
+        assertEquals(capacity, pool.addTickets(tickets.subList(capacity, capacity * 2)), "Sold tickets should not take up capacity");
+        assertEquals(capacity, pool.getAvailableTicketCount(), "Second batch should be available");
+        assertEquals(capacity, pool.getSoldTicketCount(), "First batch should stay counted as sold");
+        assertEquals(capacity * 2, pool.getAllTicketsCount(), "Sold tickets should still be listed");
+        assertEquals(capacity, pool.getAllTickets().stream().filter(Ticket::isSold).count(), "Listing should include the sold tickets");
+
+        Ticket sold = bought.get(0);
+        pool.updateTicket(sold.getTicketId(), 55.0, "Archived Location", "Archived Event");
+        Ticket found = pool.findTicket(sold.getTicketId()).orElseThrow();
+        assertTrue(found.isSold(), "Sold ticket should be found as sold");
+        assertEquals(55.0, found.getPrice(), "Sold ticket should be updatable");
+        assertEquals("Archived Event", found.getEventName(), "Sold ticket should be updatable");
+
+        assertTrue(pool.purchaseTicket().isPresent(), "Make room for the cancelled ticket");
+        pool.cancelTicket(sold);
+        assertFalse(sold.isSold(), "Cancelled ticket should be unsold");
+        assertEquals(55.0, sold.getPrice(), "Cancelled ticket should keep the update made while it was sold");
+        assertEquals(capacity, pool.getAvailableTicketCount(), "Cancelled ticket should be on sale again");
+        Ticket restocked = pool.findTicket(sold.getTicketId()).orElseThrow();
+        assertFalse(restocked.isSold(), "Cancelled ticket should be back in the pool");
+        if (TestUtilz.sharesTicketObjects(poolType)) {
+            assertSame(sold, restocked, "Cancelled ticket should be back in the pool");
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(TestUtilz.PoolType.class)
+    @DisplayName("Test a long sale keeps old sales findable and archives tickets added already sold")
+    void testLongSaleArchivesSoldTickets(TestUtilz.PoolType poolType) {
+        // Arrange - many more sales than the pool holds, so the early ones are long archived
+        int capacity = 50;
+        int rounds = 12;
+        TicketPool pool = TestUtilz.createTicketPool(poolType, capacity);
+        List<Ticket> bought = new ArrayList<>();
+        for (int round = 0; round < rounds; round++) {
+            pool.addTickets(TestUtilz.createTestTickets(pool, capacity));
+            bought.addAll(pool.purchaseTickets(capacity, Duration.ofSeconds(1)));
+        }
+        Ticket preSold = pool.createTicket("Event", "Vendor", "Location", 70.0);
+        preSold.setSold(true);
+
+        // Act
+        Ticket first = bought.get(0);
+        pool.updateTicket(first.getTicketId(), 42.0, "Old Location", "Old Event");
+        assertTrue(pool.addTicket(preSold), "An already sold ticket should be accepted");
+
+        // Assert
+        assertEquals(capacity * rounds, bought.size(), "Every round should sell out");
+        assertEquals(capacity * rounds + 1, pool.getSoldTicketCount(), "The pre-sold ticket should count as sold");
+        assertEquals(0, pool.getAvailableTicketCount(), "The pre-sold ticket should not go on sale");
+        assertTrue(pool.findTicket(preSold.getTicketId()).orElseThrow().isSold(), "The pre-sold ticket should be archived");
+        Ticket found = pool.findTicket(first.getTicketId()).orElseThrow();
+        assertEquals(42.0, found.getPrice(), "An early sale should still be updatable");
+        pool.cancelTicket(first);
+        assertEquals(1, pool.getAvailableTicketCount(), "An early sale should be cancellable");
+        assertEquals(42.0, pool.purchaseTicket().orElseThrow().getPrice(), "The cancelled ticket should keep its update");
+    }
+
+    @Test
+    @DisplayName("Test sold state changes are compare-and-set")
+    void testTicketSoldStateCompareAndSet() {
+        Ticket ticket = new Ticket(1, "Event", "Vendor", "Location", 10.0);
+        assertTrue(ticket.tryMarkSold(), "Available ticket should be claimed");
+        assertFalse(ticket.tryMarkSold(), "Sold ticket should not be claimed twice");
+        assertTrue(ticket.isSold(), "Claimed ticket should be sold");
+        assertTrue(ticket.tryMarkAvailable(), "Sold ticket should be released");
+        assertFalse(ticket.tryMarkAvailable(), "Available ticket should not be released twice");
+        assertFalse(ticket.isSold(), "Released ticket should be available");
+    }
+
+    @ParameterizedTest
+    @EnumSource(TestUtilz.PoolType.class)
+    @DisplayName("Test cancelling the same ticket from many threads restocks it once")
+    void testConcurrentCancelRestocksOnce(TestUtilz.PoolType poolType) throws InterruptedException {
+        int capacity = 10;
+        int cancellers = 8;
+        TicketPool pool = TestUtilz.createTicketPool(poolType, capacity);
+        pool.addTickets(TestUtilz.createTestTickets(pool, capacity));
+        Ticket sold = pool.purchaseTicket().orElseThrow();
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < cancellers; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    pool.cancelTicket(sold);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertFalse(sold.isSold(), "Cancelled ticket should be unsold");
+        assertEquals(capacity, pool.getAvailableTicketCount(), "Ticket should be back on sale exactly once");
+        assertEquals(0, pool.getSoldTicketCount(), "Sale should be undone exactly once");
+        assertEquals(capacity, pool.purchaseTickets(capacity, Duration.ofSeconds(1)).size(), "Every ticket should be sold once more");
+        assertTrue(pool.purchaseTicketAsync().completeOnTimeout(null, 200, TimeUnit.MILLISECONDS).join() == null,
+                "No duplicate of the cancelled ticket should be left");
+    }
+
+    @ParameterizedTest
+    @EnumSource(TestUtilz.PoolType.class)
+    @DisplayName("Test ticket names are shared dictionary codes")
+    void testTicketNamesAreDictionaryCodes(TestUtilz.PoolType poolType) {
+        TicketPool pool = TestUtilz.createTicketPool(poolType, DEFAULT_CAPACITY);
+        Ticket first = pool.createTicket(new String("Shared Event"), "Vendor", "Hall", 10.0);
+        Ticket second = pool.createTicket(new String("Shared Event"), "Vendor", null, 20.0);
+        pool.addTickets(List.of(first, second));
+
+        assertEquals(first.getEventCode(), second.getEventCode(), "Equal names should share a code");
+        assertEquals(AttributeDictionary.NONE, second.getLocationCode(), "Null name should have no code");
+        assertNull(second.getLocation(), "Null name should read back as null");
+
+        pool.updateTicket(first.getTicketId(), 15.0, "New Hall", "Renamed Event");
+        Ticket updated = pool.findTicket(first.getTicketId()).orElseThrow();
+        assertEquals("Renamed Event", updated.getEventName(), "Updated name should resolve");
+        assertEquals("New Hall", updated.getLocation(), "Updated name should resolve");
+        assertEquals(AttributeDictionary.encode("Renamed Event"), updated.getEventCode(), "Update should store the dictionary code");
+    }
+
+    @Test
+    @DisplayName("Test sold-ticket ledger spilled to a file")
+    void testSoldTicketLedgerSpill() throws IOException {
+        Path spillFile = Files.createTempFile("sold-tickets", ".bin");
+        try (SoldTicketLedger ledger = SoldTicketLedger.spillingTo(spillFile)) {
+            TicketPool pool = new ReentrantLockTicketPool(DEFAULT_CAPACITY, ledger);
+            List<Ticket> tickets = TestUtilz.createTestTickets(pool, DEFAULT_CAPACITY);
+            pool.addTickets(tickets);
+            List<Ticket> bought = pool.purchaseTickets(DEFAULT_CAPACITY, Duration.ofSeconds(1));
+            assertEquals(DEFAULT_CAPACITY, bought.size(), "Whole pool should be bought");
+
+            assertTrue(ledger.isSpilled(), "Ledger should be file backed");
+            assertEquals(DEFAULT_CAPACITY, ledger.size(), "Every sale should be archived");
+            assertEquals(0, pool.getCurrentSize(), "Sold tickets should leave the pool");
+            assertTrue(Files.size(spillFile) >= ledger.getRecordBytes(), "Records should be in the file");
+            for (Ticket ticket : bought) {
+                Ticket archived = pool.findTicket(ticket.getTicketId()).orElseThrow();
+                assertEquals(ticket.getEventName(), archived.getEventName(), "Archived event should be read back");
+                assertEquals(ticket.getVendorName(), archived.getVendorName(), "Archived vendor should be read back");
+                assertEquals(ticket.getPrice(), archived.getPrice(), "Archived price should be read back");
+            }
+        } finally {
+            Files.deleteIfExists(spillFile);
+        }
+    }
+
+    @Test
+    @DisplayName("Test long -> int map survives removals in the middle of probe chains")
+    void testLongIntMapRemovals() {
+        LongIntMap map = new LongIntMap();
+        for (long key = 0; key < 10_000; key++) {
+            map.put(key, (int) key);
+        }
+        for (long key = 0; key < 10_000; key += 3) {
+            assertEquals((int) key, map.remove(key), "Removal should return the stored value");
+        }
+        assertEquals(-1, map.remove(0), "A removed key should be gone");
+        for (long key = 0; key < 10_000; key++) {
+            assertEquals(key % 3 == 0 ? -1 : (int) key, map.get(key), "Backward shift should keep every other key reachable");
+        }
+        assertEquals(6_666, map.size(), "Size should count the remaining keys");
+    }
+
+    @Test
+    @DisplayName("Test available tickets are polled oldest first, across growth and removals")
+    void testAvailableTicketsPollOldestFirst() {
+        AvailableTickets available = new AvailableTickets();
+        for (long id = 1; id <= 10; id++) {
+            available.add(new Ticket(id, "Event", "Vendor", "Hall", 10.0));
+        }
+        assertEquals(1, available.poll().getTicketId(), "The first ticket added should be polled first");
+        assertEquals(2, available.poll().getTicketId(), "Then the second");
+        for (long id = 11; id <= 40; id++) {
+            available.add(new Ticket(id, "Event", "Vendor", "Hall", 10.0)); // wraps around, then grows
+        }
+        assertEquals(3, available.remove(3).getTicketId(), "The oldest ticket should be removable by ID");
+        assertEquals(4, available.poll().getTicketId(), "Removing the oldest keeps the order");
+        assertEquals(36, available.size(), "Size should count the remaining tickets");
+        assertEquals(available.toList(), List.of(available.toArray()), "Listing and copy should agree");
+        assertEquals(5, available.toList().get(0).getTicketId(), "Listing should start at the oldest ticket");
+    }
+
+    @Test
+    @DisplayName("Test ticket columns reuse the slots of removed tickets")
+    void testTicketColumnsReuseFreedSlots() {
+        TicketColumns columns = new TicketColumns();
+        for (long id = 1; id <= 2000; id++) {
+            columns.append(new Ticket(id, "Event", "Vendor", "Hall", 10.0)); // past the first index rehash
+        }
+        int freed = columns.slotOf(700);
+        columns.remove(freed);
+
+        assertEquals(-1, columns.slotOf(700), "A removed ID should not be found");
+        for (long id = 1; id <= 2000; id++) {
+            if (id != 700) {
+                assertEquals(id, columns.id(columns.slotOf(id)), "Every other ID should still be found");
+            }
+        }
+        assertEquals(freed, columns.append(new Ticket(5000, "Event", "Vendor", "Hall", 12.0)), "A new ticket should take the freed slot");
+        assertEquals(12.0, columns.view(freed).getPrice(), "The reused slot should hold the new ticket");
+        assertEquals(2000, columns.size(), "Size should count the stored tickets");
+        assertEquals(2000, columns.slotCount(), "No slot should have been added");
+    }
+
+    @Test
+    @DisplayName("Test latency histogram percentiles and merging across threads")
+    void testLatencyHistogramPercentiles() throws InterruptedException {
+        // Arrange - 1..10000 ns, recorded by 4 threads taking every 4th value
+        LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int offset = t;
+            Thread thread = new Thread(() -> {
+                for (long value = 1 + offset; value <= 10_000; value += 4) {
+                    histogram.record(value);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Act
+        LatencyHistogram.Summary summary = histogram.summary();
+
+        // Assert - within the 1/32 bucket width
+        assertEquals(10_000, summary.getCount(), "Every value from every thread should be counted");
+        assertEquals(10_000, summary.getMax(), "Max should be exact");
+        assertEquals(5000.5, summary.getMean(), 0.001, "Mean should be exact");
+        assertEquals(5000, summary.getP50(), 5000 / 32.0, "p50 should be within a bucket");
+        assertEquals(9000, summary.getP90(), 9000 / 32.0, "p90 should be within a bucket");
+        assertEquals(9900, summary.getP99(), 9900 / 32.0, "p99 should be within a bucket");
+        assertEquals(9990, summary.getP999(), 9990 / 32.0, "p99.9 should be within a bucket");
+        assertEquals(10_000, histogram.summary().getCount(), "Ended threads' counts should be kept");
+        assertEquals(20_000, summary.merge(histogram.summary()).getCount(), "Merged summaries should add up");
+    }
+
+    @ParameterizedTest
+    @EnumSource(TestUtilz.PoolType.class)
+    @DisplayName("Test instrumented pool records a latency for each add, purchase, cancel and update")
+    void testInstrumentedPoolRecordsLatencies(TestUtilz.PoolType poolType) {
+        // Arrange
+        InstrumentedTicketPool pool = new InstrumentedTicketPool(TestUtilz.createTicketPool(poolType, DEFAULT_CAPACITY));
+
+        // Act
+        TestUtilz.fillPool(pool, 10);
+        List<Ticket> bought = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            bought.add(pool.purchaseTicket().orElseThrow());
+        }
+        pool.cancelTicket(bought.get(0));
+        pool.cancelTicket(bought.get(1));
+        pool.updateTicket(bought.get(2).getTicketId(), 120.0, "New Location", "New Event");
+
+        // Assert
+        assertEquals(10, pool.getLatency(InstrumentedTicketPool.Operation.ADD).getCount(), "Every add should be timed");
+        assertEquals(4, pool.getLatency(InstrumentedTicketPool.Operation.PURCHASE).getCount(), "Every purchase should be timed");
+        assertEquals(2, pool.getLatency(InstrumentedTicketPool.Operation.CANCEL).getCount(), "Every cancel should be timed");
+        assertEquals(1, pool.getLatency(InstrumentedTicketPool.Operation.UPDATE).getCount(), "Every update should be timed");
+        LatencyHistogram.Summary purchases = pool.getLatency(InstrumentedTicketPool.Operation.PURCHASE);
+        assertTrue(purchases.getP50() > 0 && purchases.getP99() <= purchases.getMax(), "Percentiles should be ordered");
+        assertEquals(8, pool.getAvailableTicketCount(), "Calls should still reach the pool");
+    }
+
+    @Test
+    @DisplayName("Test instrumented lock records wait, hold and queue length per operation")
+    void testInstrumentedLockRecordsWaitAndHold() throws InterruptedException {
+        // Arrange
+        ReentrantLock reentrantLock = new ReentrantLock();
+        InstrumentedLock lock = InstrumentedLock.of(reentrantLock, true);
+        Condition never = lock.newCondition();
+        CountDownLatch holding = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            lock.lock("hold");
+            try {
+                holding.countDown();
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                lock.unlock();
+            }
+        });
+
+        // Act - wait behind a 100 ms hold, then a reentrant hold and a hold that mostly awaits a condition
+        holder.start();
+        holding.await();
+        lock.lock("wait");
+        lock.unlock();
+        holder.join();
+        lock.lock("outer");
+        lock.lock("inner");
+        lock.unlock();
+        lock.unlock();
+        lock.lock("await");
+        try {
+            never.await(100, TimeUnit.MILLISECONDS);
+        } finally {
+            lock.unlock();
+        }
+
+        // Assert
+        List<InstrumentedLock.Stats> stats = lock.getStats();
+        assertEquals(List.of("await", "hold", "outer", "wait"), stats.stream().map(InstrumentedLock.Stats::operation).toList(),
+                "Only outermost acquires should be recorded, by operation");
+        InstrumentedLock.Stats held = stats.get(1);
+        InstrumentedLock.Stats waited = stats.get(3);
+        InstrumentedLock.Stats awaited = stats.get(0);
+        assertTrue(held.holds().getMax() >= TimeUnit.MILLISECONDS.toNanos(90), "The 100 ms hold should be recorded");
+        assertTrue(waited.waits().getMax() >= TimeUnit.MILLISECONDS.toNanos(50), "Waiting behind the hold should be recorded");
+        assertTrue(awaited.holds().getMax() < TimeUnit.MILLISECONDS.toNanos(50), "Condition awaits should not count as holding");
+        assertEquals(0, reentrantLock.getHoldCount(), "Every acquire should be released");
+    }
+
+    @Test
+    @DisplayName("Test lock stats name the pool operations that took the lock")
+    void testPoolLockStatsPerOperation() throws InterruptedException {
+        // Arrange
+        ReentrantLockTicketPool reentrantPool = new ReentrantLockTicketPool(DEFAULT_CAPACITY, SoldTicketLedger.inMemory(), true);
+        BlockingQueueTicketPool queuePool = new BlockingQueueTicketPool(DEFAULT_CAPACITY, SoldTicketLedger.inMemory(), true);
+        SynchronizedTicketPool synchronizedPool = new SynchronizedTicketPool(DEFAULT_CAPACITY);
+
+        // Act
+        for (TicketPool pool : List.of(reentrantPool, queuePool)) {
+            TestUtilz.fillPool(pool, 10);
+            Ticket bought = pool.purchaseTicket().orElseThrow();
+            pool.updateTicket(bought.getTicketId(), 120.0, "New Location", "New Event");
+            pool.cancelTicket(bought);
+        }
+        // The synchronized pool is sampled, so hold its monitor while another thread tries to enter
+        Thread blocked = new Thread(synchronizedPool::getCurrentSize);
+        try (MonitorContentionSampler sampler = synchronizedPool.startContentionSampling(Duration.ofMillis(5))) {
+            synchronized (synchronizedPool) {
+                blocked.start();
+                Thread.sleep(200);
+            }
+            blocked.join();
+            sampler.close();
+
+            // Assert
+            List<String> reentrantOperations = reentrantPool.getLockStats().stream().map(InstrumentedLock.Stats::operation).toList();
+            assertTrue(reentrantOperations.containsAll(List.of("addTicket", "purchaseTicket", "updateTicket", "cancelTicket")),
+                    "ReentrantLock pool should record each operation: " + reentrantOperations);
+            List<String> queueOperations = queuePool.getLockStats().stream().map(InstrumentedLock.Stats::operation).toList();
+            assertTrue(queueOperations.containsAll(List.of("addTicket", "updateTicket", "cancelTicket")),
+                    "BlockingQueue pool should record each operation: " + queueOperations);
+            assertTrue(new ReentrantLockTicketPool(DEFAULT_CAPACITY).getLockStats().isEmpty(), "Recording should be off by default");
+            assertTrue(sampler.getSampleCount() > 0, "The sampler should have run");
+            assertTrue(sampler.getStats().stream().anyMatch(stat -> stat.operation().equals("getCurrentSize") && stat.waitSamples() > 0),
+                    "The blocked getCurrentSize should be sampled waiting: " + sampler.getStats());
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(TestUtilz.PoolType.class)
+    @DisplayName("Test managed pool shows live metrics and takes resize and pause over JMX")
+    void testManagedPoolOverJmx(TestUtilz.PoolType poolType) throws JMException, InterruptedException {
+        // Arrange
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try (ManagedTicketPool pool = ManagedTicketPool.register(TestUtilz.createTicketPool(poolType, DEFAULT_CAPACITY), "test-" + poolType)) {
+            ObjectName name = pool.getObjectName();
+            TestUtilz.fillPool(pool, 10);
+            Ticket bought = pool.purchaseTicket().orElseThrow();
+            pool.purchaseTicket().orElseThrow();
+            pool.cancelTicket(bought);
+
+            // Act & Assert - attributes
+            assertTrue(server.isRegistered(name), "The pool should be registered");
+            assertEquals(9, server.getAttribute(name, "CurrentSize"), "Size should be live");
+            assertEquals(9, server.getAttribute(name, "AvailableTicketCount"), "Available should be live");
+            assertEquals(1, server.getAttribute(name, "SoldTicketCount"), "Sold should be live");
+            assertEquals(DEFAULT_CAPACITY, server.getAttribute(name, "Capacity"), "Capacity should start at the pool's own");
+            assertEquals(0, server.getAttribute(name, "WaitingBuyers"), "Nobody should be waiting");
+            TabularData latencies = (TabularData) server.getAttribute(name, "LatencyNanos");
+            assertEquals(InstrumentedTicketPool.Operation.values().length * 5, latencies.size(), "Every operation should have its percentiles");
+            assertTrue((Long) server.getAttribute(name, "PurchaseLatencyP99Nanos") > 0, "Purchases should have been timed");
+
+            // Act & Assert - resize down to the current size turns adds away
+            server.invoke(name, "resize", new Object[]{9}, new String[]{int.class.getName()});
+            assertEquals(9, server.getAttribute(name, "Capacity"), "Capacity should show the limit");
+            assertFalse(pool.addTicket(pool.createTicket("Event", "Vendor", "Location", 100.0)), "Adds past the limit should be refused");
+            assertThrows(RuntimeMBeanException.class,
+                    () -> server.invoke(name, "resize", new Object[]{DEFAULT_CAPACITY + 1}, new String[]{int.class.getName()}),
+                    "Growing past the pool's own capacity should be refused");
+            server.invoke(name, "resize", new Object[]{DEFAULT_CAPACITY}, new String[]{int.class.getName()});
+
+            // Act & Assert - paused producers wait until resumed
+            server.invoke(name, "pauseProducers", null, null);
+            Thread producer = new Thread(() -> pool.addTicket(pool.createTicket("Event", "Vendor", "Location", 100.0)));
+            producer.start();
+            producer.join(200);
+            assertTrue(producer.isAlive(), "A paused producer should wait");
+            assertEquals(9, pool.getCurrentSize(), "Nothing should be added while paused");
+            assertEquals(true, server.getAttribute(name, "ProducersPaused"), "Pause should show");
+            server.invoke(name, "resumeProducers", null, null);
+            producer.join(TimeUnit.SECONDS.toMillis(TEST_TIMEOUT_SECONDS));
+            assertEquals(10, pool.getCurrentSize(), "The held add should go through once resumed");
+        }
+        assertFalse(server.isRegistered(new ObjectName("com.gayan:type=TicketPool,name=\"test-" + poolType + "\"")),
+                "Closing should unregister the pool");
+    }
+
+    @Test
+    @DisplayName("Test managed pool rates count tickets per second")
+    void testManagedPoolRates() throws JMException, InterruptedException {
+        try (ManagedTicketPool pool = ManagedTicketPool.register(TestUtilz.createTicketPool(TestUtilz.PoolType.SYNCHRONIZED, DEFAULT_CAPACITY), "rates")) {
+            // Arrange - a batch and single adds both count
+            pool.addTickets(TestUtilz.createTestTickets(pool, 10));
+            TestUtilz.fillPool(pool, 10);
+            pool.purchaseTickets(5, Duration.ofSeconds(1));
+
+            // Act
+            Thread.sleep(1100);
+            double adds = pool.getAddsPerSecond();
+            double purchases = pool.getPurchasesPerSecond();
+
+            // Assert - 20 adds and 5 purchases over a window of 1.1 s or a little more
+            assertTrue(adds > 10 && adds <= 20, "Adds per second should count every ticket: " + adds);
+            assertTrue(purchases > 2 && purchases <= 5, "Purchases per second should count group purchases: " + purchases);
+            assertEquals(0, pool.getCancelsPerSecond(), "Nothing was cancelled");
+        }
+    }
+
     @ParameterizedTest
     @EnumSource(TestUtilz.PoolType.class)
     @DisplayName("Test maximum capacity")
@@ -256,22 +1097,9 @@ public class CorrectnessTest extends BaseTestConfig {
         // Start a reader thread first
         Thread readerThread = new Thread(() -> {
             try {
-                if (pool instanceof ReentrantLockTicketPool) {
-                    ReentrantLockTicketPool lockPool = (ReentrantLockTicketPool) pool;
-                    lockPool.getLock().lock();
-                    try {
-                        while (lockPool.getCurrentSize() == 0) {
-                            lockPool.getNotEmptyCondition().await();
-                        }
-                    } finally {
-                        lockPool.getLock().unlock();
-                    }
-                } else {
-                    synchronized (pool) {
-                        while (pool.getCurrentSize() == 0) {
-                            pool.wait();
-                        }
-                    }
+                // Same wait a Reader worker uses: park in the readers' queue until a producer adds
+                while (pool.getCurrentSize() == 0) {
+                    pool.awaitTickets(WorkerRole.READER, TimeUnit.SECONDS.toMillis(TEST_TIMEOUT_SECONDS));
                 }
 
                 List<Ticket> allTickets = pool.getAllTickets();
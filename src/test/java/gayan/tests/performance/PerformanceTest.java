@@ -1,32 +1,90 @@
 package gayan.tests.performance;
 
+import com.gayan.entities.Ticket;
 import com.gayan.entities.TicketPool;
+import com.gayan.entities.WorkerRole;
+import com.gayan.utilz.WorkerThreads;
+import com.gayan.utilz.CheckpointStore;
+import com.gayan.utilz.InstrumentedLock;
+import com.gayan.utilz.LatencyHistogram;
+import com.gayan.utilz.MonitorContentionSampler;
+import com.gayan.utilz.PoolSnapshot;
+import com.gayan.utilz.SoldTicketLedger;
+import com.gayan.versions.BlockingQueueTicketPool;
+import com.gayan.versions.CheckpointingTicketPool;
+import com.gayan.versions.InstrumentedTicketPool;
+import com.gayan.versions.JournaledTicketPool;
+import com.gayan.versions.ReentrantLockTicketPool;
+import com.gayan.versions.SynchronizedTicketPool;
 import gayan.tests.BaseTestConfig;
 import gayan.tests.utilz.TestUtilz;
 
+import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
 
 public class PerformanceTest extends BaseTestConfig {
 
     private static final int WARMUP_ITERATIONS = 3;
     private static final int TEST_ITERATIONS = 5;
     private static final int OPERATIONS_PER_ITERATION = 10000;
+    private static final int BATCH_SIZE = 1000;
+    private static final int THREAD_MODE_BUYERS = 2000;
+    private static final int IDLE_WAITERS = 1000;
+    private static final int JOURNAL_TICKETS = 4000;
+    private static final int JOURNAL_BUYERS = 16;
+    private static final int[] SNAPSHOT_SIZES = {10_000, 100_000, 1_000_000};
+    private static final int CHECKPOINT_TICKETS = 100_000;
+    private static final int LATENCY_THREADS = 8;
+    private static final int LATENCY_OPERATIONS = 5000;
+    private static final int LATENCY_CAPACITY = 1000;
+    private static final double[] CHECKPOINT_CHANGE_RATES = {0.01, 0.05};
+    private static final int LONG_SALE_CAPACITY = 10_000;
+    private static final int LONG_SALE_ROUNDS = 20;
+    private static final int FOOTPRINT_TICKETS = 10_000_000;
+    private static final int FOOTPRINT_BATCH = 100_000;
+    private static final int OFF_HEAP_TICKETS = 5_000_000;
+    private static final int READ_WRITE_TICKETS = 1000;
+    private static final int READ_WRITE_THREADS = 4;
+    private static final long READ_WRITE_MILLIS = 1000;
 
     @Test
     @DisplayName("Measure and compare performance of different implementations")
     void compareImplementationPerformance() throws InterruptedException {
         // Results storage
         Map<TestUtilz.PoolType, Long> additionTimes = new HashMap<>();
+        Map<TestUtilz.PoolType, Long> batchAdditionTimes = new HashMap<>();
         Map<TestUtilz.PoolType, Long> purchaseTimes = new HashMap<>();
         Map<TestUtilz.PoolType, Long> concurrentTimes = new HashMap<>();
 
@@ -39,6 +97,7 @@ public class PerformanceTest extends BaseTestConfig {
             // Warm-up
             for (int i = 0; i < WARMUP_ITERATIONS; i++) {
                 runAdditionTest(type, 1000);
+                runBatchAdditionTest(type, 1000);
                 runPurchaseTest(type, 1000);
                 runConcurrentTest(type, 5, 5, 1000);
             }
@@ -50,6 +109,13 @@ public class PerformanceTest extends BaseTestConfig {
             }
             additionTimes.put(type, addTime / TEST_ITERATIONS);
 
+            // Measure batch addition performance
+            long batchAddTime = 0;
+            for (int i = 0; i < TEST_ITERATIONS; i++) {
+                batchAddTime += runBatchAdditionTest(type, OPERATIONS_PER_ITERATION);
+            }
+            batchAdditionTimes.put(type, batchAddTime / TEST_ITERATIONS);
+
             // Measure purchase performance
             long purchaseTime = 0;
             for (int i = 0; i < TEST_ITERATIONS; i++) {
@@ -70,6 +136,10 @@ public class PerformanceTest extends BaseTestConfig {
         System.out.println("Operations: " + OPERATIONS_PER_ITERATION + " ticket additions");
         printResults(additionTimes);
 
+        System.out.println("\n=== Batch Addition Performance ===");
+        System.out.println("Operations: " + OPERATIONS_PER_ITERATION + " ticket additions in batches of " + BATCH_SIZE);
+        printResults(batchAdditionTimes);
+
         System.out.println("\n=== Sequential Purchase Performance ===");
         System.out.println("Operations: " + OPERATIONS_PER_ITERATION + " ticket purchases");
         printResults(purchaseTimes);
@@ -79,6 +149,724 @@ public class PerformanceTest extends BaseTestConfig {
         printResults(concurrentTimes);
     }
 
+    @Test
+    @DisplayName("Compare platform and virtual worker threads for each implementation")
+    void compareWorkerThreadModes() throws InterruptedException {
+        boolean virtualSupported = WorkerThreads.virtualThreadsSupported();
+        Map<TestUtilz.PoolType, Long> platformTimes = new HashMap<>();
+        Map<TestUtilz.PoolType, Long> virtualTimes = new HashMap<>();
+
+        System.out.println("\n=== WORKER THREAD MODE TEST RESULTS ===\n");
+        if (!virtualSupported) {
+            System.out.println("Virtual threads need Java 21+ (running " + Runtime.version().feature() +
+                    "), measuring platform threads only.");
+        }
+
+        for (TestUtilz.PoolType type : TestUtilz.PoolType.values()) {
+            System.out.println("Testing " + type + " implementation...");
+
+            // Warm-up
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                runThreadModeTest(type, false, THREAD_MODE_BUYERS / 10);
+                if (virtualSupported) {
+                    runThreadModeTest(type, true, THREAD_MODE_BUYERS / 10);
+                }
+            }
+
+            long platformTime = 0;
+            long virtualTime = 0;
+            for (int i = 0; i < TEST_ITERATIONS; i++) {
+                platformTime += runThreadModeTest(type, false, THREAD_MODE_BUYERS);
+                if (virtualSupported) {
+                    virtualTime += runThreadModeTest(type, true, THREAD_MODE_BUYERS);
+                }
+            }
+            platformTimes.put(type, platformTime / TEST_ITERATIONS);
+            if (virtualSupported) {
+                virtualTimes.put(type, virtualTime / TEST_ITERATIONS);
+            }
+        }
+
+        System.out.println("\n=== Platform Threads ===");
+        System.out.println("Operations: " + THREAD_MODE_BUYERS + " buyer threads waiting for tickets from 1 producer");
+        printResults(platformTimes);
+
+        if (virtualSupported) {
+            System.out.println("\n=== Virtual Threads ===");
+            System.out.println("Operations: " + THREAD_MODE_BUYERS + " buyer threads waiting for tickets from 1 producer");
+            printResults(virtualTimes);
+        }
+    }
+
+    @Test
+    @DisplayName("Measure context switches and purchase latency with 1000 idle waiters")
+    void measureIdleWaiterWakeups() throws InterruptedException {
+        Map<TestUtilz.PoolType, long[]> results = new HashMap<>();
+
+        System.out.println("\n=== IDLE WAITER WAKEUP TEST RESULTS ===\n");
+        if (contextSwitches() < 0) {
+            System.out.println("Context switch counts need /proc (Linux), showing latency only.");
+        }
+
+        for (TestUtilz.PoolType type : TestUtilz.PoolType.values()) {
+            System.out.println("Testing " + type + " implementation...");
+            runIdleWaiterTest(type, IDLE_WAITERS / 10); // warm-up
+            results.put(type, runIdleWaiterTest(type, IDLE_WAITERS));
+        }
+
+        System.out.println("\n=== Idle Waiter Wakeups ===");
+        System.out.println("Operations: " + IDLE_WAITERS + " parked buyers, tickets added one at a time");
+        for (Map.Entry<TestUtilz.PoolType, long[]> entry : results.entrySet()) {
+            long[] result = entry.getValue();
+            System.out.printf("%-20s: %8d context switches | latency mean %6d us | p99 %6d us\n",
+                    entry.getKey(), result[0], result[1], result[2]);
+        }
+    }
+
+    @Test
+    @DisplayName("Compare concurrent purchases in memory and with the group-committed journal")
+    void compareJournaledPurchaseThroughput() throws InterruptedException, IOException {
+        Map<TestUtilz.PoolType, Long> memoryTimes = new HashMap<>();
+        Map<TestUtilz.PoolType, Long> journaledTimes = new HashMap<>();
+        Map<TestUtilz.PoolType, Double> batchSizes = new HashMap<>();
+
+        System.out.println("\n=== JOURNALED PURCHASE TEST RESULTS ===\n");
+
+        for (TestUtilz.PoolType type : TestUtilz.PoolType.values()) {
+            System.out.println("Testing " + type + " implementation...");
+            runJournaledPurchaseTest(type, false, JOURNAL_TICKETS / 10, null); // warm-up
+            runJournaledPurchaseTest(type, true, JOURNAL_TICKETS / 10, null);
+
+            memoryTimes.put(type, runJournaledPurchaseTest(type, false, JOURNAL_TICKETS, null));
+            double[] batchSize = new double[1];
+            journaledTimes.put(type, runJournaledPurchaseTest(type, true, JOURNAL_TICKETS, batchSize));
+            batchSizes.put(type, batchSize[0]);
+        }
+
+        System.out.println("\n=== In Memory ===");
+        System.out.println("Operations: " + JOURNAL_BUYERS + " buyers purchasing " + JOURNAL_TICKETS + " tickets");
+        printResults(memoryTimes);
+
+        System.out.println("\n=== Journaled (group commit) ===");
+        System.out.println("Operations: " + JOURNAL_BUYERS + " buyers purchasing " + JOURNAL_TICKETS + " tickets, every sale fsynced");
+        printResults(journaledTimes);
+        for (Map.Entry<TestUtilz.PoolType, Double> entry : batchSizes.entrySet()) {
+            System.out.printf("%-20s: %6.1f records per fsync\n", entry.getKey(), entry.getValue());
+        }
+    }
+
+    //Fill the pool, then let the buyers empty it. Only the purchases are timed.
+    private long runJournaledPurchaseTest(TestUtilz.PoolType type, boolean journaled, int tickets, double[] batchSize)
+            throws InterruptedException, IOException {
+        Path journalFile = Files.createTempFile("perf-journal", ".bin");
+        TicketPool pool = TestUtilz.createTicketPool(type, tickets);
+        JournaledTicketPool journal = null;
+        if (journaled) {
+            journal = new JournaledTicketPool(pool, journalFile);
+            pool = journal;
+        }
+        try {
+            pool.addTickets(TestUtilz.createTestTickets(pool, tickets));
+            TicketPool buyersPool = pool;
+            AtomicInteger claimed = new AtomicInteger(); //each buyer claims a purchase first, so nobody waits on an empty pool
+            AtomicInteger sold = new AtomicInteger();
+            CountDownLatch startLatch = new CountDownLatch(1);
+            CountDownLatch endLatch = new CountDownLatch(JOURNAL_BUYERS);
+            List<Thread> threads = new ArrayList<>(JOURNAL_BUYERS);
+            for (int i = 0; i < JOURNAL_BUYERS; i++) {
+                Thread thread = new Thread(() -> {
+                    try {
+                        startLatch.await();
+                        while (claimed.getAndIncrement() < tickets) {
+                            if (buyersPool.purchaseTicket().isPresent()) {
+                                sold.incrementAndGet();
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        endLatch.countDown();
+                    }
+                }, "Journal-Buyer-" + i);
+                threads.add(thread);
+                thread.start();
+            }
+
+            long journalRecordsBefore = journal == null ? 0 : journal.getJournal().getRecordCount();
+            long journalCommitsBefore = journal == null ? 0 : journal.getJournal().getCommitCount();
+            long startTime = System.nanoTime();
+            startLatch.countDown();
+            if (!endLatch.await(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                threads.forEach(Thread::interrupt);
+                fail(type + " buyers did not finish");
+            }
+            long endTime = System.nanoTime();
+
+            assertEquals(tickets, sold.get(), type + " did not sell every ticket");
+            if (batchSize != null && journal != null) {
+                long records = journal.getJournal().getRecordCount() - journalRecordsBefore;
+                long commits = journal.getJournal().getCommitCount() - journalCommitsBefore;
+                batchSize[0] = commits == 0 ? 0 : (double) records / commits;
+            }
+            return TimeUnit.NANOSECONDS.toMillis(endTime - startTime);
+        } finally {
+            if (journal != null) {
+                journal.close();
+            }
+            Files.deleteIfExists(journalFile);
+        }
+    }
+
+    @Test
+    @DisplayName("Measure snapshot write and restore time against ticket count")
+    void measureSnapshotRestoreTime() throws IOException {
+        System.out.println("\n=== SNAPSHOT RESTORE TEST RESULTS ===\n");
+        for (TestUtilz.PoolType type : TestUtilz.PoolType.values()) {
+            runSnapshotRestoreTest(type, SNAPSHOT_SIZES[0]); // warm-up
+        }
+
+        System.out.println("Tickets sold: 10%, names shared like a Producer's tickets");
+        System.out.printf("%-20s %10s %10s %10s %12s %12s\n", "Pool", "Tickets", "File MB", "Write ms", "Read ms", "Restore ms");
+        for (TestUtilz.PoolType type : TestUtilz.PoolType.values()) {
+            for (int tickets : SNAPSHOT_SIZES) {
+                long[] result = runSnapshotRestoreTest(type, tickets);
+                System.out.printf("%-20s %10d %10.1f %10d %12d %12d\n", type, tickets,
+                        result[0] / (1024.0 * 1024.0), result[1], result[2], result[3]);
+            }
+        }
+    }
+
+    //Returns {file bytes, snapshot write ms, map + read ms, full restore into a new pool ms}
+    private long[] runSnapshotRestoreTest(TestUtilz.PoolType type, int tickets) throws IOException {
+        Path snapshotFile = Files.createTempFile("perf-snapshot", ".bin");
+        try {
+            TicketPool pool = TestUtilz.createTicketPool(type, tickets);
+            List<Ticket> batch = new ArrayList<>(tickets);
+            for (int i = 0; i < tickets; i++) {
+                batch.add(pool.createTicket("Event " + (i % 10), "Vendor " + (i % 5), "Location " + (i % 20), 100.0 + (i % 50)));
+            }
+            pool.addTickets(batch);
+            pool.purchaseTickets(tickets / 10, Duration.ofSeconds(TEST_TIMEOUT_SECONDS));
+
+            long writeStart = System.nanoTime();
+            pool.snapshot(snapshotFile);
+            long writeTime = System.nanoTime() - writeStart;
+            pool = null; // let the source pool go before restoring
+
+            long readStart = System.nanoTime();
+            PoolSnapshot.read(snapshotFile);
+            long readTime = System.nanoTime() - readStart;
+
+            TicketPool restoredPool = TestUtilz.createTicketPool(type, tickets);
+            long restoreStart = System.nanoTime();
+            int restored = restoredPool.restore(snapshotFile);
+            long restoreTime = System.nanoTime() - restoreStart;
+
+            assertEquals(tickets, restored, type + " did not restore every ticket");
+            assertEquals(tickets / 10, restoredPool.getSoldTicketCount(), type + " did not restore the sold tickets");
+            return new long[]{Files.size(snapshotFile), TimeUnit.NANOSECONDS.toMillis(writeTime),
+                    TimeUnit.NANOSECONDS.toMillis(readTime), TimeUnit.NANOSECONDS.toMillis(restoreTime)};
+        } finally {
+            Files.deleteIfExists(snapshotFile);
+        }
+    }
+
+    @Test
+    @DisplayName("Compare delta checkpoints against full snapshots at low change rates")
+    void compareDeltaCheckpointCost() throws IOException {
+        System.out.println("\n=== DELTA CHECKPOINT TEST RESULTS ===\n");
+        System.out.println("Tickets: " + CHECKPOINT_TICKETS + ", one checkpoint per change rate, then recovery from base + deltas");
+        System.out.printf("%-20s %8s %10s %10s %10s %10s\n", "Pool", "Changed", "Full ms", "Full KB", "Delta ms", "Delta KB");
+        for (TestUtilz.PoolType type : TestUtilz.PoolType.values()) {
+            runDeltaCheckpointTest(type);
+        }
+    }
+
+    private void runDeltaCheckpointTest(TestUtilz.PoolType type) throws IOException {
+        Path checkpointDir = Files.createTempDirectory("perf-checkpoints");
+        Path snapshotFile = checkpointDir.resolve("full.snapshot");
+        try {
+            List<Ticket> batch;
+            try (CheckpointingTicketPool pool = new CheckpointingTicketPool(TestUtilz.createTicketPool(type, CHECKPOINT_TICKETS), checkpointDir)) {
+                batch = new ArrayList<>(CHECKPOINT_TICKETS);
+                for (int i = 0; i < CHECKPOINT_TICKETS; i++) {
+                    batch.add(pool.createTicket("Event " + (i % 10), "Vendor " + (i % 5), "Location " + (i % 20), 100.0 + (i % 50)));
+                }
+                pool.addTickets(batch);
+                pool.checkpoint();
+                pool.compact(); // start from a full base image
+
+                Random random = new Random(42);
+                for (double rate : CHECKPOINT_CHANGE_RATES) {
+                    int changes = (int) (CHECKPOINT_TICKETS * rate);
+                    for (int i = 0; i < changes; i++) {
+                        Ticket ticket = batch.get(random.nextInt(batch.size()));
+                        pool.updateTicket(ticket.getTicketId(), ticket.getPrice() + 1, ticket.getLocation(), ticket.getEventName());
+                    }
+
+                    long fullStart = System.nanoTime();
+                    pool.snapshot(snapshotFile);
+                    long fullTime = System.nanoTime() - fullStart;
+
+                    long deltaStart = System.nanoTime();
+                    pool.checkpoint();
+                    long deltaTime = System.nanoTime() - deltaStart;
+
+                    System.out.printf("%-20s %7.0f%% %10d %10d %10d %10d\n", type, rate * 100,
+                            TimeUnit.NANOSECONDS.toMillis(fullTime), Files.size(snapshotFile) / 1024,
+                            TimeUnit.NANOSECONDS.toMillis(deltaTime), newestDeltaBytes(checkpointDir) / 1024);
+                    Files.delete(snapshotFile);
+                }
+            }
+
+            TicketPool restoredPool = TestUtilz.createTicketPool(type, CHECKPOINT_TICKETS);
+            try (CheckpointingTicketPool recovered = new CheckpointingTicketPool(restoredPool, checkpointDir)) {
+                CheckpointStore.Recovery recovery = recovered.getRecovery();
+                assertEquals(CHECKPOINT_TICKETS, recovery.tickets(), type + " did not recover every ticket");
+                System.out.printf("%-20s recovered base + %d deltas in %d ms\n", type, recovery.deltas(), recovery.millis());
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(checkpointDir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+
+    private long newestDeltaBytes(Path checkpointDir) throws IOException {
+        try (Stream<Path> files = Files.list(checkpointDir)) {
+            Path newest = files.filter(file -> file.getFileName().toString().startsWith("delta-"))
+                    .max(Comparator.naturalOrder())
+                    .orElseThrow();
+            return Files.size(newest);
+        }
+    }
+
+    @Test
+    @DisplayName("Measure purchase cost and heap as sold tickets pile up over a long sale")
+    void measureLongSalePurchaseCost() throws IOException {
+        System.out.println("\n=== LONG SALE TEST RESULTS ===\n");
+        System.out.println("Capacity " + LONG_SALE_CAPACITY + ", " + LONG_SALE_ROUNDS + " rounds of fill the pool then sell it out");
+        System.out.printf("%-24s %14s %14s %10s %12s\n", "Pool", "First ns/buy", "Last ns/buy", "Sold", "Heap MB");
+        for (TestUtilz.PoolType type : TestUtilz.PoolType.values()) {
+            runLongSaleTest(type.toString(), TestUtilz.createTicketPool(type, LONG_SALE_CAPACITY));
+        }
+
+        Path spillFile = Files.createTempFile("perf-sold-tickets", ".bin");
+        try (SoldTicketLedger ledger = SoldTicketLedger.spillingTo(spillFile)) {
+            runLongSaleTest("REENTRANT_LOCK (spill)", new ReentrantLockTicketPool(LONG_SALE_CAPACITY, ledger));
+            System.out.println("Spill file: " + ledger.describe());
+        } finally {
+            Files.deleteIfExists(spillFile);
+        }
+    }
+
+    //Fill, then buy one at a time, LONG_SALE_ROUNDS times. Prints the first and last round's time per purchase.
+    private void runLongSaleTest(String name, TicketPool pool) {
+        long heapBefore = usedHeapAfterGc();
+        long[] nanosPerBuy = new long[LONG_SALE_ROUNDS];
+        for (int round = 0; round < LONG_SALE_ROUNDS; round++) {
+            List<Ticket> batch = new ArrayList<>(LONG_SALE_CAPACITY);
+            for (int i = 0; i < LONG_SALE_CAPACITY; i++) {
+                batch.add(pool.createTicket("Event " + (i % 10), "Vendor " + (i % 5), "Location " + (i % 20), 100.0 + (i % 50)));
+            }
+            assertEquals(LONG_SALE_CAPACITY, pool.addTickets(batch), name + " has no room for round " + round);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < LONG_SALE_CAPACITY; i++) {
+                if (pool.purchaseTicket().isEmpty()) {
+                    fail(name + " ran out of tickets in round " + round);
+                }
+            }
+            nanosPerBuy[round] = (System.nanoTime() - start) / LONG_SALE_CAPACITY;
+        }
+        long heapAfter = usedHeapAfterGc();
+        assertEquals(LONG_SALE_CAPACITY * LONG_SALE_ROUNDS, pool.getSoldTicketCount(), name + " lost sold tickets");
+        System.out.printf("%-24s %14d %14d %10d %12.1f\n", name, nanosPerBuy[0], nanosPerBuy[LONG_SALE_ROUNDS - 1],
+                pool.getSoldTicketCount(), (heapAfter - heapBefore) / (1024.0 * 1024.0));
+    }
+
+    @Test
+    @Disabled("Disabled by default, builds a 10M-ticket pool; run it on its own to measure the footprint")
+    @DisplayName("Measure heap bytes per ticket for a 10M-ticket pool")
+    void measureTicketFootprint() {
+        System.out.println("\n=== TICKET FOOTPRINT TEST RESULTS ===\n");
+        System.out.println("Tickets: " + FOOTPRINT_TICKETS + " in a " + TestUtilz.PoolType.LOCK_FREE + " pool, 10 events x 5 vendors x 20 locations");
+        System.out.printf("%-32s %14s %12s\n", "Names", "Bytes/ticket", "Heap MB");
+        runTicketFootprintTest("Shared, like a Producer", false);
+        runTicketFootprintTest("Own copy per ticket, like replay", true);
+    }
+
+    //Heap taken by a full pool divided by its tickets, pool structure included
+    private void runTicketFootprintTest(String name, boolean copyNames) {
+        String[] events = new String[10];
+        String[] vendors = new String[5];
+        String[] locations = new String[20];
+        for (int i = 0; i < locations.length; i++) {
+            if (i < events.length) {
+                events[i] = "Event " + i;
+            }
+            if (i < vendors.length) {
+                vendors[i] = "Vendor " + i;
+            }
+            locations[i] = "Location " + i;
+        }
+
+        long heapBefore = usedHeapAfterGc();
+        TicketPool pool = TestUtilz.createTicketPool(TestUtilz.PoolType.LOCK_FREE, FOOTPRINT_TICKETS);
+        for (int start = 0; start < FOOTPRINT_TICKETS; start += FOOTPRINT_BATCH) {
+            List<Ticket> batch = new ArrayList<>(FOOTPRINT_BATCH);
+            for (int i = start; i < start + FOOTPRINT_BATCH; i++) {
+                String event = events[i % events.length];
+                String vendor = vendors[i % vendors.length];
+                String location = locations[i % locations.length];
+                if (copyNames) {
+                    event = new String(event);
+                    vendor = new String(vendor);
+                    location = new String(location);
+                }
+                batch.add(pool.createTicket(event, vendor, location, 100.0 + (i % 50)));
+            }
+            pool.addTickets(batch);
+        }
+        long heapAfter = usedHeapAfterGc();
+
+        assertEquals(FOOTPRINT_TICKETS, pool.getAvailableTicketCount(), name + " did not fill the pool");
+        System.out.printf("%-32s %14d %12d\n", name, (heapAfter - heapBefore) / FOOTPRINT_TICKETS,
+                (heapAfter - heapBefore) / (1024 * 1024));
+    }
+
+    @Test
+    @Disabled("Disabled by default, builds two 5M-ticket pools; run it on its own to compare them")
+    @DisplayName("Compare heap, direct memory and GC pauses of a 5M-ticket heap pool and off-heap pool")
+    void compareOffHeapFootprintAndGc() {
+        System.out.println("\n=== OFF-HEAP POOL TEST RESULTS ===\n");
+        System.out.println("Tickets: " + OFF_HEAP_TICKETS + ", filled in batches of " + FOOTPRINT_BATCH + " then sold one at a time");
+        System.out.printf("%-16s %10s %10s %10s %12s %12s\n", "Pool", "Heap MB", "Direct MB", "GC count", "GC pause ms", "p99 buy ns");
+        runOffHeapTest(TestUtilz.PoolType.REENTRANT_LOCK);
+        runOffHeapTest(TestUtilz.PoolType.OFF_HEAP);
+    }
+
+    //Fill the pool, then sell it out. Heap and direct memory are read with the pool full,
+    //GC counts and pause times cover both the fill and the sale.
+    private void runOffHeapTest(TestUtilz.PoolType type) {
+        long heapBefore = usedHeapAfterGc();
+        long directBefore = directMemoryUsed();
+        long[] gcBefore = gcCountAndTime();
+
+        TicketPool pool = TestUtilz.createTicketPool(type, OFF_HEAP_TICKETS);
+        for (int start = 0; start < OFF_HEAP_TICKETS; start += FOOTPRINT_BATCH) {
+            List<Ticket> batch = new ArrayList<>(FOOTPRINT_BATCH);
+            for (int i = start; i < start + FOOTPRINT_BATCH; i++) {
+                batch.add(pool.createTicket("Event " + (i % 10), "Vendor " + (i % 5), "Location " + (i % 20), 100.0 + (i % 50)));
+            }
+            assertEquals(FOOTPRINT_BATCH, pool.addTickets(batch), type + " has no room for the batch at " + start);
+        }
+        long[] gcFilled = gcCountAndTime();
+        long heapFull = usedHeapAfterGc();
+        long directFull = directMemoryUsed();
+        long[] gcResumed = gcCountAndTime(); // leave out the GC we forced to measure the heap
+
+        long[] latencies = new long[OFF_HEAP_TICKETS];
+        for (int i = 0; i < OFF_HEAP_TICKETS; i++) {
+            long start = System.nanoTime();
+            if (pool.purchaseTicket().isEmpty()) {
+                fail(type + " ran out of tickets after " + i + " purchases");
+            }
+            latencies[i] = System.nanoTime() - start;
+        }
+        long[] gcAfter = gcCountAndTime();
+
+        assertEquals(OFF_HEAP_TICKETS, pool.getSoldTicketCount(), type + " lost sold tickets");
+        Arrays.sort(latencies);
+        System.out.printf("%-16s %10d %10d %10d %12d %12d\n", type,
+                (heapFull - heapBefore) / (1024 * 1024),
+                (directFull - directBefore) / (1024 * 1024),
+                (gcFilled[0] - gcBefore[0]) + (gcAfter[0] - gcResumed[0]),
+                (gcFilled[1] - gcBefore[1]) + (gcAfter[1] - gcResumed[1]),
+                latencies[(int) (OFF_HEAP_TICKETS * 0.99) - 1]);
+    }
+
+    //{collections, total collection ms} over every collector
+    private static long[] gcCountAndTime() {
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(gc.getCollectionCount(), 0);
+            millis += Math.max(gc.getCollectionTime(), 0);
+        }
+        return new long[]{count, millis};
+    }
+
+    //Bytes held by direct ByteBuffers
+    private static long directMemoryUsed() {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> pool.getName().equals("direct"))
+                .mapToLong(BufferPoolMXBean::getMemoryUsed)
+                .sum();
+    }
+
+    @Test
+    @DisplayName("Measure listing throughput while writers update tickets")
+    void measureReaderThroughputWithWriters() throws InterruptedException {
+        System.out.println("\n=== READERS WITH WRITERS TEST RESULTS ===\n");
+        System.out.println(READ_WRITE_THREADS + " readers listing available tickets, " + READ_WRITE_THREADS
+                + " writers updating them, " + READ_WRITE_TICKETS + " tickets, " + READ_WRITE_MILLIS + " ms");
+        System.out.printf("%-16s %14s %14s\n", "Pool", "Listings/s", "Updates/s");
+        for (TestUtilz.PoolType type : TestUtilz.PoolType.values()) {
+            long[] rates = runReadWriteTest(type);
+            System.out.printf("%-16s %14d %14d\n", type, rates[0], rates[1]);
+        }
+    }
+
+    //Returns {listings per second, updates per second}
+    private long[] runReadWriteTest(TestUtilz.PoolType type) throws InterruptedException {
+        TicketPool pool = TestUtilz.createTicketPool(type, READ_WRITE_TICKETS);
+        List<Ticket> tickets = TestUtilz.createTestTickets(pool, READ_WRITE_TICKETS);
+        pool.addTickets(tickets);
+
+        AtomicLong listings = new AtomicLong(0);
+        AtomicLong updates = new AtomicLong(0);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        long[] endTime = new long[1];
+        for (int i = 0; i < READ_WRITE_THREADS; i++) {
+            threads.add(new Thread(() -> {
+                awaitQuietly(start);
+                long done = 0;
+                while (System.nanoTime() < endTime[0]) {
+                    pool.getAvailableTickets();
+                    done++;
+                }
+                listings.addAndGet(done);
+            }, "Listing-Reader-" + i));
+            final int seed = i;
+            threads.add(new Thread(() -> {
+                awaitQuietly(start);
+                Random random = new Random(seed);
+                long done = 0;
+                while (System.nanoTime() < endTime[0]) {
+                    Ticket ticket = tickets.get(random.nextInt(tickets.size()));
+                    pool.updateTicket(ticket.getTicketId(), 100.0 + done % 50, "Location " + done % 20, "Event " + done % 10);
+                    done++;
+                }
+                updates.addAndGet(done);
+            }, "Updating-Writer-" + i));
+        }
+        threads.forEach(Thread::start);
+        endTime[0] = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(READ_WRITE_MILLIS);
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return new long[]{listings.get() * 1000 / READ_WRITE_MILLIS, updates.get() * 1000 / READ_WRITE_MILLIS};
+    }
+
+    @Test
+    @DisplayName("Measure purchase latency percentiles with producers and buyers running together")
+    void measurePurchaseLatencyPercentiles() throws InterruptedException {
+        System.out.println("\n=== PURCHASE LATENCY PERCENTILES ===\n");
+        System.out.println(LATENCY_THREADS + " producers and " + LATENCY_THREADS + " buyers, "
+                + LATENCY_OPERATIONS + " tickets each, latency in microseconds");
+        System.out.printf("%-16s %10s %10s %10s %10s %10s\n", "Pool", "p50", "p90", "p99", "p99.9", "max");
+        for (TestUtilz.PoolType type : TestUtilz.PoolType.values()) {
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                runLatencyTest(type);
+            }
+            LatencyHistogram.Summary purchases = runLatencyTest(type);
+            assertEquals((long) LATENCY_THREADS * LATENCY_OPERATIONS, purchases.getCount(), type + " should time every purchase");
+            System.out.printf("%-16s %10.1f %10.1f %10.1f %10.1f %10.1f\n", type,
+                    purchases.getP50() / 1000.0, purchases.getP90() / 1000.0, purchases.getP99() / 1000.0,
+                    purchases.getP999() / 1000.0, purchases.getMax() / 1000.0);
+        }
+    }
+
+    private LatencyHistogram.Summary runLatencyTest(TestUtilz.PoolType type) throws InterruptedException {
+        InstrumentedTicketPool pool = new InstrumentedTicketPool(TestUtilz.createTicketPool(type, LATENCY_CAPACITY));
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < LATENCY_THREADS; i++) {
+            threads.add(new Thread(() -> {
+                awaitQuietly(start);
+                for (int j = 0; j < LATENCY_OPERATIONS; j++) {
+                    pool.addTicket(pool.createTicket("Event", "Vendor", "Location", 100.0));
+                }
+            }, "Latency-Producer-" + i));
+            threads.add(new Thread(() -> {
+                awaitQuietly(start);
+                for (int j = 0; j < LATENCY_OPERATIONS; j++) {
+                    pool.purchaseTicket(); // waits in the pool when it is empty, the wait is part of the latency
+                }
+            }, "Latency-Buyer-" + i));
+        }
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return pool.getLatency(InstrumentedTicketPool.Operation.PURCHASE);
+    }
+
+    @Test
+    @DisplayName("Measure lock wait and hold times per operation with producers, buyers and updaters running together")
+    void measureLockWaitAndHoldPerOperation() throws InterruptedException {
+        System.out.println("\n=== LOCK WAIT AND HOLD PER OPERATION ===\n");
+        System.out.println(LATENCY_THREADS + " producers and " + LATENCY_THREADS + " buyers that update what they buy, "
+                + LATENCY_OPERATIONS + " tickets each");
+
+        ReentrantLockTicketPool reentrantPool = new ReentrantLockTicketPool(LATENCY_CAPACITY, SoldTicketLedger.inMemory(), true);
+        runLockWorkload(reentrantPool);
+        System.out.println("\n" + TestUtilz.PoolType.REENTRANT_LOCK);
+        List<InstrumentedLock.Stats> reentrantStats = reentrantPool.getLockStats();
+        reentrantStats.forEach(System.out::println);
+
+        BlockingQueueTicketPool queuePool = new BlockingQueueTicketPool(LATENCY_CAPACITY, SoldTicketLedger.inMemory(), true);
+        runLockWorkload(queuePool);
+        System.out.println("\n" + TestUtilz.PoolType.BLOCKING_QUEUE);
+        queuePool.getLockStats().forEach(System.out::println);
+
+        // No lock object to time, so sampled: estimates are samples x interval
+        SynchronizedTicketPool synchronizedPool = new SynchronizedTicketPool(LATENCY_CAPACITY);
+        try (MonitorContentionSampler sampler = synchronizedPool.startContentionSampling(Duration.ofMillis(1))) {
+            runLockWorkload(synchronizedPool);
+            sampler.close();
+            System.out.println("\n" + TestUtilz.PoolType.SYNCHRONIZED + " (" + sampler.getSampleCount()
+                    + " samples, at most " + sampler.getMaxBlocked() + " threads blocked at once)");
+            sampler.getStats().forEach(System.out::println);
+        }
+
+        long purchases = reentrantStats.stream().filter(stat -> stat.operation().equals("purchaseTicket"))
+                .mapToLong(stat -> stat.waits().getCount()).sum();
+        assertTrue(purchases >= (long) LATENCY_THREADS * LATENCY_OPERATIONS, "Every purchase should take the lock at least once");
+    }
+
+    private void runLockWorkload(TicketPool pool) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < LATENCY_THREADS; i++) {
+            threads.add(new Thread(() -> {
+                awaitQuietly(start);
+                for (int j = 0; j < LATENCY_OPERATIONS; j++) {
+                    pool.addTicket(pool.createTicket("Event", "Vendor", "Location", 100.0));
+                }
+            }, "Lock-Producer-" + i));
+            threads.add(new Thread(() -> {
+                awaitQuietly(start);
+                for (int j = 0; j < LATENCY_OPERATIONS; j++) {
+                    pool.purchaseTicket().ifPresent(ticket ->
+                            pool.updateTicket(ticket.getTicketId(), 120.0, "New Location", "New Event"));
+                }
+            }, "Lock-Buyer-" + i));
+        }
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    //Park every buyer first, then add one ticket at a time and time how long until a buyer has it.
+    //Returns {context switches, mean latency us, p99 latency us}.
+    private long[] runIdleWaiterTest(TestUtilz.PoolType type, int waiters) throws InterruptedException {
+        TicketPool pool = TestUtilz.createTicketPool(type, waiters);
+        Semaphore purchased = new Semaphore(0);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>(waiters);
+
+        for (int i = 0; i < waiters; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    // Same wait a Consumer worker uses
+                    while (pool.purchaseTicket().isEmpty()) {
+                        pool.awaitTickets(WorkerRole.BUYER, TimeUnit.SECONDS.toMillis(TEST_TIMEOUT_SECONDS));
+                    }
+                    purchased.release();
+                    release.await(); // stay alive so its context switches are still counted
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "Idle-Buyer-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+        awaitParked(threads);
+
+        long[] latencies = new long[waiters];
+        long switchesBefore = contextSwitches();
+        for (int i = 0; i < waiters; i++) {
+            long start = System.nanoTime();
+            pool.addTicket(pool.createTicket("Event", "Vendor", "Location", 100.0));
+            if (!purchased.tryAcquire(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                threads.forEach(Thread::interrupt);
+                fail(type + " left a ticket unsold with " + (waiters - i) + " buyers waiting");
+            }
+            latencies[i] = System.nanoTime() - start;
+        }
+        long switchesAfter = contextSwitches();
+
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Arrays.sort(latencies);
+        long mean = Arrays.stream(latencies).sum() / waiters;
+        long p99 = latencies[(int) (waiters * 0.99) - 1];
+        long switches = switchesBefore < 0 ? -1 : switchesAfter - switchesBefore;
+        return new long[]{switches, TimeUnit.NANOSECONDS.toMicros(mean), TimeUnit.NANOSECONDS.toMicros(p99)};
+    }
+
+    //Wait (at most the test timeout) until every thread is blocked
+    private void awaitParked(List<Thread> threads) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TEST_TIMEOUT_SECONDS);
+        for (Thread thread : threads) {
+            while (thread.getState() == Thread.State.RUNNABLE || thread.getState() == Thread.State.NEW) {
+                if (System.nanoTime() - deadline >= 0) {
+                    return;
+                }
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    //Voluntary + involuntary context switches summed over this JVM's live threads, -1 without /proc
+    private static long contextSwitches() {
+        Path tasks = Paths.get("/proc/self/task");
+        if (!Files.isDirectory(tasks)) {
+            return -1;
+        }
+        long total = 0;
+        try (DirectoryStream<Path> taskDirs = Files.newDirectoryStream(tasks)) {
+            for (Path task : taskDirs) {
+                try {
+                    for (String line : Files.readAllLines(task.resolve("status"))) {
+                        if (line.startsWith("voluntary_ctxt_switches") || line.startsWith("nonvoluntary_ctxt_switches")) {
+                            total += Long.parseLong(line.substring(line.indexOf(':') + 1).trim());
+                        }
+                    }
+                } catch (IOException e) {
+                    // thread exited while we were reading, skip it
+                }
+            }
+        } catch (IOException e) {
+            return -1;
+        }
+        return total;
+    }
+
     private long runAdditionTest(TestUtilz.PoolType type, int operations) {
         TicketPool pool = TestUtilz.createTicketPool(type, operations);
 
@@ -91,6 +879,22 @@ public class PerformanceTest extends BaseTestConfig {
         return TimeUnit.NANOSECONDS.toMillis(endTime - startTime);
     }
 
+    private long runBatchAdditionTest(TestUtilz.PoolType type, int operations) {
+        TicketPool pool = TestUtilz.createTicketPool(type, operations);
+
+        long startTime = System.nanoTime();
+        for (int i = 0; i < operations; i += BATCH_SIZE) {
+            List<Ticket> batch = new ArrayList<>(BATCH_SIZE);
+            for (int j = i; j < Math.min(i + BATCH_SIZE, operations); j++) {
+                batch.add(pool.createTicket("Event", "Vendor", "Location", 100.0));
+            }
+            pool.addTickets(batch);
+        }
+        long endTime = System.nanoTime();
+
+        return TimeUnit.NANOSECONDS.toMillis(endTime - startTime);
+    }
+
     private long runPurchaseTest(TestUtilz.PoolType type, int operations) {
         TicketPool pool = TestUtilz.createTicketPool(type, operations);
         TestUtilz.fillPool(pool, operations);
@@ -187,6 +991,45 @@ public class PerformanceTest extends BaseTestConfig {
         return completed ? TimeUnit.NANOSECONDS.toMillis(totalEnd - totalStart) : 30000;
     }
 
+    //Start one buyer thread per ticket, all of them waiting, then feed them from a single producer
+    private long runThreadModeTest(TestUtilz.PoolType type, boolean virtual, int buyers) throws InterruptedException {
+        TicketPool pool = TestUtilz.createTicketPool(type, buyers);
+        CountDownLatch endLatch = new CountDownLatch(buyers);
+        AtomicInteger served = new AtomicInteger(0);
+        List<Thread> threads = new ArrayList<>(buyers);
+
+        long totalStart = System.nanoTime();
+        for (int i = 0; i < buyers; i++) {
+            Thread thread = WorkerThreads.newThread(() -> {
+                try {
+                    // Parks on the future in both modes, so only the thread type differs
+                    CompletableFuture<Ticket> future = pool.purchaseTicketAsync();
+                    future.get(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                    served.incrementAndGet();
+                } catch (Exception e) {
+                    System.out.println(Thread.currentThread().getName() + " encountered exception: " + e.getMessage());
+                } finally {
+                    endLatch.countDown();
+                }
+            }, "Buyer-" + i, virtual);
+            threads.add(thread);
+            thread.start();
+        }
+
+        for (int i = 0; i < buyers; i++) {
+            pool.addTicket(pool.createTicket("Event", "Vendor", "Location", 100.0));
+        }
+
+        boolean completed = endLatch.await(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        long totalEnd = System.nanoTime();
+
+        if (!completed) {
+            threads.forEach(Thread::interrupt);
+        }
+        assertEquals(buyers, served.get(), type + " did not serve every " + (virtual ? "virtual" : "platform") + " buyer");
+        return TimeUnit.NANOSECONDS.toMillis(totalEnd - totalStart);
+    }
+
     private void printResults(Map<TestUtilz.PoolType, Long> results) {
         // Find the fastest implementation
         TestUtilz.PoolType fastest = results.entrySet().stream()
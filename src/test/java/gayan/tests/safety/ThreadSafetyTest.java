@@ -12,6 +12,9 @@ import java.util.concurrent.TimeUnit;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
@@ -220,4 +223,97 @@ public class ThreadSafetyTest extends BaseTestConfig {
         assertTrue(writeCount.get() > 0, "Some write operations should complete");
         assertTrue(writeCount.get() <= writerCount * operationsPerThread, "Write count should not exceed maximum possible");
     }
+
+    @ParameterizedTest
+    @EnumSource(TestUtilz.PoolType.class)
+    @DisplayName("Test readers never see a half-applied ticket update")
+    void testReadersSeeWholeUpdates(TestUtilz.PoolType poolType) throws InterruptedException {
+        // Arrange - every update writes price k with "Location k" and "Event k", so a mix of two updates shows up
+        TicketPool pool = TestUtilz.createTicketPool(poolType, DEFAULT_CAPACITY);
+        List<Ticket> tickets = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            tickets.add(pool.createTicket("Event 0", "Vendor", "Location 0", 0.0));
+        }
+        pool.addTickets(tickets);
+
+        int readerCount = 4;
+        int writerCount = 4;
+        AtomicInteger torn = new AtomicInteger(0);
+        AtomicInteger reads = new AtomicInteger(0);
+        CountDownLatch done = new CountDownLatch(readerCount + writerCount);
+        long endTime = System.currentTimeMillis() + 500;
+
+        // Act
+        for (int w = 0; w < writerCount; w++) {
+            final int writer = w;
+            new Thread(() -> {
+                int k = writer;
+                while (System.currentTimeMillis() < endTime) {
+                    Ticket ticket = tickets.get(k % tickets.size());
+                    pool.updateTicket(ticket.getTicketId(), k, "Location " + k, "Event " + k);
+                    k += writerCount;
+                }
+                done.countDown();
+            }).start();
+        }
+        for (int r = 0; r < readerCount; r++) {
+            new Thread(() -> {
+                while (System.currentTimeMillis() < endTime) {
+                    for (Ticket ticket : pool.getAvailableTickets()) {
+                        Ticket.Version version = ticket.getVersion();
+                        String k = String.valueOf((long) version.price());
+                        if (!version.getLocation().equals("Location " + k) || !version.getEventName().equals("Event " + k)) {
+                            torn.incrementAndGet();
+                        }
+                    }
+                    reads.incrementAndGet();
+                }
+                done.countDown();
+            }).start();
+        }
+
+        // Assert
+        assertTrue(done.await(5, TimeUnit.SECONDS), "Readers and writers should finish");
+        assertTrue(reads.get() > 0, "Readers should have listed the tickets");
+        assertEquals(0, torn.get(), "No reader should see price, location and event from different updates");
+    }
+
+    @ParameterizedTest
+    @EnumSource(TestUtilz.PoolType.class)
+    @DisplayName("Test async buyers racing with producers")
+    void testAsyncBuyersWithConcurrentProducers(TestUtilz.PoolType poolType) throws Exception {
+        // Arrange
+        TicketPool pool = TestUtilz.createTicketPool(poolType, HIGH_CAPACITY);
+        int buyerCount = 200;
+        List<Ticket> tickets = TestUtilz.createTestTickets(pool, buyerCount);
+        Set<Ticket> received = ConcurrentHashMap.newKeySet();
+        List<CompletableFuture<Ticket>> futures = new ArrayList<>();
+
+        // Act - half the buyers queue up first, the rest register while producers are adding
+        for (int i = 0; i < buyerCount / 2; i++) {
+            futures.add(pool.purchaseTicketAsync());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int p = 0; p < 4; p++) {
+            final int offset = p;
+            executor.submit(() -> {
+                for (int i = offset; i < buyerCount; i += 4) {
+                    pool.addTicket(tickets.get(i));
+                }
+            });
+        }
+        for (int i = buyerCount / 2; i < buyerCount; i++) {
+            futures.add(pool.purchaseTicketAsync());
+        }
+        for (CompletableFuture<Ticket> future : futures) {
+            assertTrue(received.add(future.get(5, TimeUnit.SECONDS)), "No ticket should be sold twice");
+        }
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertEquals(buyerCount, received.size(), "Every async buyer should get a ticket");
+        assertEquals(0, pool.getAvailableTicketCount(), "No tickets should be left over");
+        assertEquals(buyerCount, pool.getSoldTicketCount(), "Every ticket should be sold exactly once");
+    }
 }
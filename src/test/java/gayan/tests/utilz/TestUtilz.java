@@ -3,7 +3,11 @@ package gayan.tests.utilz;
 import com.gayan.entities.Ticket;
 import com.gayan.entities.TicketPool;
 import com.gayan.versions.BlockingQueueTicketPool;
+import com.gayan.versions.LockFreeTicketPool;
+import com.gayan.versions.OffHeapTicketPool;
 import com.gayan.versions.ReentrantLockTicketPool;
+import com.gayan.versions.ShardedTicketPool;
+import com.gayan.versions.StampedLockTicketPool;
 import com.gayan.versions.SynchronizedTicketPool;
 
 import java.util.ArrayList;
@@ -27,9 +31,23 @@ public class TestUtilz {
             case SYNCHRONIZED -> new SynchronizedTicketPool(capacity);
             case REENTRANT_LOCK -> new ReentrantLockTicketPool(capacity);
             case BLOCKING_QUEUE -> new BlockingQueueTicketPool(capacity);
+            case LOCK_FREE -> new LockFreeTicketPool(capacity);
+            case SHARDED -> new ShardedTicketPool(capacity);
+            case STAMPED_LOCK -> new StampedLockTicketPool(capacity);
+            case OFF_HEAP -> new OffHeapTicketPool(capacity);
         };
     }
 
+    /**
+     * Whether the pool keeps the Ticket objects it is given and hands those same objects out.
+     * OFF_HEAP stores tickets as columns and hands out views, so identity and the caller's sold flag are not shared.
+     * @param type The type of TicketPool
+     * @return true if tickets can be compared by identity
+     */
+    public static boolean sharesTicketObjects(PoolType type) {
+        return type != PoolType.OFF_HEAP;
+    }
+
     /**
      * Creates test tickets with sequential IDs.
      * @param pool The TicketPool to create tickets for
@@ -103,6 +121,10 @@ public class TestUtilz {
     public enum PoolType {
         SYNCHRONIZED,
         REENTRANT_LOCK,
-        BLOCKING_QUEUE
+        BLOCKING_QUEUE,
+        LOCK_FREE,
+        SHARDED,
+        STAMPED_LOCK,
+        OFF_HEAP
     }
 }